@@ -0,0 +1,57 @@
+package WarCard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of shuffling a shoe of one or more decks and dealing it between two players.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeckBenchmark {
+
+    @Param({"1", "2", "6"})
+    private int decks;
+
+    private Deck deck;
+    private Player player1;
+    private Player player2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        deck = new Deck(decks, new SplittableRandom(42));
+        player1 = new Player("player1", deck.getCardsByCode(), deck.size());
+        player2 = new Player("player2", deck.getCardsByCode(), deck.size());
+    }
+
+    @Benchmark
+    public Deck shuffle() {
+        deck.shuffle();
+        return deck;
+    }
+
+    @Benchmark
+    public Player dealCards() {
+        player1.clearHand();
+        player2.clearHand();
+        deck.dealCards(player1, player2);
+        return player1;
+    }
+}
@@ -0,0 +1,59 @@
+package WarCard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the hand operations of a player, for hands of different sizes. <br>
+ * Every benchmark returns the drawn cards to the hand, so the hand keeps its size between invocations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PlayerBenchmark {
+
+    @Param({"2", "26", "50"})
+    public int handSize;
+
+    private Deck deck;
+    private Player player;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        deck = new Deck();
+        player = new Player("player", deck.getCardsByCode());
+        for (int code = 0; code < handSize; ++code) {
+            player.addCardToTop(deck.getCard(code));
+        }
+    }
+
+    @Benchmark
+    public Card drawCard() {
+        Card card = player.drawCard();
+        player.addCardsToBottom(card);
+        return card;
+    }
+
+    @Benchmark
+    public Card addCardsToBottom() {
+        Card first = player.drawCard();
+        Card second = player.drawCard();
+        player.addCardsToBottom(first, second);
+        return first;
+    }
+}
@@ -0,0 +1,105 @@
+package WarCard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks games of every order of pickup in a JVM that plays only them, and in a JVM that has played
+ * every other variant of the rules and every pickup policy before, as {@link PickupOptimizer} and a mix
+ * of {@link Simulator} runs do. <br>
+ * The pickups of all the variants go through the same code of {@link WarCard}; the polluted runs show
+ * what the variants the JVM has seen cost the one it plays. Run with
+ * {@code -jvmArgsAppend "-XX:+UnlockDiagnosticVMOptions -XX:+PrintInlining"} to see the pickup
+ * ({@code Rules$TableOrder::arrange} and the code of its kinds) inlined into {@code moveCardFromTableToPlayer}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+@State(Scope.Thread)
+public class RulesBenchmark {
+
+    private static final int SEEDS_COUNT = 1024;
+    private static final int MAX_ROUNDS = 100_000;  // deals that take longer are treated as endless
+    private static final int POLLUTING_GAMES = 20_000;
+
+    @Param({"clean", "polluted"})
+    private String jvm;
+
+    // a variant of the rules, or the name of the pickup policy of the second player of standard games
+    @Param({"3", "3,sorted", "2,shuffled", "1,sorted,ace-low", "highest first", "alternating"})
+    private String variant;
+
+    private final long[] seeds = new long[SEEDS_COUNT];
+    private int seedIndex;
+    private WarCard warCard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (jvm.equals("polluted")) {
+            for (String other : new String[] {"3", "3,sorted", "2,shuffled", "1,ace-low", "1,sorted,ace-low",
+                    "lowest first", "highest first", "alternating"}) {
+                playAll(newGame(other));
+            }
+        }
+
+        warCard = newGame(variant);
+        int found = 0;
+        for (long seed = 0; found < SEEDS_COUNT; ++seed) {
+            if (playToEnd(warCard, seed)) {
+                seeds[found++] = seed;
+            }
+        }
+        seedIndex = 0;
+    }
+
+    private static WarCard newGame(String variant) {
+        if (Character.isDigit(variant.charAt(0))) {
+            return new WarCard(WarCard.MIN_PLAYERS, 1, Rules.parse(variant));
+        }
+        WarCard game = new WarCard(WarCard.MIN_PLAYERS, 1);
+        game.setPickupPolicy(1, switch (variant) {
+            case "highest first" -> PickupPolicy.highestFirst();
+            case "lowest first" -> PickupPolicy.lowestFirst();
+            case "alternating" -> PickupPolicy.alternating();
+            default -> throw new IllegalArgumentException("unknown variant: " + variant);
+        });
+        return game;
+    }
+
+    private static void playAll(WarCard game) {
+        for (long seed = 0; seed < POLLUTING_GAMES; ++seed) {
+            playToEnd(game, seed);
+        }
+    }
+
+    private static boolean playToEnd(WarCard game, long seed) {
+        game.startGame(seed);
+        boolean gameIsOn = true;
+        while (gameIsOn && game.getRoundsCount() < MAX_ROUNDS) {
+            gameIsOn = game.exeRound();
+        }
+        return !gameIsOn;
+    }
+
+    @Benchmark
+    public int game() {
+        long seed = seeds[seedIndex];
+        seedIndex = (seedIndex + 1) % SEEDS_COUNT;
+        playToEnd(warCard, seed);
+        return warCard.getRoundsCount();
+    }
+}
@@ -0,0 +1,130 @@
+package WarCard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the game: the time from the launch of a new JVM to the first frame of its window,
+ * as reported by the startup probe of {@code GameApplication}. The benchmark stamps the launch with the wall clock,
+ * in microseconds, right before it starts the process, and passes the stamp to the probe, so the measure includes
+ * the creation of the process and is not rounded to the 10 ms ticks of the process start time. <br>
+ * The benchmark first creates an application class-data sharing archive with a training run, then starts
+ * the game the given number of times with and without the archive, alternately, and reports the
+ * minimum, median and maximum of both. The archive is kept next to the game's jar, so the game can be started with
+ * {@code -XX:SharedArchiveFile} afterwards. <br>
+ * With a budget in milliseconds, the benchmark fails (exits with status 1) when the median time with the archive
+ * exceeds it, so a startup regression fails the build that runs it. <br>
+ * Usage: {@code StartupBenchmark <game jar> <JavaFX jars directory> [runs] [budget] [JVM options...]}
+ * (see the {@code startup} profiles of the game's build and of the benchmarks' build). The JVM options are added
+ * to every run, and may be given several to an argument, separated by spaces. Starting the game requires a display
+ * (e.g. xvfb-run on a build machine).
+ */
+public class StartupBenchmark {
+
+    // the property and the output line of the startup probe of GameApplication
+    private static final String PROBE_OPTION = "-Dwarcard.startup.probe=true";
+    private static final String LAUNCHED_OPTION = "-Dwarcard.startup.launched=";
+    private static final String FIRST_FRAME_MESSAGE = "time to first frame (ms): ";
+    private static final long RUN_TIMEOUT_SECONDS = 60;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("usage: StartupBenchmark <game jar> <JavaFX jars directory> [runs] [budget] [JVM options...]");
+            System.exit(2);
+        }
+        Path gameJar = Path.of(args[0]).toAbsolutePath();
+        Path javafxDirectory = Path.of(args[1]).toAbsolutePath();
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        double budget = args.length > 3 ? Double.parseDouble(args[3]) : Double.POSITIVE_INFINITY;
+        List<String> jvmOptions = new ArrayList<>();
+        for (int i = 4; i < args.length; ++i) {
+            for (String option : args[i].trim().split("\\s+")) {
+                if (!option.isEmpty()) {
+                    jvmOptions.add(option);
+                }
+            }
+        }
+        Path archive = gameJar.resolveSibling("app-cds.jsa");
+
+        Files.deleteIfExists(archive);
+        double training = firstFrameMillis(gameJar, javafxDirectory, jvmOptions, "-XX:ArchiveClassesAtExit=" + archive);
+        System.out.printf("training run: %.1f ms, archive %s (%d bytes)%n", training, archive, Files.size(archive));
+
+        double[] plain = new double[runs];
+        double[] shared = new double[runs];
+        for (int i = 0; i < runs; ++i) {
+            plain[i] = firstFrameMillis(gameJar, javafxDirectory, jvmOptions, "-Xshare:auto");
+            shared[i] = firstFrameMillis(gameJar, javafxDirectory, jvmOptions, "-XX:SharedArchiveFile=" + archive);
+        }
+        double plainMedian = report("without archive", plain);
+        double sharedMedian = report("with archive", shared);
+        System.out.printf("median improvement: %.1f ms (%.1f%%)%n", plainMedian - sharedMedian,
+                100.0 * (plainMedian - sharedMedian) / plainMedian);
+
+        if (sharedMedian > budget) {
+            System.out.println("FAILED: the median time to first frame exceeds the budget of " + budget + " ms");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Starts the game in a new JVM, and waits for it to report its first frame and exit.
+     * @param gameJar the jar of the game
+     * @param javafxDirectory the directory of the JavaFX jars
+     * @param jvmOptions the options added to every run
+     * @param cdsOption the class-data sharing option of the JVM
+     * @return the time from the launch of the JVM to the first frame, in milliseconds
+     */
+    private static double firstFrameMillis(Path gameJar, Path javafxDirectory, List<String> jvmOptions, String cdsOption)
+            throws IOException, InterruptedException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>(List.of(java, cdsOption, PROBE_OPTION));
+        command.addAll(jvmOptions);
+        command.addAll(List.of("--module-path", javafxDirectory.toString(), "--add-modules", "javafx.controls,javafx.fxml",
+                "-cp", gameJar.toString(), "WarCard.GameApplication"));
+        command.add(3, LAUNCHED_OPTION + ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now()));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        double millis = -1;
+        List<String> output = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(line);
+                if (line.startsWith(FIRST_FRAME_MESSAGE)) {
+                    millis = Double.parseDouble(line.substring(FIRST_FRAME_MESSAGE.length()).trim());
+                }
+            }
+        }
+        if (!process.waitFor(RUN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+        }
+        if (millis < 0) {
+            throw new IllegalStateException("the game did not report its first frame:\n" + String.join("\n", output));
+        }
+        return millis;
+    }
+
+    /**
+     * Prints the minimum, median and maximum of the measured times.
+     * @return the median time
+     */
+    private static double report(String name, double[] millis) {
+        double[] sorted = millis.clone();
+        Arrays.sort(sorted);
+        double median = sorted[sorted.length / 2];
+        System.out.printf("%s: min %.1f ms, median %.1f ms, max %.1f ms%n", name, sorted[0], median, sorted[sorted.length - 1]);
+        return median;
+    }
+}
@@ -0,0 +1,92 @@
+package WarCard;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the game engine: a single round, and a full game from the deal to the end. <br>
+ * Both benchmarks replay a fixed set of seeded deals that are known to end,
+ * so the measurements are comparable between runs. <br>
+ * The tables range from the classic two players with a single deck to large tables dealt from a shoe,
+ * to check that the cost of a round grows only linearly with the number of players.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WarCardBenchmark {
+
+    private static final int SEEDS_COUNT = 1024;
+    private static final int MAX_ROUNDS = 100_000;  // deals that take longer are treated as endless
+
+    @Param({"2", "4", "16"})
+    private int players;
+
+    @Param({"1", "4"})
+    private int decks;
+
+    private final long[] seeds = new long[SEEDS_COUNT];
+    private int seedIndex;
+    private WarCard warCard;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        warCard = new WarCard(players, decks);
+        int found = 0;
+        for (long seed = 0; found < SEEDS_COUNT; ++seed) {
+            if (playToEnd(seed)) {
+                seeds[found++] = seed;
+            }
+        }
+        seedIndex = 0;
+        warCard.startGame(nextSeed());
+    }
+
+    private long nextSeed() {
+        long seed = seeds[seedIndex];
+        seedIndex = (seedIndex + 1) % SEEDS_COUNT;
+        return seed;
+    }
+
+    private boolean playToEnd(long seed) {
+        warCard.startGame(seed);
+        boolean gameIsOn = true;
+        while (gameIsOn && warCard.getRoundsCount() < MAX_ROUNDS) {
+            gameIsOn = warCard.exeRound();
+        }
+        return !gameIsOn;
+    }
+
+    /**
+     * A single round. When the game ends, the next deal is started inside the same invocation,
+     * which adds the (rare) cost of a deal to the average round.
+     */
+    @Benchmark
+    public boolean exeRound() {
+        boolean gameIsOn = warCard.exeRound();
+        if (!gameIsOn) {
+            warCard.startGame(nextSeed());
+        }
+        return gameIsOn;
+    }
+
+    @Benchmark
+    public int fullGame() {
+        playToEnd(nextSeed());
+        return warCard.getRoundsCount();
+    }
+}
@@ -0,0 +1,121 @@
+package WarCard;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The BatchSimulator class plays many two-player War games with a single deck, like {@link Simulator}
+ * (by the standard {@link Rules} only), but advances thousands of games in lockstep in every thread
+ * (see {@link GameBatch}). <br>
+ * The games are dealt from the same seeds as the games of {@link Simulator}, and their outcomes are
+ * recorded in the same order and merged in the same tree of ranges, so the same master seed produces
+ * exactly the same result - the estimated quantiles and deviations included, since they depend on the
+ * order the games are added in. <br>
+ * The batch compares its ranks with the incubating Vector API, so the JVM must be started with
+ * {@code --add-modules jdk.incubator.vector}.
+ */
+public class BatchSimulator {
+
+    private static final int DEFAULT_BATCH_SIZE = 1024;
+    private static final int GAMES_PER_TASK = 1 << 16;  // games played by a single task without splitting
+
+    private final ForkJoinPool pool;
+    private final int maxRounds;
+    private final int batchSize;
+
+    /**
+     * Constructs a BatchSimulator that uses the common fork-join pool.
+     */
+    public BatchSimulator() {
+        this(ForkJoinPool.commonPool(), Simulator.DEFAULT_MAX_ROUNDS, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a BatchSimulator that runs its batches on the given pool.
+     * @param pool the pool that executes the batches
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     * @param batchSize the number of games every task plays in lockstep
+     */
+    public BatchSimulator(ForkJoinPool pool, int maxRounds, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("the batch size must be positive: " + batchSize);
+        }
+        this.pool = pool;
+        this.maxRounds = maxRounds;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Plays the given number of games and aggregates their results.
+     * The same master seed always produces the same result, which is also the result of {@link Simulator#run(long, long)}.
+     * @param games the number of games to play
+     * @param masterSeed the seed from which the seeds of all the games are derived
+     * @return the aggregated results of all the games
+     */
+    public SimulationResult run(long games, long masterSeed) {
+        return pool.invoke(new BatchTask(masterSeed, 0, games));
+    }
+
+    /**
+     * A fork-join task that plays a range of games, splitting it in half while it is too large.
+     */
+    private class BatchTask extends RecursiveTask<SimulationResult> {
+        private final long masterSeed;
+        private final long from;    // index of the first game in the range
+        private final long to;      // index after the last game in the range
+
+        BatchTask(long masterSeed, long from, long to) {
+            this.masterSeed = masterSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                GameBatch.Outcomes outcomes = new GameBatch.Outcomes(from, to);
+                int size = (int) Math.min(batchSize, Math.max(to - from, 1));
+                new GameBatch(size, maxRounds).play(masterSeed, from, to, outcomes);
+                return collect(outcomes, from, to);
+            }
+
+            long middle = from + (to - from) / 2;
+            BatchTask left = new BatchTask(masterSeed, from, middle);
+            BatchTask right = new BatchTask(masterSeed, middle, to);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+
+        /**
+         * Records the outcomes of a range of games into results split and merged exactly as the tasks
+         * of {@link Simulator} split and merge theirs.
+         */
+        private SimulationResult collect(GameBatch.Outcomes outcomes, long from, long to) {
+            if (to - from <= Simulator.GAMES_PER_TASK) {
+                SimulationResult result = new SimulationResult();
+                for (long game = from; game < to; ++game) {
+                    outcomes.record(game, result);
+                }
+                return result;
+            }
+            long middle = from + (to - from) / 2;
+            return collect(outcomes, middle, to).merge(collect(outcomes, from, middle));
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long masterSeed = args.length > 1 ? Long.parseLong(args[1]) : new SplittableRandom().nextLong();
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_SIZE;
+
+        BatchSimulator simulator = new BatchSimulator(ForkJoinPool.commonPool(), Simulator.DEFAULT_MAX_ROUNDS, batchSize);
+        long start = System.nanoTime();
+        SimulationResult result = simulator.run(games, masterSeed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("master seed: " + masterSeed);
+        System.out.println(result);
+        System.out.printf("%.2f seconds, %.0f games/second%n", seconds, games / seconds);
+    }
+}
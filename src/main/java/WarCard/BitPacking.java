@@ -0,0 +1,95 @@
+package WarCard;
+
+/**
+ * The BitPacking class compresses blocks of integers with frame-of-reference bit packing. <br>
+ * Every value of a block is stored as its distance from the minimum of the block, in the number of bits
+ * the largest distance takes, so a column whose values are close to each other takes a few bits per value,
+ * and a block of equal values takes no bits at all. The distances are computed as unsigned 64-bit numbers,
+ * so any range of longs, up to the full range of random seeds, can be packed.
+ */
+final class BitPacking {
+
+    private BitPacking() {
+    }
+
+    /**
+     * Returns the number of bits that the distances of a block from its minimum take.
+     * @param min the minimum of the block
+     * @param max the maximum of the block
+     * @return the width of a packed value, between 0 and 64
+     */
+    static int width(long min, long max) {
+        return 64 - Long.numberOfLeadingZeros(max - min);
+    }
+
+    /**
+     * Returns the number of words that a packed block takes.
+     * @param count the number of values in the block
+     * @param width the width of a packed value
+     * @return the number of 64-bit words
+     */
+    static int words(int count, int width) {
+        return (int) (((long) count * width + 63) >>> 6);
+    }
+
+    /**
+     * Packs a block of values.
+     * @param values the values of the block
+     * @param count the number of values in the block
+     * @param min the minimum of the block
+     * @param width the width of a packed value, as returned by {@link #width(long, long)}
+     * @param words the words to pack the values into, at least {@link #words(int, int)} of them, all 0
+     */
+    static void pack(long[] values, int count, long min, int width, long[] words) {
+        if (width == 0) {
+            return;
+        }
+        for (int i = 0; i < count; ++i) {
+            long distance = values[i] - min;
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= distance << shift;
+            if (shift + width > 64) {
+                words[word + 1] |= distance >>> (64 - shift);
+            }
+        }
+    }
+
+    /**
+     * Unpacks a block of values.
+     * @param words the packed words
+     * @param count the number of values in the block
+     * @param min the minimum of the block
+     * @param width the width of a packed value
+     * @param values the array to unpack the values into
+     */
+    static void unpack(long[] words, int count, long min, int width, long[] values) {
+        for (int i = 0; i < count; ++i) {
+            values[i] = unpack(words, i, min, width);
+        }
+    }
+
+    /**
+     * Unpacks a single value of a block.
+     * @param words the packed words
+     * @param index the index of the value in the block
+     * @param min the minimum of the block
+     * @param width the width of a packed value
+     * @return the value
+     */
+    static long unpack(long[] words, int index, long min, int width) {
+        if (width == 0) {
+            return min;
+        }
+        long bit = (long) index * width;
+        int word = (int) (bit >>> 6);
+        int shift = (int) (bit & 63);
+        long distance = words[word] >>> shift;
+        if (shift + width > 64) {
+            distance |= words[word + 1] << (64 - shift);
+        }
+        long mask = (width == 64) ? -1L : (1L << width) - 1;
+        return min + (distance & mask);
+    }
+}
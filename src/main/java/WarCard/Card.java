@@ -1,31 +1,79 @@
 package WarCard;
 
 /**
- * The Card class represents a single playing card with a rank and a suit.
+ * The Card class represents a single playing card with a rank and a suit. <br>
+ * Cards are immutable, and there is a single instance of every card - one for every card code
+ * (see {@link #getCode()}) - that all the decks and games share, so dealing and playing never allocate cards.
+ * Whether a card was drawn face down is a matter of the round it was drawn in
+ * (see {@link WarCard#isFaceDownRound()} and {@link RoundEvent#isFaceDown()}), not of the card.
  */
-public class Card {
+public final class Card {
+    /** The number of distinct cards in a standard deck, which is also the number of card codes. */
+    public static final int CODES_COUNT = Suit.values().length * Rank.values().length;
+
+    private static final byte[] RANK_VALUES = new byte[CODES_COUNT];   // the rank value of every card code
+    private static final Card[] CARDS = new Card[CODES_COUNT];          // the single instance of every card, by code
+
+    static {
+        Rank[] ranks = Rank.values();
+        Suit[] suits = Suit.values();
+        for (int code = 0; code < CODES_COUNT; ++code) {
+            RANK_VALUES[code] = (byte) ranks[code % ranks.length].getValue();
+            CARDS[code] = new Card(ranks[code % ranks.length], suits[code / ranks.length], code);
+        }
+    }
+
     private final Rank rank;
     private final Suit suit;
-    private boolean faceDown;
+    private final int code;
 
     /**
-     * Constructs a Card object with a specified rank and suit, facing up by default.
+     * Constructs the card with a specified rank and suit. Called once for every card code.
      * @param rank The rank of the card.
      * @param suit The suit of the card.
+     * @param code The code of the card.
      */
-    public Card(Rank rank, Suit suit) {
+    private Card(Rank rank, Suit suit, int code) {
         this.rank = rank;
         this.suit = suit;
-        this.faceDown = false;
+        this.code = code;
     }
 
     /**
-     * Constructs a Card object with a specified rank and default suit (hearts), facing up by default.
-     * This constructor is mainly for testing purposes.
+     * Returns the card with a specified rank and suit.
      * @param rank The rank of the card.
+     * @param suit The suit of the card.
+     * @return the single instance of the card
+     */
+    public static Card of(Rank rank, Suit suit) {
+        return CARDS[suit.ordinal() * Rank.values().length + rank.ordinal()];
+    }
+
+    /**
+     * Returns the card with a specified rank and the default suit (hearts).
+     * This method is mainly for testing purposes.
+     * @param rank The rank of the card.
+     * @return the single instance of the card
+     */
+    public static Card of(Rank rank) { //for testers
+        return of(rank, Suit.HEARTS);
+    }
+
+    /**
+     * Returns the card with the given code.
+     * @param code the code of the card, between 0 and {@link #CODES_COUNT} - 1
+     * @return the single instance of the card
      */
-    public Card(Rank rank) { //for testers
-        this(rank, Suit.HEARTS);
+    public static Card of(int code) {
+        return CARDS[code];
+    }
+
+    /**
+     * Returns all the cards indexed by their code. Shared - must not be modified.
+     * @return an array that maps a card's code to the card
+     */
+    static Card[] byCode() {
+        return CARDS;
     }
 
     /**
@@ -45,25 +93,22 @@ public class Card {
     }
 
     /**
-     * Checks if the card is facing down.
-     * @return True if the card is facing down, false otherwise.
-     */
-    public boolean isFaceDown(){
-        return faceDown;
-    }
-
-    /**
-     * Sets the card to face down.
+     * Returns the code of the card - a small number between 0 and {@link #CODES_COUNT} - 1
+     * that identifies the card by its suit and rank.
+     * @return Card's code
      */
-    public void setFaceDown(){
-        this.faceDown = true;
+    public int getCode() {
+        return code;
     }
 
     /**
-     * Sets the card to face up.
+     * Returns the value of the rank of the card with the given code, as in {@link Rank#getValue()}.
+     * Lets the game compare cards by their codes without looking up the cards themselves.
+     * @param code the code of the card
+     * @return the value of the card's rank
      */
-    public void setFaceUp(){
-        this.faceDown = false;
+    static int rankValue(int code) {
+        return RANK_VALUES[code];
     }
 
     /**
@@ -0,0 +1,115 @@
+package WarCard;
+
+import javafx.scene.image.Image;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * The CardImages class is a shared cache of the card images. <br>
+ * All 52 faces, the back of a card and the "out of cards" image are decoded once,
+ * on a background thread that is started while the application starts up, so displaying
+ * a card during the game never reads or decodes an image file on the FX thread. <br>
+ * The back and the "out of cards" image are decoded first, and are available on their own,
+ * so the first frame, which shows only face down cards, does not wait for the 52 faces.
+ */
+public final class CardImages {
+
+    private static final int BACK = 0;              // index of the back image among the special images
+    private static final int OUT_OF_CARDS = 1;      // index of the "out of cards" image among the special images
+
+    private static CompletableFuture<Image[]> specialImages;    // the back and the "out of cards" images
+    private static CompletableFuture<Image[]> faces;            // the faces, indexed by card code
+
+    private CardImages() {
+    }
+
+    /**
+     * Starts decoding all the images on a background thread, if it was not started already.
+     */
+    public static synchronized void preload() {
+        if (specialImages == null) {
+            specialImages = new CompletableFuture<>();
+            faces = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                loadInto(specialImages, CardImages::loadSpecialImages);
+                loadInto(faces, CardImages::loadFaces);
+            }, "card-images-preloader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Returns the image of the face of a card.
+     * @param card the card
+     * @return the image of the card's face
+     */
+    public static Image face(Card card) {
+        preload();
+        return faces.join()[card.getCode()];
+    }
+
+    /**
+     * Returns the image of the back of a card.
+     * @return the image of a face down card
+     */
+    public static Image back() {
+        preload();
+        return specialImages.join()[BACK];
+    }
+
+    /**
+     * Returns the image shown for a player who has run out of cards.
+     * @return the "out of cards" image
+     */
+    public static Image outOfCards() {
+        preload();
+        return specialImages.join()[OUT_OF_CARDS];
+    }
+
+    /**
+     * Decodes a group of images, and completes a future with them, or with the error that stopped the decoding.
+     * @param future the future of the group
+     * @param loader decodes the group
+     */
+    private static void loadInto(CompletableFuture<Image[]> future, Supplier<Image[]> loader) {
+        try {
+            future.complete(loader.get());
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Decodes the images that are not card faces.
+     * @return the back and the "out of cards" images
+     */
+    private static Image[] loadSpecialImages() {
+        Image[] loaded = new Image[2];
+        loaded[BACK] = load("back");
+        loaded[OUT_OF_CARDS] = load("out_of_cards");
+        return loaded;
+    }
+
+    /**
+     * Decodes the faces of all the cards.
+     * @return the images, indexed by card code
+     */
+    private static Image[] loadFaces() {
+        Image[] loaded = new Image[Card.CODES_COUNT];
+        for (int code = 0; code < Card.CODES_COUNT; ++code) {
+            loaded[code] = load(Card.of(code).toString().replace(' ', '_'));
+        }
+        return loaded;
+    }
+
+    /**
+     * Decodes a single image from the resources.
+     * @param name the name of the image file, without its extension
+     * @return the decoded image
+     */
+    private static Image load(String name) {
+        return new Image(CardImages.class.getResource("cardImg/" + name + ".png").toString());
+    }
+}
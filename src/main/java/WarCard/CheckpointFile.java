@@ -0,0 +1,156 @@
+package WarCard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The CheckpointFile class keeps the latest checkpoint of a long computation in a memory-mapped file,
+ * and replaces it atomically. <br>
+ * The file starts with the ASCII header {@code WARCKP}, a format version byte and a padding byte,
+ * followed by two slots of the same size. Every slot holds a sequence number, the length of its payload,
+ * a CRC-32 of the sequence number, the length and the payload, and then the payload itself. <br>
+ * A commit writes the new checkpoint over the slot of the older one, and forces it to the disk,
+ * so the slot of the latest checkpoint is never touched. If the process or the machine stops in the middle
+ * of a commit, the CRC of the half-written slot does not match, and the latest valid checkpoint is
+ * the one that was committed before.
+ */
+class CheckpointFile implements AutoCloseable {
+
+    static final byte FORMAT_VERSION = 1;
+    static final int DEFAULT_SLOT_SIZE = 1 << 20;
+    private static final byte[] MAGIC = "WARCKP".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = MAGIC.length + 2;
+    private static final int SLOT_HEADER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slotSize;
+    private long sequence;          // the sequence number of the latest valid checkpoint, or 0 if there is none
+    private int latestSlot;         // the slot of the latest valid checkpoint
+
+    /**
+     * Opens the given checkpoint file, or creates it if it does not exist.
+     * @param path the checkpoint file
+     * @param slotSize the size of a slot of a new file, which bounds the size of a checkpoint
+     * @throws IOException if the file cannot be opened, or is not a checkpoint file
+     */
+    CheckpointFile(Path path, int slotSize) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long fileSize = channel.size();
+        boolean created = fileSize == 0;
+        if (created) {
+            fileSize = HEADER_SIZE + 2L * slotSize;
+        } else if (fileSize < HEADER_SIZE + 2L * SLOT_HEADER_SIZE || (fileSize - HEADER_SIZE) % 2 != 0) {
+            channel.close();
+            throw new IOException("not a checkpoint file: " + path);
+        }
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        this.slotSize = (int) ((fileSize - HEADER_SIZE) / 2);
+
+        if (created) {
+            map.put(MAGIC).put(FORMAT_VERSION).put((byte) 0);
+            map.force();
+        } else {
+            byte[] magic = new byte[MAGIC.length];
+            map.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC) || map.get(MAGIC.length) != FORMAT_VERSION) {
+                channel.close();
+                throw new IOException("not a checkpoint file of version " + FORMAT_VERSION + ": " + path);
+            }
+        }
+
+        for (int slot = 0; slot < 2; ++slot) {
+            long slotSequence = map.getLong(slotOffset(slot));
+            if (slotSequence > sequence && isValid(slot)) {
+                sequence = slotSequence;
+                latestSlot = slot;
+            }
+        }
+    }
+
+    /**
+     * Returns the latest committed checkpoint.
+     * @return a read-only buffer of the checkpoint's payload, or null if no checkpoint was committed
+     */
+    ByteBuffer load() {
+        if (sequence == 0) {
+            return null;
+        }
+        int offset = slotOffset(latestSlot);
+        int length = map.getInt(offset + Long.BYTES);
+        return map.slice(offset + SLOT_HEADER_SIZE, length).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the largest payload a checkpoint may have.
+     * @return the capacity of a slot, in bytes
+     */
+    int getCapacity() {
+        return slotSize - SLOT_HEADER_SIZE;
+    }
+
+    /**
+     * Replaces the latest checkpoint with a new one, and returns once it is on the disk.
+     * @param payload the checkpoint, from its position to its limit
+     * @throws IllegalArgumentException if the payload is larger than a slot
+     */
+    void commit(ByteBuffer payload) {
+        int length = payload.remaining();
+        if (length > getCapacity()) {
+            throw new IllegalArgumentException("a checkpoint of " + length + " bytes does not fit in a slot of "
+                    + getCapacity() + " bytes");
+        }
+        int slot = (sequence == 0) ? 0 : 1 - latestSlot;
+        int offset = slotOffset(slot);
+        long next = sequence + 1;
+        map.put(offset + SLOT_HEADER_SIZE, payload, payload.position(), length);
+        map.putLong(offset, next);
+        map.putInt(offset + Long.BYTES, length);
+        map.putInt(offset + Long.BYTES + Integer.BYTES, checksum(offset, length));
+        map.force(offset, SLOT_HEADER_SIZE + length);
+        sequence = next;
+        latestSlot = slot;
+    }
+
+    /**
+     * Closes the file. The mapping itself stays valid until it is garbage collected.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    /**
+     * Checks if a slot holds a whole checkpoint.
+     */
+    private boolean isValid(int slot) {
+        int offset = slotOffset(slot);
+        int length = map.getInt(offset + Long.BYTES);
+        if (length < 0 || length > getCapacity()) {
+            return false;
+        }
+        return map.getInt(offset + Long.BYTES + Integer.BYTES) == checksum(offset, length);
+    }
+
+    /**
+     * Returns the CRC-32 of the sequence number, the length and the payload of a slot.
+     */
+    private int checksum(int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(map.slice(offset, Long.BYTES + Integer.BYTES));
+        crc.update(map.slice(offset + SLOT_HEADER_SIZE, length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,401 @@
+package WarCard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The ColumnarResults class queries a columnar results file written by {@link ColumnarResultsWriter}. <br>
+ * Opening the file reads only its header and footer. A {@link Query} is a range of values for any of the columns:
+ * the blocks whose zone maps rule out the query are skipped, the blocks whose zone maps are entirely inside it
+ * match without being read, and only the columns the query needs are read from the other blocks. A seed is
+ * looked up through the Bloom filters of the blocks. <br>
+ * The blocks are mapped into memory once, when the file is opened, in windows of {@link #WINDOW_BYTES}
+ * that overlap by the largest column of a block, so every column and Bloom filter is read with a single
+ * bulk copy out of the window it starts in. <br>
+ * A ColumnarResults may be used by a single thread.
+ */
+public class ColumnarResults implements AutoCloseable {
+
+    private static final int COLUMNS = ColumnarResultsWriter.COLUMNS;
+    static final long WINDOW_BYTES = 1L << 30;
+    // the most bytes read at once: a column of 64-bit values, which is larger than a Bloom filter
+    private static final long OVERLAP_BYTES = (long) ColumnarResultsWriter.BLOCK_ROWS * Long.BYTES;
+
+    private final FileChannel channel;
+    private final long rowsCount;
+    private final int blocksCount;
+    private final LongBuffer[] windows;     // the words of the blocks, from the end of the header on
+
+    // the footer, by block (and column)
+    private final long[] firstRows;
+    private final int[] blockRows;
+    private final long[] bloomOffsets;
+    private final int[] bloomWords;
+    private final long[][] offsets;
+    private final long[][] mins;
+    private final long[][] maxs;
+    private final int[][] widths;
+
+    // scratch space for a single block
+    private final long[] words = new long[ColumnarResultsWriter.BLOCK_ROWS];
+    private final long[][] values = new long[COLUMNS][ColumnarResultsWriter.BLOCK_ROWS];
+
+    /**
+     * Opens a columnar results file.
+     * @param path the file to query
+     * @throws IOException if the file cannot be read, or is not a columnar results file
+     */
+    public ColumnarResults(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer header = ByteBuffer.allocate(ColumnarResultsWriter.HEADER_SIZE);
+        readFully(header, 0);
+        byte[] magic = new byte[ColumnarResultsWriter.MAGIC.length];
+        header.get(0, magic);
+        if (!Arrays.equals(magic, ColumnarResultsWriter.MAGIC)
+                || header.get(magic.length) != ColumnarResultsWriter.FORMAT_VERSION) {
+            channel.close();
+            throw new IOException("not a columnar results file of version " + ColumnarResultsWriter.FORMAT_VERSION
+                    + ": " + path);
+        }
+        header.position(magic.length + 2);
+        rowsCount = header.getLong();
+        blocksCount = header.getInt();
+        long footerOffset = header.getLong();
+
+        // the blocks are written in whole words from the end of the header, so the windows hold whole words
+        long dataBytes = footerOffset - ColumnarResultsWriter.HEADER_SIZE;
+        windows = new LongBuffer[(int) ((dataBytes + WINDOW_BYTES - 1) / WINDOW_BYTES)];
+        for (int w = 0; w < windows.length; ++w) {
+            long start = w * WINDOW_BYTES;
+            long size = Math.min(WINDOW_BYTES + OVERLAP_BYTES, dataBytes - start);
+            windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, ColumnarResultsWriter.HEADER_SIZE + start, size)
+                    .asLongBuffer();
+        }
+
+        firstRows = new long[blocksCount];
+        blockRows = new int[blocksCount];
+        bloomOffsets = new long[blocksCount];
+        bloomWords = new int[blocksCount];
+        offsets = new long[blocksCount][COLUMNS];
+        mins = new long[blocksCount][COLUMNS];
+        maxs = new long[blocksCount][COLUMNS];
+        widths = new int[blocksCount][COLUMNS];
+
+        ByteBuffer footer = ByteBuffer.allocate(blocksCount * ColumnarResultsWriter.FOOTER_BLOCK_SIZE);
+        readFully(footer, footerOffset);
+        footer.flip();
+        long firstRow = 0;
+        for (int block = 0; block < blocksCount; ++block) {
+            firstRows[block] = firstRow;
+            blockRows[block] = footer.getInt();
+            bloomOffsets[block] = footer.getLong();
+            bloomWords[block] = footer.getInt();
+            for (int column = 0; column < COLUMNS; ++column) {
+                offsets[block][column] = footer.getLong();
+                mins[block][column] = footer.getLong();
+                maxs[block][column] = footer.getLong();
+                widths[block][column] = footer.get();
+            }
+            firstRow += blockRows[block];
+        }
+    }
+
+    /**
+     * Returns the number of rows in the file.
+     * @return the number of rows
+     */
+    public long size() {
+        return rowsCount;
+    }
+
+    /**
+     * Returns the number of blocks in the file.
+     * @return the number of blocks
+     */
+    public int getBlocksCount() {
+        return blocksCount;
+    }
+
+    /**
+     * Creates a query that matches all the rows, to be narrowed by its ranges.
+     * @return a new query
+     */
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Finds the row of a seed.
+     * @param seed the seed to look for
+     * @return the index of the first row of the seed, or -1 if no game was dealt from it
+     * @throws IOException if the file cannot be read
+     */
+    public long findRow(long seed) throws IOException {
+        int seedColumn = ResultColumn.SEED.ordinal();
+        for (int block = 0; block < blocksCount; ++block) {
+            if (seed < mins[block][seedColumn] || seed > maxs[block][seedColumn]) {
+                continue;
+            }
+            long[] bloom = new long[bloomWords[block]];
+            readWords(bloomOffsets[block], bloom, bloom.length);
+            if (!ColumnarResultsWriter.mayContain(bloom, seed)) {
+                continue;
+            }
+            long[] seeds = readColumn(block, seedColumn);
+            for (int i = 0; i < blockRows[block]; ++i) {
+                if (seeds[i] == seed) {
+                    return firstRows[block] + i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a single value of a row.
+     * @param column the column of the value
+     * @param row the index of the row
+     * @return the value
+     * @throws IOException if the file cannot be read
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    public long get(ResultColumn column, long row) throws IOException {
+        if (row < 0 || row >= rowsCount) {
+            throw new IndexOutOfBoundsException("row " + row + " of " + rowsCount);
+        }
+        int block = Arrays.binarySearch(firstRows, row);
+        if (block < 0) {
+            block = -block - 2;
+        }
+        int c = column.ordinal();
+        int index = (int) (row - firstRows[block]);
+        int wordsCount = BitPacking.words(blockRows[block], widths[block][c]);
+        readWords(offsets[block][c], words, wordsCount);
+        return BitPacking.unpack(words, index, mins[block][c], widths[block][c]);
+    }
+
+    /**
+     * Closes the file.
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads and unpacks a column of a block.
+     * @return the values of the column, valid until the column is read from another block
+     */
+    private long[] readColumn(int block, int column) {
+        int count = blockRows[block];
+        int width = widths[block][column];
+        int wordsCount = BitPacking.words(count, width);
+        if (wordsCount > 0) {
+            readWords(offsets[block][column], words, wordsCount);
+        }
+        BitPacking.unpack(words, count, mins[block][column], width, values[column]);
+        return values[column];
+    }
+
+    /**
+     * Copies words of the blocks out of the window that holds them.
+     * @param offset the offset of the first word in the file
+     */
+    private void readWords(long offset, long[] destination, int wordsCount) {
+        long dataOffset = offset - ColumnarResultsWriter.HEADER_SIZE;
+        int window = (int) (dataOffset / WINDOW_BYTES);
+        int index = (int) ((dataOffset - window * WINDOW_BYTES) / Long.BYTES);
+        windows[window].get(index, destination, 0, wordsCount);
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new IOException("the columnar results file is truncated");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * The Query class selects the rows whose values are inside a range for every column.
+     */
+    public final class Query {
+        private final long[] from = new long[COLUMNS];
+        private final long[] to = new long[COLUMNS];
+        private final boolean[] constrained = new boolean[COLUMNS];
+        private int blocksRead;     // blocks that were read by the last run of the query
+
+        private Query() {
+            Arrays.fill(from, Long.MIN_VALUE);
+            Arrays.fill(to, Long.MAX_VALUE);
+        }
+
+        /**
+         * Narrows the query to the rows whose value of a column is inside a range.
+         * @param column the column
+         * @param min the smallest value, inclusive
+         * @param max the largest value, inclusive
+         * @return this query
+         */
+        public Query range(ResultColumn column, long min, long max) {
+            int c = column.ordinal();
+            from[c] = Math.max(from[c], min);
+            to[c] = Math.min(to[c], max);
+            constrained[c] = true;
+            return this;
+        }
+
+        /**
+         * Narrows the query to the rows whose value of a column is at least the given value.
+         * @param column the column
+         * @param min the smallest value, inclusive
+         * @return this query
+         */
+        public Query atLeast(ResultColumn column, long min) {
+            return range(column, min, Long.MAX_VALUE);
+        }
+
+        /**
+         * Narrows the query to the rows with the given value of a column.
+         * @param column the column
+         * @param value the value
+         * @return this query
+         */
+        public Query equalTo(ResultColumn column, long value) {
+            return range(column, value, value);
+        }
+
+        /**
+         * Counts the rows that match the query.
+         * @return the number of matching rows
+         * @throws IOException if the file cannot be read
+         */
+        public long count() throws IOException {
+            return run(null);
+        }
+
+        /**
+         * Returns the seeds of the rows that match the query, in the order of the file.
+         * @return the seeds of the matching games
+         * @throws IOException if the file cannot be read
+         */
+        public long[] seeds() throws IOException {
+            long[][] seeds = {new long[16]};
+            long count = run(seeds);
+            return Arrays.copyOf(seeds[0], (int) count);
+        }
+
+        /**
+         * Returns the number of blocks that the last run of the query read - the blocks that were neither
+         * ruled out nor matched entirely by their zone maps.
+         * @return the number of blocks read
+         */
+        public int getBlocksRead() {
+            return blocksRead;
+        }
+
+        /**
+         * Runs the query over all the blocks.
+         * @param seeds holds the array the seeds of the matching rows are added to, or null to only count the rows
+         * @return the number of matching rows
+         */
+        private long run(long[][] seeds) {
+            blocksRead = 0;
+            long count = 0;
+            int seedColumn = ResultColumn.SEED.ordinal();
+            for (int block = 0; block < blocksCount; ++block) {
+                boolean skip = false;
+                boolean covered = true;     // every row of the block matches
+                for (int c = 0; c < COLUMNS; ++c) {
+                    if (!constrained[c]) {
+                        continue;
+                    }
+                    if (maxs[block][c] < from[c] || mins[block][c] > to[c]) {
+                        skip = true;
+                        break;
+                    }
+                    covered &= mins[block][c] >= from[c] && maxs[block][c] <= to[c];
+                }
+                if (skip) {
+                    continue;
+                }
+
+                int rows = blockRows[block];
+                if (covered && seeds == null) {
+                    count += rows;
+                    continue;
+                }
+                blocksRead++;
+                for (int c = 0; c < COLUMNS; ++c) {
+                    if (constrained[c] && !(mins[block][c] >= from[c] && maxs[block][c] <= to[c])) {
+                        readColumn(block, c);
+                    }
+                }
+                if (seeds != null) {
+                    readColumn(block, seedColumn);
+                }
+                for (int i = 0; i < rows; ++i) {
+                    if (matches(block, i)) {
+                        if (seeds != null) {
+                            if (count == seeds[0].length) {
+                                seeds[0] = Arrays.copyOf(seeds[0], 2 * seeds[0].length);
+                            }
+                            seeds[0][(int) count] = values[seedColumn][i];
+                        }
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Checks a row of a block against the columns whose zone maps did not settle it.
+         */
+        private boolean matches(int block, int row) {
+            for (int c = 0; c < COLUMNS; ++c) {
+                if (constrained[c] && !(mins[block][c] >= from[c] && maxs[block][c] <= to[c])) {
+                    long value = values[c][row];
+                    if (value < from[c] || value > to[c]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (ColumnarResults results = new ColumnarResults(Path.of(args.length > 0 ? args[0] : "results.wcol"))) {
+            System.out.println("rows: " + results.size() + ", blocks: " + results.getBlocksCount());
+
+            long start = System.nanoTime();
+            Query chains = results.query().atLeast(ResultColumn.LONGEST_WAR_CHAIN, 4);
+            long[] seeds = chains.seeds();
+            System.out.printf("seeds with a war chain of 4 or more: %d (%d blocks read, %.1f ms)%n",
+                    seeds.length, chains.getBlocksRead(), (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            Query longGames = results.query().atLeast(ResultColumn.ROUNDS, 5001)
+                    .equalTo(ResultColumn.WINNER, 0).equalTo(ResultColumn.FLAGS, 0);
+            long count = longGames.count();
+            System.out.printf("games longer than 5,000 rounds won by the computer: %d (%d blocks read, %.1f ms)%n",
+                    count, longGames.getBlocksRead(), (System.nanoTime() - start) / 1e6);
+
+            if (seeds.length > 0) {
+                start = System.nanoTime();
+                long row = results.findRow(seeds[seeds.length / 2]);
+                System.out.printf("seed %d: row %d, %d rounds (%.1f ms)%n", seeds[seeds.length / 2], row,
+                        results.get(ResultColumn.ROUNDS, row), (System.nanoTime() - start) / 1e6);
+            }
+        }
+    }
+}
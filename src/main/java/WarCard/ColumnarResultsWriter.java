@@ -0,0 +1,300 @@
+package WarCard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The ColumnarResultsWriter class writes the results of single games to a columnar file, which
+ * {@link ColumnarResults} queries. <br>
+ * The rows are written in blocks of {@link #BLOCK_ROWS} rows, and every block holds each {@link ResultColumn}
+ * on its own, compressed with {@link BitPacking}, followed by a Bloom filter of the block's seeds. The footer
+ * of the file keeps, for every block and column, the location of the column's data and the minimum and maximum
+ * of its values (the zone map), so a query skips the blocks whose zone maps rule them out, and reads only the
+ * columns it needs from the other blocks. The Bloom filters are the index on seed: a seed is looked up only
+ * in the blocks whose filter may contain it. <br>
+ * The zone maps of a column are selective when the rows of a block have close values, so the writer can
+ * cluster the rows by a column: the rows of {@link #CLUSTER_BLOCKS} blocks are buffered and sorted by the
+ * column before they are cut into blocks. <br>
+ * The file layout, in big-endian order:
+ * <ul>
+ *     <li>the ASCII header {@code WARCOL}, a format version byte and a padding byte, followed by the number
+ *     of rows (a long), the number of blocks (an int) and the offset of the footer (a long)</li>
+ *     <li>the blocks: the packed words of every column, then the words of the Bloom filter</li>
+ *     <li>the footer, for every block: the number of rows (an int), the offset and the number of words
+ *     of the Bloom filter (a long and an int), and for every column the offset of its words (a long),
+ *     its minimum and maximum (longs) and the width of a packed value (a byte)</li>
+ * </ul>
+ * A writer must be used by a single thread.
+ */
+public class ColumnarResultsWriter implements AutoCloseable {
+
+    static final byte FORMAT_VERSION = 1;
+    static final byte[] MAGIC = "WARCOL".getBytes(StandardCharsets.US_ASCII);
+    static final int HEADER_SIZE = MAGIC.length + 2 + Long.BYTES + Integer.BYTES + Long.BYTES;
+    static final int BLOCK_ROWS = 1 << 13;
+    static final int CLUSTER_BLOCKS = 64;
+    static final int COLUMNS = ResultColumn.values().length;
+    static final int FOOTER_BLOCK_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES
+            + COLUMNS * (3 * Long.BYTES + 1);
+
+    // the Bloom filters of the seeds
+    static final int BLOOM_BITS_PER_ROW = 10;
+    static final int BLOOM_HASHES = 7;
+
+    private final FileChannel channel;
+    private final ResultColumn clusterColumn;   // the column the rows are sorted by, or null to keep their order
+    private final long[][] rows;                // the buffered rows, by column
+    private int buffered;
+    private long rowsCount;
+    private long position;                      // the offset in the file at which the next block is written
+    private ByteBuffer footer;
+
+    // scratch space for a single block
+    private final long[] blockValues = new long[BLOCK_ROWS];
+    private final long[] words = new long[BLOCK_ROWS];
+    private final long[] sortKeys;
+
+    /**
+     * Creates (or truncates) a columnar results file that keeps the rows in the order they are appended.
+     * @param path the file to write
+     * @throws IOException if the file cannot be opened
+     */
+    public ColumnarResultsWriter(Path path) throws IOException {
+        this(path, null);
+    }
+
+    /**
+     * Creates (or truncates) a columnar results file.
+     * @param path the file to write
+     * @param clusterColumn the column to sort the rows by within every {@link #CLUSTER_BLOCKS} blocks,
+     *                      or null to keep the rows in the order they are appended
+     * @throws IOException if the file cannot be opened
+     */
+    public ColumnarResultsWriter(Path path, ResultColumn clusterColumn) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.clusterColumn = clusterColumn;
+        int bufferRows = (clusterColumn == null) ? BLOCK_ROWS : BLOCK_ROWS * CLUSTER_BLOCKS;
+        rows = new long[COLUMNS][bufferRows];
+        sortKeys = (clusterColumn == null) ? null : new long[bufferRows];
+        position = HEADER_SIZE;
+        footer = ByteBuffer.allocate(16 * FOOTER_BLOCK_SIZE);
+    }
+
+    /**
+     * Appends the result of a game that has just been played.
+     * @param seed the seed of the game's deal
+     * @param warCard the game, after its last round
+     * @param finished false if the game was stopped before it ended
+     * @throws IOException if the file cannot be written
+     */
+    public void append(long seed, WarCard warCard, boolean finished) throws IOException {
+        int flags = (finished ? 0 : ResultStore.UNFINISHED) | (finished && warCard.isCycle() ? ResultStore.CYCLE : 0);
+        append(seed, finished ? warCard.getWinnerIndex() : -1, warCard.getRoundsCount(),
+                warCard.getWarsCount(), warCard.getLongestWarChain(), flags);
+    }
+
+    /**
+     * Appends all the records of a results store, in the order of the store.
+     * @param store the store to copy
+     * @throws IOException if the file cannot be written
+     */
+    public void appendAll(ResultStore store) throws IOException {
+        for (long index = 0; index < store.size(); ++index) {
+            ResultStore.Cursor cursor = store.get(index);
+            append(cursor.getSeed(), cursor.getWinner(), cursor.getRounds(), cursor.getWars(),
+                    cursor.getLongestWarChain(), (cursor.isCycle() ? ResultStore.CYCLE : 0)
+                            | (cursor.isUnfinished() ? ResultStore.UNFINISHED : 0));
+        }
+    }
+
+    /**
+     * Appends the result of a game.
+     * @param seed the seed of the game's deal
+     * @param winner the index of the winner, or -1 if there is none
+     * @param rounds the number of rounds of the game
+     * @param wars the number of wars of the game
+     * @param longestWarChain the most wars that broke out one after the other in a single battle
+     * @param flags {@link ResultStore#CYCLE} and {@link ResultStore#UNFINISHED}
+     * @throws IOException if the file cannot be written
+     */
+    void append(long seed, int winner, int rounds, int wars, int longestWarChain, int flags) throws IOException {
+        rows[ResultColumn.SEED.ordinal()][buffered] = seed;
+        rows[ResultColumn.WINNER.ordinal()][buffered] = winner;
+        rows[ResultColumn.ROUNDS.ordinal()][buffered] = rounds;
+        rows[ResultColumn.WARS.ordinal()][buffered] = wars;
+        rows[ResultColumn.LONGEST_WAR_CHAIN.ordinal()][buffered] = longestWarChain;
+        rows[ResultColumn.FLAGS.ordinal()][buffered] = flags;
+        buffered++;
+        rowsCount++;
+        if (buffered == rows[0].length) {
+            flushRows();
+        }
+    }
+
+    /**
+     * Writes the buffered rows, the footer and the header, and closes the file.
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushRows();
+            long footerOffset = position;
+            int blocksCount = footer.position() / FOOTER_BLOCK_SIZE;
+            writeFully(footer.flip(), footerOffset);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).put(FORMAT_VERSION).put((byte) 0);
+            header.putLong(rowsCount).putInt(blocksCount).putLong(footerOffset);
+            writeFully(header.flip(), 0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Sorts the buffered rows by the cluster column, if there is one, and writes them as blocks.
+     */
+    private void flushRows() throws IOException {
+        if (buffered == 0) {
+            return;
+        }
+        int[] order = null;
+        if (clusterColumn != null) {
+            // sorts (value, row) pairs packed in longs, the value in the signed high half; the cluster columns
+            // other than the seed fit in 32 bits, and the seeds are sorted by their high 32 bits
+            long[] values = rows[clusterColumn.ordinal()];
+            for (int i = 0; i < buffered; ++i) {
+                long key = (clusterColumn == ResultColumn.SEED) ? values[i] >> 32 : values[i];
+                sortKeys[i] = (key << 32) | i;
+            }
+            Arrays.sort(sortKeys, 0, buffered);
+            order = new int[buffered];
+            for (int i = 0; i < buffered; ++i) {
+                order[i] = (int) sortKeys[i];
+            }
+        }
+        for (int from = 0; from < buffered; from += BLOCK_ROWS) {
+            writeBlock(order, from, Math.min(BLOCK_ROWS, buffered - from));
+        }
+        buffered = 0;
+    }
+
+    /**
+     * Writes a single block of the buffered rows.
+     * @param order the order of the rows, or null to write them in the order they were appended
+     * @param from the first row of the block in the order
+     * @param count the number of rows in the block
+     */
+    private void writeBlock(int[] order, int from, int count) throws IOException {
+        if (footer.remaining() < FOOTER_BLOCK_SIZE) {
+            footer = ByteBuffer.allocate(2 * footer.capacity()).put(footer.flip());
+        }
+        int footerStart = footer.position();
+        footer.putInt(count).putLong(0).putInt(0);   // the Bloom filter is written after the columns
+
+        for (int column = 0; column < COLUMNS; ++column) {
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < count; ++i) {
+                long value = rows[column][(order == null) ? from + i : order[from + i]];
+                blockValues[i] = value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            int width = BitPacking.width(min, max);
+            int wordsCount = BitPacking.words(count, width);
+            Arrays.fill(words, 0, wordsCount, 0);
+            BitPacking.pack(blockValues, count, min, width, words);
+            footer.putLong(position).putLong(min).putLong(max).put((byte) width);
+            writeWords(words, wordsCount);
+
+            if (column == ResultColumn.SEED.ordinal()) {
+                long[] bloom = bloomFilter(blockValues, count);
+                footer.putLong(footerStart + Integer.BYTES, position).putInt(footerStart + Integer.BYTES + Long.BYTES,
+                        bloom.length);
+                writeWords(bloom, bloom.length);
+            }
+        }
+    }
+
+    private void writeWords(long[] values, int count) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(count * Long.BYTES);
+        buffer.asLongBuffer().put(values, 0, count);
+        writeFully(buffer, position);
+        position += (long) count * Long.BYTES;
+    }
+
+    private void writeFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Builds the Bloom filter of the seeds of a block.
+     * @param seeds the seeds of the block
+     * @param count the number of rows in the block
+     * @return the words of the filter
+     */
+    static long[] bloomFilter(long[] seeds, int count) {
+        long[] bloom = new long[Math.max(1, (count * BLOOM_BITS_PER_ROW + 63) / 64)];
+        long bits = 64L * bloom.length;
+        for (int i = 0; i < count; ++i) {
+            long hash = mix(seeds[i]);
+            long step = mix(hash) | 1;
+            for (int k = 0; k < BLOOM_HASHES; ++k) {
+                long bit = Long.remainderUnsigned(hash + k * step, bits);
+                bloom[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        return bloom;
+    }
+
+    /**
+     * Checks if a Bloom filter may contain a seed.
+     * @param bloom the words of the filter
+     * @param seed the seed to look for
+     * @return false if the seed is surely not in the filter's block, true if it may be
+     */
+    static boolean mayContain(long[] bloom, long seed) {
+        long bits = 64L * bloom.length;
+        long hash = mix(seed);
+        long step = mix(hash) | 1;
+        for (int k = 0; k < BLOOM_HASHES; ++k) {
+            long bit = Long.remainderUnsigned(hash + k * step, bits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path storePath = Path.of(args.length > 0 ? args[0] : "results.wrs");
+        Path columnarPath = Path.of(args.length > 1 ? args[1] : "results.wcol");
+        ResultColumn clusterColumn = args.length > 2 ? ResultColumn.valueOf(args[2].toUpperCase()) : null;
+
+        long start = System.nanoTime();
+        try (ResultStore store = new ResultStore(storePath);
+             ColumnarResultsWriter writer = new ColumnarResultsWriter(columnarPath, clusterColumn)) {
+            writer.appendAll(store);
+        }
+        System.out.printf("%s written in %.2f seconds%n", columnarPath, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,95 @@
+package WarCard;
+
+/**
+ * The CycleDetector class finds games of War that repeat themselves forever. <br>
+ * It is fed with the state of the game after every battle that emptied the table. At that point the
+ * state is only the order of the players' hands, and since the rules are deterministic, reaching the same
+ * state twice means the game loops. <br>
+ * The detection uses Brent's algorithm: instead of storing every state, only one saved state is kept,
+ * and it is replaced whenever the number of states seen since it was saved reaches a power of two.
+ * States are compared by a fingerprint first, and only a matching fingerprint is compared card by card.
+ */
+class CycleDetector {
+
+    private final byte[][] savedHands;  // the hand of every player in the saved state
+    private final int[] savedSizes;
+    private long savedFingerprint;
+
+    private int power;                  // the number of states after which the saved state is replaced
+    private int period;                 // the number of states seen since the state was saved
+
+    /**
+     * Constructs a CycleDetector for the given number of players, with hands of up to the given number of cards.
+     * @param playersCount the number of players in the game
+     * @param capacity the maximal number of cards in a hand
+     */
+    CycleDetector(int playersCount, int capacity) {
+        savedHands = new byte[playersCount][capacity];
+        savedSizes = new int[playersCount];
+    }
+
+    /**
+     * Forgets every state seen so far, and saves the given state as the first one.
+     * @param players the players of the game
+     */
+    void reset(Player[] players) {
+        save(players, fingerprint(players));
+        power = 1;
+        period = 0;
+    }
+
+    /**
+     * Feeds the detector with the state reached after the last battle.
+     * @param players the players of the game
+     * @return the number of battles in the cycle if the state was already seen, or 0 otherwise
+     */
+    int step(Player[] players) {
+        long fingerprint = fingerprint(players);
+        period++;
+        if (fingerprint == savedFingerprint && sameAsSaved(players)) {
+            return period;
+        }
+
+        if (period == power) {
+            save(players, fingerprint);
+            power *= 2;
+            period = 0;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a fingerprint of the state made of the players' hands.
+     * @param players the players of the game
+     * @return the fingerprint of the state
+     */
+    static long fingerprint(Player[] players) {
+        long fingerprint = 0;
+        for (Player player : players) {
+            fingerprint = fingerprint * 0x9e3779b97f4a7c15L ^ player.getHandHash();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Checks if every player holds exactly the hand of the saved state.
+     */
+    private boolean sameAsSaved(Player[] players) {
+        for (int i = 0; i < players.length; ++i) {
+            if (!players[i].handEquals(savedHands[i], savedSizes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the given state.
+     */
+    private void save(Player[] players, long fingerprint) {
+        for (int i = 0; i < players.length; ++i) {
+            savedSizes[i] = players[i].copyHand(savedHands[i]);
+        }
+        savedFingerprint = fingerprint;
+    }
+}
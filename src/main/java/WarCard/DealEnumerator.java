@@ -0,0 +1,303 @@
+package WarCard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The DealEnumerator class computes exact results for reduced decks by playing every possible deal. <br>
+ * A reduced deck holds the lowest few ranks in a few suits. A deal is the order of the deck that
+ * {@link Deck#dealCards(Player...)} splits between the players, and the game only ever compares the
+ * ranks of the cards, so two deals that differ only in the suits of their cards play exactly the same game.
+ * Such deals are canonicalized by enumerating the sequences of ranks instead of the orders of the cards:
+ * the k-th card of a rank in the sequence always gets the k-th suit. Every rank sequence stands for
+ * the same number of card orders - (suits!) to the power of the number of ranks - so the results
+ * over the rank sequences are the exact results over all the deals. <br>
+ * The sequences are enumerated in lexicographic order and split between the cores with fork-join:
+ * every task fixes a prefix of the sequence, and splits further while the rest is too long.
+ * The deals of a leaf task may share a transposition cache, which finishes a deal once it reaches a state
+ * that an earlier deal of the task played through. It is off by default: the games of reduced decks last
+ * a few dozen rounds, too few for the hits to pay for a lookup in every round, and on 12 to 20 cards it made
+ * the enumeration slower. <br>
+ * When two players pick up the table sorted by rank, swapping their hands only swaps their roles, so
+ * only one deal of every such pair is played, and its mirrored result is recorded for the other one.
+ * That halves the work. It does not hold for the standard rules: the table is picked up in the order
+ * it was drawn, the computer's card first, and swapping the hands changes the course of about a third
+ * of the games. <br>
+ * There are (ranks * suits)! / (suits!)^ranks rank sequences, so the enumeration only reaches small decks.
+ * A core plays 100,000 to 300,000 deals a second: 12 cards (4 ranks of 3 suits, 369,600 sequences) take
+ * seconds, and 16 cards (4 ranks of 4 suits, 63 million sequences) take minutes. A 20-card deck of 5 ranks
+ * of 4 suits has 3 * 10^11 sequences, which take about 300 core-hours, or half as many with the sorted
+ * pickup. A deck of 24 cards or more is out of reach.
+ */
+public class DealEnumerator {
+
+    private static final int LEAF_POSITIONS = 10;       // a task enumerates the rest of the sequence alone when this short
+    private static final int DEFAULT_MAX_ROUNDS = 100_000;
+    private static final Rank[] RANKS_BY_VALUE = Arrays.stream(Rank.values())
+            .sorted(Comparator.comparingInt(Rank::getValue))
+            .toArray(Rank[]::new);
+
+    private final ForkJoinPool pool;
+    private final int maxRounds;
+    private final int cacheCapacity;            // the capacity of the cache of every leaf task, or 0 for none
+    private Rules rules;
+
+    /**
+     * Constructs a DealEnumerator that uses the common fork-join pool.
+     */
+    public DealEnumerator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MAX_ROUNDS, 0);
+    }
+
+    /**
+     * Constructs a DealEnumerator that plays its games on the given pool.
+     * @param pool the pool that executes the games
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     * @param cacheCapacity the capacity of the transposition cache shared by the deals of every leaf task,
+     *                      or 0 to play every deal to its end
+     */
+    public DealEnumerator(ForkJoinPool pool, int maxRounds, int cacheCapacity) {
+        this.pool = pool;
+        this.maxRounds = maxRounds;
+        this.cacheCapacity = cacheCapacity;
+        this.rules = Rules.STANDARD;
+    }
+
+    /**
+     * Sets the rules every deal is played by.
+     * @param rules the rules of the games
+     * @throws IllegalStateException if the rules are not deterministic and the games share a transposition cache
+     */
+    public void setRules(Rules rules) {
+        if (cacheCapacity > 0 && !rules.isDeterministic()) {
+            throw new IllegalStateException("games of the rules " + rules + " cannot share a transposition cache");
+        }
+        this.rules = rules;
+    }
+
+    /**
+     * Checks if a game of two players is the mirror image of the game with their hands swapped,
+     * which is true when the winner of a battle picks up the table sorted by rank, whoever drew first.
+     * @return true if the hands of two players can be swapped
+     */
+    private static boolean handsCanBeSwapped(int playersCount, Rules rules) {
+        return playersCount == 2 && rules.getPickup() == Rules.Pickup.SORTED;
+    }
+
+    /**
+     * Plays every deal of a reduced deck to its end, and aggregates their results.
+     * @param ranks the number of ranks in the deck, starting from the lowest
+     * @param suits the number of suits of every rank
+     * @param playersCount the number of players the deck is dealt to
+     * @return the results of all the distinct deals
+     * @throws IllegalArgumentException if the deck cannot be built or dealt equally
+     */
+    public SimulationResult enumerate(int ranks, int suits, int playersCount) {
+        if (ranks < 1 || ranks > RANKS_BY_VALUE.length || suits < 1 || suits > Suit.values().length) {
+            throw new IllegalArgumentException("a reduced deck has 1 to " + RANKS_BY_VALUE.length
+                    + " ranks and 1 to " + Suit.values().length + " suits");
+        }
+        if ((ranks * suits) % playersCount != 0) {
+            throw new IllegalArgumentException(ranks * suits + " cards cannot be dealt equally to "
+                    + playersCount + " players");
+        }
+        int[] counts = new int[ranks];
+        Arrays.fill(counts, suits);
+        return pool.invoke(new EnumerationTask(new byte[ranks * suits], 0, counts, playersCount,
+                handsCanBeSwapped(playersCount, rules)));
+    }
+
+    /**
+     * Returns the number of card orders that every rank sequence stands for.
+     * @param ranks the number of ranks in the deck
+     * @param suits the number of suits of every rank
+     * @return (suits!) to the power of ranks
+     */
+    public static long dealsPerSequence(int ranks, int suits) {
+        long factorial = 1;
+        for (int i = 2; i <= suits; ++i) {
+            factorial *= i;
+        }
+        long deals = 1;
+        for (int i = 0; i < ranks; ++i) {
+            deals = Math.multiplyExact(deals, factorial);
+        }
+        return deals;
+    }
+
+    /**
+     * A fork-join task that plays all the rank sequences that start with a given prefix.
+     */
+    private class EnumerationTask extends RecursiveTask<SimulationResult> {
+        private final byte[] sequence;  // the ranks of the deal, by their index in RANKS_BY_VALUE
+        private final int prefix;       // the number of positions fixed for this task
+        private final int[] counts;     // the number of cards of every rank that are not in the prefix
+        private final int playersCount;
+        private final boolean swapHands;    // true if only one deal of every pair with swapped hands is played
+
+        EnumerationTask(byte[] sequence, int prefix, int[] counts, int playersCount, boolean swapHands) {
+            this.sequence = sequence;
+            this.prefix = prefix;
+            this.counts = counts;
+            this.playersCount = playersCount;
+            this.swapHands = swapHands;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (sequence.length - prefix <= LEAF_POSITIONS) {
+                return playAll();
+            }
+
+            List<EnumerationTask> subtasks = new ArrayList<>();
+            for (int rank = 0; rank < counts.length; ++rank) {
+                if (counts[rank] > 0) {
+                    byte[] extended = sequence.clone();
+                    extended[prefix] = (byte) rank;
+                    int[] remaining = counts.clone();
+                    remaining[rank]--;
+                    subtasks.add(new EnumerationTask(extended, prefix + 1, remaining, playersCount, swapHands));
+                }
+            }
+            SimulationResult result = new SimulationResult();
+            for (EnumerationTask subtask : invokeAll(subtasks)) {
+                result.merge(subtask.join());
+            }
+            return result;
+        }
+
+        /**
+         * Plays every ordering of the remaining ranks after the prefix.
+         */
+        private SimulationResult playAll() {
+            int position = prefix;
+            for (int rank = 0; rank < counts.length; ++rank) {  // the first ordering is the sorted one
+                for (int i = 0; i < counts[rank]; ++i) {
+                    sequence[position++] = (byte) rank;
+                }
+            }
+
+            WarCard warCard = new WarCard(playersCount, 1, rules);
+            if (cacheCapacity > 0) {
+                warCard.setTranspositionCache(new TranspositionCache(cacheCapacity), maxRounds);
+            }
+            int handSize = sequence.length / playersCount;
+            byte[][] hands = new byte[playersCount][handSize];
+            int[] sizes = new int[playersCount];
+            Arrays.fill(sizes, handSize);
+            int[] occurrences = new int[counts.length];
+            SimulationResult result = new SimulationResult();
+            do {
+                int order = swapHands ? compareHalves(sequence) : 0;
+                if (order > 0) {
+                    continue;       // the mirror of the deal with the hands swapped, which is recorded twice
+                }
+                deal(hands, occurrences);
+                warCard.startGame(hands, sizes);
+                boolean gameIsOn = true;
+                while (gameIsOn && warCard.getRoundsCount() < maxRounds) {
+                    gameIsOn = warCard.exeRound();
+                }
+                result.record(warCard, !gameIsOn);
+                if (order < 0) {
+                    recordMirror(result, warCard, !gameIsOn);
+                }
+            } while (nextOrdering(sequence, prefix));
+            return result;
+        }
+
+        /**
+         * Translates the rank sequence to the hands of the players, giving the k-th card of every rank
+         * the k-th suit. The first cards of the sequence are the top of the first player's hand.
+         */
+        private void deal(byte[][] hands, int[] occurrences) {
+            Arrays.fill(occurrences, 0);
+            int handSize = hands[0].length;
+            for (int i = 0; i < sequence.length; ++i) {
+                int rank = sequence[i];
+                int suit = occurrences[rank]++;
+                hands[i / handSize][i % handSize] = (byte) (suit * Rank.values().length + RANKS_BY_VALUE[rank].ordinal());
+            }
+        }
+    }
+
+    /**
+     * Compares the first half of a sequence, the hand of the computer, to its second half, the hand of the user.
+     * @return a negative number, zero or a positive number as the first half is lower than, equal to
+     *         or higher than the second half in lexicographic order
+     */
+    static int compareHalves(byte[] sequence) {
+        int half = sequence.length / 2;
+        return Arrays.compare(sequence, 0, half, sequence, half, sequence.length);
+    }
+
+    /**
+     * Records the game of two players with their hands swapped: the same game, won by the other player.
+     * @param result the result to record the game into
+     * @param warCard the game that was played, with the hands as they were dealt
+     * @param finished false if the game was stopped before it ended
+     */
+    private static void recordMirror(SimulationResult result, WarCard warCard, boolean finished) {
+        boolean cycle = finished && warCard.isCycle();
+        int winnerIndex = warCard.getWinnerIndex();
+        result.record(2, finished, cycle, (winnerIndex < 0) ? -1 : 1 - winnerIndex,
+                warCard.getRoundsCount(), warCard.getWarsCount(), warCard.getChainedWarsCount());
+        if (cycle) {
+            result.recordCycle(warCard.getCycleStartRound(), warCard.getCyclePeriod());
+        }
+    }
+
+    /**
+     * Rearranges a range of the sequence to the next ordering in lexicographic order, which skips
+     * the orderings that only swap equal ranks.
+     * @param sequence the sequence to rearrange
+     * @param from the index of the first position of the range, the range ends with the sequence
+     * @return false if the range was already the last ordering, true otherwise
+     */
+    static boolean nextOrdering(byte[] sequence, int from) {
+        int i = sequence.length - 2;
+        while (i >= from && sequence[i] >= sequence[i + 1]) {
+            i--;
+        }
+        if (i < from) {
+            return false;
+        }
+        int j = sequence.length - 1;
+        while (sequence[j] <= sequence[i]) {
+            j--;
+        }
+        byte tmp = sequence[i];
+        sequence[i] = sequence[j];
+        sequence[j] = tmp;
+        for (int left = i + 1, right = sequence.length - 1; left < right; ++left, --right) {
+            tmp = sequence[left];
+            sequence[left] = sequence[right];
+            sequence[right] = tmp;
+        }
+        return true;
+    }
+
+    public static void main(String[] args) {
+        int ranks = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int suits = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int playersCount = args.length > 2 ? Integer.parseInt(args[2]) : WarCard.MIN_PLAYERS;
+        Rules rules = args.length > 3 ? Rules.parse(args[3]) : Rules.STANDARD;
+        int cacheCapacity = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+
+        DealEnumerator enumerator = new DealEnumerator(ForkJoinPool.commonPool(), DEFAULT_MAX_ROUNDS, cacheCapacity);
+        enumerator.setRules(rules);
+        long start = System.nanoTime();
+        SimulationResult result = enumerator.enumerate(ranks, suits, playersCount);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(ranks + " ranks x " + suits + " suits, " + playersCount + " players, rules " + rules);
+        System.out.println("distinct deals (rank sequences): " + result.getGames()
+                + ", card orders per sequence: " + dealsPerSequence(ranks, suits));
+        System.out.println(result);
+        System.out.printf("%.2f seconds, %.0f deals/second%n", seconds, result.getGames() / seconds);
+    }
+}
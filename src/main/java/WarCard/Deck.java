@@ -1,30 +1,65 @@
 package WarCard;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * The Deck class represents a deck of playing cards.
- * It contains methods for initializing, shuffling, dealing cards, and displaying the deck.
+ * It contains methods for initializing, shuffling, dealing cards, and displaying the deck. <br>
+ * A deck may also be a shoe of several standard decks mixed together. The copies of a card
+ * in a shoe are the same {@link Card} object, since they have the same code, and every deck
+ * holds the same shared cards.
  */
 public class Deck {
+
+    /** The most standard decks a shoe can hold, as many as the largest casino shoes. */
+    public static final int MAX_DECKS = 8;
+
     private final ArrayList<Card> deck;
+    private final Card[] cardsByCode;   // the cards of the deck, indexed by their code (shared by all the decks)
+    private final RandomGenerator random;
+    private final int decksCount;       // the number of standard decks in the shoe
 
     /**
      * Constructs a new Deck object and initializes it with a standard deck of 52 cards.
      */
     public Deck() {
-        deck = new ArrayList<>();
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Constructs a new Deck object that is shuffled by the given generator.
+     * Passing a seeded generator makes the sequence of shuffles reproducible.
+     * @param random the generator used by {@link #shuffle()}
+     */
+    public Deck(RandomGenerator random) {
+        this(1, random);
+    }
+
+    /**
+     * Constructs a new shoe of the given number of standard decks, shuffled by the given generator.
+     * @param decksCount the number of standard decks in the shoe
+     * @param random the generator used by {@link #shuffle()}
+     * @throws IllegalArgumentException if the number of decks is not between 1 and {@link #MAX_DECKS}
+     */
+    public Deck(int decksCount, RandomGenerator random) {
+        if (decksCount < 1 || decksCount > MAX_DECKS) {
+            throw new IllegalArgumentException("a shoe holds between 1 and " + MAX_DECKS + " decks: " + decksCount);
+        }
+        this.random = random;
+        this.decksCount = decksCount;
+        deck = new ArrayList<>(decksCount * Card.CODES_COUNT);
+        cardsByCode = Card.byCode();
         initDeck();
     }
 
     /**
-     * Initializes the deck with a standard set of 52 playing cards.
+     * Initializes the deck with a standard set of 52 playing cards for every deck in the shoe.
      */
     private void initDeck() {
-        for (Suit suit : Suit.values()) {
-            for (Rank rank : Rank.values()) {
-                Card card = new Card(rank, suit);
+        for (int i = 0; i < decksCount; ++i) {
+            for (Card card : cardsByCode) {
                 deck.add(card);
             }
         }
@@ -38,13 +73,64 @@ public class Deck {
     }
 
     /**
-     * Shuffles the deck.
+     * Returns the number of standard decks in the shoe.
+     * @return the number of decks
+     */
+    public int getDecksCount() {
+        return decksCount;
+    }
+
+    /**
+     * Returns the number of cards in the shoe.
+     * @return the number of cards
+     */
+    public int size() {
+        return deck.size();
+    }
+
+    /**
+     * Returns the card of this deck that has the given code.
+     * @param code the code of the card
+     * @return the card with the given code
+     */
+    public Card getCard(int code) {
+        return cardsByCode[code];
+    }
+
+    /**
+     * Returns the cards of this deck indexed by their code. Shared - must not be modified.
+     * @return an array that maps a card's code to the card
+     */
+    Card[] getCardsByCode() {
+        return cardsByCode;
+    }
+
+    /**
+     * Puts the cards back in their initial order, so that a following shuffle
+     * depends only on its generator and not on the previous shuffles.
+     */
+    public void reset() {
+        for (int i = 0; i < deck.size(); ++i) {
+            deck.set(i, cardsByCode[i % Card.CODES_COUNT]);
+        }
+    }
+
+    /**
+     * Shuffles the deck with the deck's own generator.
      */
     public void shuffle() {
-        Random random = new Random();
-        for (int first = 0; first < deck.size(); ++first) {
-            int second = random.nextInt(deck.size());
-            swap(first, second);
+        shuffle(random);
+    }
+
+    /**
+     * Shuffles the deck with the given generator, using the Fisher-Yates algorithm
+     * so that every order of the cards is equally likely.
+     * @param random the generator that picks the swapped cards
+     */
+    public void shuffle(RandomGenerator random) {
+        for (int last = deck.size() - 1; last > 0; --last) {
+            int other = random.nextInt(last + 1);
+            swap(last, other);
         }
     }
 
@@ -61,16 +147,18 @@ public class Deck {
     }
 
     /**
-     * Deals cards from the deck to two players.
-     * Cards are distributed equally between the players.
-     * @param player1 the first player to receive cards
-     * @param player2 the second player to receive cards
+     * Deals cards from the deck to the players.
+     * Cards are distributed equally between the players: each player gets the next run of cards
+     * of the deck, and the cards that are left over when the deck does not divide equally are not dealt.
+     * @param players the players to receive cards
      */
-    public void dealCards(Player player1, Player player2) {
-        int cardsPerPlayer = deck.size() / 2;
-        for (int i = 0; i < cardsPerPlayer ; ++i) {
-                player1.addCardToTop(deck.get(i));
-                player2.addCardToTop(deck.get(i + cardsPerPlayer));
+    public void dealCards(Player... players) {
+        int cardsPerPlayer = deck.size() / players.length;
+        for (int p = 0; p < players.length; ++p) {
+            int first = p * cardsPerPlayer;
+            for (int i = first; i < first + cardsPerPlayer; ++i) {
+                players[p].addCardToTop(deck.get(i));
+            }
         }
     }
 
@@ -0,0 +1,274 @@
+package WarCard;
+
+/**
+ * The EngineMetrics class collects runtime metrics of the game engine, shared by any number of games. <br>
+ * It keeps lock-free {@link Histogram}s of:
+ * <ul>
+ *     <li>the rounds of every game that ended</li>
+ *     <li>the depth of every war - the number of wars that broke out one after the other in a single battle</li>
+ *     <li>the number of cards moved by every pickup of the table</li>
+ *     <li>the latency of {@link WarCard#exeRound()}, in nanoseconds, timed on a sample of the rounds</li>
+ *     <li>the largest hand held by any player during every game that ended</li>
+ *     <li>the smallest hand held by a player still in the game, after the deal or a pickup, during every
+ *     game that ended - a player who ran out of cards is out, and no longer counts</li>
+ * </ul>
+ * Every game records into a {@link Recorder} of its own, without synchronization, and the recorder adds its
+ * values to the shared histograms once, at the end of the game - or when the game is stopped before its end,
+ * see {@link WarCard#stopGame()}. The recorder also commits the
+ * {@link WarFinishedEvent} and {@link GameFinishedEvent} Flight Recorder events, when they are enabled.
+ */
+public class EngineMetrics {
+
+    private static final int DEFAULT_LATENCY_SAMPLING = 64;
+
+    private final Histogram roundsPerGame;
+    private final Histogram warDepth;
+    private final Histogram pickupCards;
+    private final Histogram roundLatency;
+    private final Histogram largestHand;
+    private final Histogram smallestHand;
+    private final int latencySampleMask;    // a round is timed when its number has none of these bits
+
+    /**
+     * Constructs an EngineMetrics that times one of every 64 rounds.
+     */
+    public EngineMetrics() {
+        this(DEFAULT_LATENCY_SAMPLING);
+    }
+
+    /**
+     * Constructs an EngineMetrics that times one of every given number of rounds.
+     * @param latencySampling the number of rounds per timed round, a power of two
+     * @throws IllegalArgumentException if the sampling is not a power of two
+     */
+    public EngineMetrics(int latencySampling) {
+        if (latencySampling < 1 || Integer.bitCount(latencySampling) != 1) {
+            throw new IllegalArgumentException("the latency sampling must be a power of two: " + latencySampling);
+        }
+        roundsPerGame = new Histogram();
+        warDepth = new Histogram();
+        pickupCards = new Histogram();
+        roundLatency = new Histogram();
+        largestHand = new Histogram();
+        smallestHand = new Histogram();
+        latencySampleMask = latencySampling - 1;
+    }
+
+    /**
+     * Creates a recorder for a single game engine.
+     * @return a new recorder that adds its values to these metrics
+     */
+    Recorder newRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Returns a snapshot of the rounds of the games.
+     * @return the histogram of rounds per game
+     */
+    public Histogram.Snapshot getRoundsPerGame() {
+        return roundsPerGame.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the depths of the wars.
+     * @return the histogram of war depths
+     */
+    public Histogram.Snapshot getWarDepth() {
+        return warDepth.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the cards moved by the pickups.
+     * @return the histogram of cards per pickup
+     */
+    public Histogram.Snapshot getPickupCards() {
+        return pickupCards.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the latencies of the timed rounds.
+     * @return the histogram of round latencies, in nanoseconds
+     */
+    public Histogram.Snapshot getRoundLatency() {
+        return roundLatency.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the largest hands of the games.
+     * @return the histogram of the largest hand per game
+     */
+    public Histogram.Snapshot getLargestHand() {
+        return largestHand.snapshot();
+    }
+
+    /**
+     * Returns a snapshot of the smallest hands of the games.
+     * @return the histogram of the smallest hand per game
+     */
+    public Histogram.Snapshot getSmallestHand() {
+        return smallestHand.snapshot();
+    }
+
+    /**
+     * Returns a string representation of the metrics.
+     * @return a summary of all the histograms
+     */
+    @Override
+    public String toString() {
+        return String.format("rounds per game: %s%n" +
+                        "war depth: %s%n" +
+                        "cards per pickup: %s%n" +
+                        "round latency (ns): %s%n" +
+                        "largest hand: %s%n" +
+                        "smallest hand: %s",
+                getRoundsPerGame(), getWarDepth(), getPickupCards(), getRoundLatency(), getLargestHand(),
+                getSmallestHand());
+    }
+
+    /**
+     * The Recorder class collects the metrics of a single game engine, which is used by a single thread.
+     */
+    final class Recorder {
+        private final Histogram.Local roundsPerGameLocal = new Histogram.Local();
+        private final Histogram.Local warDepthLocal = new Histogram.Local();
+        private final Histogram.Local pickupCardsLocal = new Histogram.Local();
+        private final Histogram.Local roundLatencyLocal = new Histogram.Local();
+        private final Histogram.Local largestHandLocal = new Histogram.Local();
+        private final Histogram.Local smallestHandLocal = new Histogram.Local();
+
+        // the game being recorded
+        private int depth;                  // the wars of the current battle so far
+        private int deepestWar;
+        private int largestHandSize;
+        private int smallestHandSize;
+        private WarFinishedEvent warEvent;  // the event of the current war, or null if the event is disabled
+        private GameFinishedEvent gameEvent;    // the event of the current game, or null if the event is disabled
+        private boolean inGame;             // indicate if a game was started and has not been recorded yet
+
+        // never begun nor committed, only asked whether the events are enabled, so a disabled event allocates nothing
+        private final GameFinishedEvent gameEventType = new GameFinishedEvent();
+        private final WarFinishedEvent warEventType = new WarFinishedEvent();
+
+        /**
+         * Starts recording a game that has just been dealt. A game that was started before it and was
+         * neither ended nor stopped is recorded as stopped first.
+         * @param handSize the size of the largest hand dealt
+         * @param smallestHandSize the size of the smallest hand dealt
+         */
+        void startGame(int handSize, int smallestHandSize) {
+            if (inGame) {
+                stopGame();
+            }
+            inGame = true;
+            depth = 0;
+            deepestWar = 0;
+            largestHandSize = handSize;
+            this.smallestHandSize = smallestHandSize;
+            warEvent = null;
+            gameEvent = null;
+            if (gameEventType.isEnabled()) {
+                gameEvent = new GameFinishedEvent();
+                gameEvent.begin();
+            }
+        }
+
+        /**
+         * Checks if a round should be timed.
+         * @param round the number of the round
+         * @return true if the latency of the round should be recorded, false otherwise
+         */
+        boolean sampleRound(int round) {
+            return (round & latencySampleMask) == 0;
+        }
+
+        /**
+         * Records the latency of a timed round.
+         * @param nanos the time the round took, in nanoseconds
+         */
+        void roundLatency(long nanos) {
+            roundLatencyLocal.record(nanos);
+        }
+
+        /**
+         * Records the start of a war.
+         */
+        void warStarted() {
+            if (depth++ == 0 && warEventType.isEnabled()) {
+                warEvent = new WarFinishedEvent();
+                warEvent.begin();
+            }
+        }
+
+        /**
+         * Records a pickup of the table.
+         * @param cards the number of cards picked up
+         * @param handSize the size of the hand that picked them up, after the pickup
+         * @param smallestHandSize the size of the smallest hand of the players still in the game, after the pickup
+         * @param round the number of the round
+         */
+        void pickup(int cards, int handSize, int smallestHandSize, int round) {
+            pickupCardsLocal.record(cards);
+            largestHandSize = Math.max(largestHandSize, handSize);
+            this.smallestHandSize = Math.min(this.smallestHandSize, smallestHandSize);
+            if (depth > 0) {
+                warDepthLocal.record(depth);
+                deepestWar = Math.max(deepestWar, depth);
+                if (warEvent != null) {
+                    warEvent.depth = depth;
+                    warEvent.cards = cards;
+                    warEvent.round = round;
+                    warEvent.commit();
+                    warEvent = null;
+                }
+                depth = 0;
+            }
+        }
+
+        /**
+         * Records the end of the game, and adds all the values recorded since the last game was recorded to the shared metrics.
+         * @param warCard the game, after its last round
+         */
+        void endGame(WarCard warCard) {
+            roundsPerGameLocal.record(warCard.getRoundsCount());
+            largestHandLocal.record(largestHandSize);
+            smallestHandLocal.record(smallestHandSize);
+            if (gameEvent != null && gameEvent.shouldCommit()) {
+                gameEvent.rounds = warCard.getRoundsCount();
+                gameEvent.wars = warCard.getWarsCount();
+                gameEvent.deepestWar = deepestWar;
+                gameEvent.largestHand = largestHandSize;
+                gameEvent.smallestHand = smallestHandSize;
+                gameEvent.winner = warCard.getWinnerIndex();
+                gameEvent.cycle = warCard.isCycle();
+                gameEvent.commit();
+            }
+            flush();
+        }
+
+        /**
+         * Records a game that was stopped before it ended, such as at a rounds limit. <br>
+         * The wars, pickups and latencies of its rounds are added to the shared metrics, but the game
+         * has no outcome: it is not counted in the rounds per game nor in the largest and smallest hands, and neither
+         * its event nor the event of a war it was stopped in is committed.
+         */
+        void stopGame() {
+            warEvent = null;
+            gameEvent = null;
+            flush();
+        }
+
+        /**
+         * Adds all the values recorded since the last game was recorded to the shared metrics.
+         */
+        private void flush() {
+            inGame = false;
+            roundsPerGame.add(roundsPerGameLocal);
+            warDepth.add(warDepthLocal);
+            pickupCards.add(pickupCardsLocal);
+            roundLatency.add(roundLatencyLocal);
+            largestHand.add(largestHandLocal);
+            smallestHand.add(smallestHandLocal);
+        }
+    }
+}
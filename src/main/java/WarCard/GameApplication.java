@@ -1,29 +1,80 @@
 package WarCard;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
 
 /**
- * The GameApplication class is the entry point of the War Card Game application.
+ * The GameApplication class is the entry point of the War Card Game application. <br>
+ * When the system property {@code warcard.startup.probe} is true, the application prints the time
+ * from its launch to its first frame, and exits right after that frame. The launch is the time stamp,
+ * in microseconds since the epoch, that the launcher passes in the system property {@code warcard.startup.launched}
+ * just before it starts the process; without it, the start of the process as reported by the operating system,
+ * which is only as precise as its clock ticks (10 ms on Linux). This is the
+ * run that the startup benchmark measures, and the training run in which it dumps the class-data sharing
+ * archive (see the {@code startup} profile of the build, which packages the jars the benchmark starts).
  */
 public class GameApplication extends Application {
+
+    static final String STARTUP_PROBE_PROPERTY = "warcard.startup.probe";
+    static final String LAUNCHED_PROPERTY = "warcard.startup.launched";
+    static final String FIRST_FRAME_MESSAGE = "time to first frame (ms): ";
+
+    @Override
+    public void init() {
+        CardImages.preload();
+    }
+
     @Override
     public void start(Stage stage) throws Exception {
         Parent root = FXMLLoader.load(getClass().getResource("WarCard.fxml"));
         Scene scene = new Scene(root);
+        if (Boolean.getBoolean(STARTUP_PROBE_PROPERTY)) {
+            probeFirstFrame(scene);
+        }
         stage.setTitle("The card war game");
         stage.setScene(scene);
         stage.show();
     }
 
+    /**
+     * Reports the time to the first frame of the scene, and exits once the frame was rendered.
+     * @param scene the scene of the main window
+     */
+    private static void probeFirstFrame(Scene scene) {
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                long micros = ChronoUnit.MICROS.between(launchInstant(), Instant.now());
+                System.out.printf("%s%d.%03d%n", FIRST_FRAME_MESSAGE, micros / 1000, micros % 1000);
+                Platform.runLater(Platform::exit);  // after the frame of this pulse is rendered
+            }
+        });
+    }
+
+    /**
+     * Returns the time the application was launched at.
+     * @return the time stamp passed by the launcher, or else the start of the process
+     */
+    private static Instant launchInstant() {
+        String launched = System.getProperty(LAUNCHED_PROPERTY);
+        if (launched != null) {
+            long micros = Long.parseLong(launched);
+            return Instant.ofEpochSecond(micros / 1_000_000, micros % 1_000_000 * 1000);
+        }
+        return ProcessHandle.current().info().startInstant().orElseThrow();
+    }
+
     public static void main(String[] args) {
         launch(args);
         System.out.println();
     }
 }
-
-
@@ -0,0 +1,488 @@
+package WarCard;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.SplittableRandom;
+
+/**
+ * The GameBatch class plays a batch of independent two-player games in lockstep, one round of every game at a time. <br>
+ * The state of all the games is kept in flat primitive arrays (struct of arrays) instead of a {@link WarCard}
+ * and its players for every game: the hand of player p in game g is the ring buffer of {@link Card#CODES_COUNT}
+ * bytes that starts at {@code (2 * g + p) * CODES_COUNT} in {@link #hands}, and so on for the table and the counters.
+ * Every round is played in three passes over the batch:
+ * <ol>
+ *     <li>both players of every game draw a card, and the rank values of the cards are collected</li>
+ *     <li>the ranks of the whole batch are compared with the Vector API, which picks the winner of every battle</li>
+ *     <li>the outcome of every game's round is applied with the rules of {@link WarCard}</li>
+ * </ol>
+ * A game that ends is recorded, and its slot is refilled with the next deal, so the batch stays full
+ * until the deals run out. The start and the period of the cycle of a game that enters one are located
+ * by a {@link WarCard}, the same way it locates its own cycles. <br>
+ * The games end in a different order than they were dealt in, so their outcomes are kept by the index
+ * of the game in {@link Outcomes}, to be recorded in the order {@link Simulator} records them.
+ */
+class GameBatch {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+    private static final int CARDS = Card.CODES_COUNT;
+    private static final int HAND_SIZE = CARDS / 2;
+
+    // battle outcomes, which are also the index of the winning player
+    private static final int COM_WON = 0;
+    private static final int USER_WON = 1;
+    private static final int TIE = 2;
+    private static final IntVector COM_WON_VECTOR = IntVector.broadcast(SPECIES, COM_WON);
+    private static final IntVector USER_WON_VECTOR = IntVector.broadcast(SPECIES, USER_WON);
+    private static final IntVector TIE_VECTOR = IntVector.broadcast(SPECIES, TIE);
+
+    private final int size;
+    private final int maxRounds;
+
+    // the hands, indexed by hand (2 * game + player)
+    private final byte[] hands;         // a ring buffer of card codes for every hand
+    private final int[] top;
+    private final int[] handSize;
+    private final long[] hash;          // incremental hash of every hand (see Zobrist)
+    private final long[] power;
+
+    // the games, indexed by game
+    private final byte[] table;
+    private final int[] tableSize;
+    private final int[] warCardsCount;
+    private final boolean[] insideWar;
+    private final int[] rounds;
+    private final int[] wars;
+    private final int[] chainedWars;
+    private final int[] winner;         // the index of the winner of a game that ended, or -1
+    private final boolean[] cycle;
+    private final boolean[] active;     // false for a slot that is left empty after the deals ran out
+    private final long[] seeds;
+    private final long[] gameIndex;     // the index of the game in the run
+
+    // cycle detection (see CycleDetector), indexed by hand or by game
+    private final byte[] savedHands;
+    private final int[] savedSize;
+    private final long[] savedFingerprint;
+    private final int[] brentPower;
+    private final int[] brentPeriod;
+
+    // the current round, indexed by game and padded to a whole number of vectors
+    private final int[] rankCom;        // the rank value of the computer's card, or 0 if it ran out of cards
+    private final int[] rankUser;
+    private final int[] outcome;
+
+    private final byte[] deck;          // scratch space for shuffling a deal
+    private WarCard replayer;           // locates the cycles of the games that entered one
+
+    /**
+     * Constructs a GameBatch of the given number of games.
+     * @param size the number of games played in lockstep
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     */
+    GameBatch(int size, int maxRounds) {
+        this.size = size;
+        this.maxRounds = maxRounds;
+
+        hands = new byte[2 * size * CARDS];
+        top = new int[2 * size];
+        handSize = new int[2 * size];
+        hash = new long[2 * size];
+        power = new long[2 * size];
+
+        table = new byte[size * CARDS];
+        tableSize = new int[size];
+        warCardsCount = new int[size];
+        insideWar = new boolean[size];
+        rounds = new int[size];
+        wars = new int[size];
+        chainedWars = new int[size];
+        winner = new int[size];
+        cycle = new boolean[size];
+        active = new boolean[size];
+        seeds = new long[size];
+        gameIndex = new long[size];
+
+        savedHands = new byte[2 * size * CARDS];
+        savedSize = new int[2 * size];
+        savedFingerprint = new long[size];
+        brentPower = new int[size];
+        brentPeriod = new int[size];
+
+        int padded = SPECIES.loopBound(size + SPECIES.length() - 1);
+        rankCom = new int[padded];
+        rankUser = new int[padded];
+        outcome = new int[padded];
+
+        deck = new byte[CARDS];
+    }
+
+    /**
+     * Plays a range of the games of a run, and keeps their outcomes.
+     * @param masterSeed the master seed of the run, as in {@link Simulator#gameSeed(long, long)}
+     * @param from the index of the first game in the range
+     * @param to the index after the last game in the range
+     * @param outcomes the outcomes of the range, to keep the outcome of every game in
+     */
+    void play(long masterSeed, long from, long to, Outcomes outcomes) {
+        long next = from;
+        int activeCount = 0;
+        for (int g = 0; g < size; ++g) {
+            active[g] = next < to;
+            if (active[g]) {
+                gameIndex[g] = next;
+                deal(g, Simulator.gameSeed(masterSeed, next++));
+                activeCount++;
+            }
+        }
+
+        while (activeCount > 0) {
+            drawCards();
+            compareRanks();
+            for (int g = 0; g < size; ++g) {
+                if (!active[g]) {
+                    continue;
+                }
+                boolean ended = applyRound(g);
+                if (ended || rounds[g] >= maxRounds) {
+                    record(g, ended, outcomes);
+                    if (next < to) {
+                        gameIndex[g] = next;
+                        deal(g, Simulator.gameSeed(masterSeed, next++));
+                    } else {
+                        active[g] = false;
+                        activeCount--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The first pass of a round: both players of every active game draw a card to the table.
+     */
+    private void drawCards() {
+        for (int g = 0; g < size; ++g) {
+            if (!active[g]) {
+                rankCom[g] = 0;
+                rankUser[g] = 0;
+                continue;
+            }
+            rounds[g]++;
+            int codeCom = drawCode(2 * g);
+            int codeUser = drawCode(2 * g + 1);
+            rankCom[g] = (codeCom < 0) ? 0 : Card.rankValue(codeCom);
+            rankUser[g] = (codeUser < 0) ? 0 : Card.rankValue(codeUser);
+            if (codeCom >= 0) {
+                table[g * CARDS + tableSize[g]++] = (byte) codeCom;
+            }
+            if (codeUser >= 0) {
+                table[g * CARDS + tableSize[g]++] = (byte) codeUser;
+            }
+        }
+    }
+
+    /**
+     * The second pass of a round: picks the winner of every game's battle, a vector of games at a time.
+     */
+    private void compareRanks() {
+        for (int g = 0; g < size; g += SPECIES.length()) {
+            IntVector com = IntVector.fromArray(SPECIES, rankCom, g);
+            IntVector user = IntVector.fromArray(SPECIES, rankUser, g);
+            TIE_VECTOR.blend(COM_WON_VECTOR, com.compare(VectorOperators.GT, user))
+                    .blend(USER_WON_VECTOR, com.compare(VectorOperators.LT, user))
+                    .intoArray(outcome, g);
+        }
+    }
+
+    /**
+     * The third pass of a round, for a single game: applies the cards drawn in the first pass and their outcome.
+     * @param g the game
+     * @return true if the game ended, false otherwise
+     */
+    private boolean applyRound(int g) {
+        boolean bothDrew = rankCom[g] > 0 && rankUser[g] > 0;
+        if (insideWar[g]) {
+            warCardsCount[g]++;
+            if (!bothDrew) {
+                return settleShortBattle(g);
+            }
+            if (warCardsCount[g] == 3) {
+                insideWar[g] = false;
+            }
+            return false;
+        }
+
+        if (!bothDrew) {
+            return settleShortBattle(g);
+        }
+        int battle = outcome[g];
+        if (battle == TIE) {
+            if (tableSize[g] > 2) { // the table still holds the cards of the previous war
+                chainedWars[g]++;
+            }
+            wars[g]++;
+            warCardsCount[g] = 0;
+            insideWar[g] = true;
+            return false;
+        }
+
+        pickup(g, battle);
+        warCardsCount[g] = -1;
+        if (handSize[2 * g] == 0 || handSize[2 * g + 1] == 0) {
+            winner[g] = battle;
+            return true;
+        }
+        if (cycleStep(g)) {
+            cycle[g] = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ends a game in which a player could not draw a card: the other player, if there is one,
+     * picks up the table and wins; otherwise the game is a tie.
+     * @param g the game
+     * @return true, since the game always ends
+     */
+    private boolean settleShortBattle(int g) {
+        if (rankCom[g] > 0 || rankUser[g] > 0) {
+            int player = (rankCom[g] > 0) ? COM_WON : USER_WON;
+            pickup(g, player);
+            winner[g] = player;
+        } else {
+            tableSize[g] = 0;
+            winner[g] = -1;
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the outcome of a game that ended or reached the rounds limit. The cycle of a game that entered
+     * a cycle is located by a {@link WarCard}, which replays the game from its deal.
+     * @param g the game
+     * @param finished false if the game reached the rounds limit
+     * @param outcomes the outcomes to keep the game's outcome in
+     */
+    private void record(int g, boolean finished, Outcomes outcomes) {
+        int cycleStart = 0;
+        int cyclePeriod = 0;
+        if (cycle[g]) {
+            if (replayer == null) {
+                replayer = new WarCard();
+            }
+            replayer.locateCycle(seeds[g], brentPeriod[g]);
+            cycleStart = replayer.getCycleStartRound();
+            cyclePeriod = replayer.getCyclePeriod();
+        }
+        outcomes.set(gameIndex[g], finished, cycle[g], winner[g], rounds[g], wars[g], chainedWars[g],
+                cycleStart, cyclePeriod);
+    }
+
+    /**
+     * Deals a new game into a slot, exactly as {@link WarCard#startGame(long)} deals it.
+     * @param g the slot of the game
+     * @param seed the seed of the deal
+     */
+    private void deal(int g, long seed) {
+        for (int code = 0; code < CARDS; ++code) {
+            deck[code] = (byte) code;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int last = CARDS - 1; last > 0; --last) {
+            int other = random.nextInt(last + 1);
+            byte tmp = deck[last];
+            deck[last] = deck[other];
+            deck[other] = tmp;
+        }
+
+        // Deck.dealCards adds every card to the top, so each hand holds its half of the deck in reverse
+        for (int p = 0; p < 2; ++p) {
+            int h = 2 * g + p;
+            top[h] = 0;
+            handSize[h] = 0;
+            hash[h] = 0;
+            power[h] = 1;
+            for (int i = (p + 1) * HAND_SIZE - 1; i >= p * HAND_SIZE; --i) {
+                addCodeToBottom(h, deck[i]);
+            }
+        }
+
+        seeds[g] = seed;
+        tableSize[g] = 0;
+        warCardsCount[g] = -1;
+        insideWar[g] = false;
+        rounds[g] = 0;
+        wars[g] = 0;
+        chainedWars[g] = 0;
+        winner[g] = -1;
+        cycle[g] = false;
+
+        saveState(g);
+        brentPower[g] = 1;
+        brentPeriod[g] = 0;
+    }
+
+    /**
+     * Draws the code of the top card of a hand, as {@link Player#drawCode()} does.
+     * @param h the hand
+     * @return the code of the card, or -1 if the hand is empty
+     */
+    private int drawCode(int h) {
+        if (handSize[h] == 0) {
+            return -1;
+        }
+        int code = hands[h * CARDS + top[h]];
+        top[h] = (top[h] == CARDS - 1) ? 0 : top[h] + 1;
+        handSize[h]--;
+        hash[h] = (hash[h] - Zobrist.key(code)) * Zobrist.BASE_INVERSE;
+        power[h] *= Zobrist.BASE_INVERSE;
+        return code;
+    }
+
+    /**
+     * Adds a card to the bottom of a hand, as {@link Player#addCodeToBottom(int)} does.
+     * @param h the hand
+     * @param code the code of the card
+     */
+    private void addCodeToBottom(int h, int code) {
+        int index = top[h] + handSize[h];
+        if (index >= CARDS) {
+            index -= CARDS;
+        }
+        hands[h * CARDS + index] = (byte) code;
+        handSize[h]++;
+        hash[h] += Zobrist.key(code) * power[h];
+        power[h] *= Zobrist.BASE;
+    }
+
+    /**
+     * Moves the cards on the table of a game to the bottom of a player's hand, in the order they were drawn.
+     * @param g the game
+     * @param player the player who picks up the table
+     */
+    private void pickup(int g, int player) {
+        int h = 2 * g + player;
+        for (int i = 0; i < tableSize[g]; ++i) {
+            addCodeToBottom(h, table[g * CARDS + i]);
+        }
+        tableSize[g] = 0;
+    }
+
+    /**
+     * Feeds the state of a game after a decided battle to its cycle detection, as {@link CycleDetector#step} does.
+     * @param g the game
+     * @return true if the state was already seen, false otherwise
+     */
+    private boolean cycleStep(int g) {
+        long fingerprint = fingerprint(g);
+        brentPeriod[g]++;
+        if (fingerprint == savedFingerprint[g] && sameAsSaved(2 * g) && sameAsSaved(2 * g + 1)) {
+            return true;
+        }
+        if (brentPeriod[g] == brentPower[g]) {
+            saveState(g);
+            brentPower[g] *= 2;
+            brentPeriod[g] = 0;
+        }
+        return false;
+    }
+
+    private long fingerprint(int g) {
+        return hash[2 * g] * 0x9e3779b97f4a7c15L ^ hash[2 * g + 1];
+    }
+
+    /**
+     * Saves the hands of a game as the state its cycle detection compares with.
+     */
+    private void saveState(int g) {
+        for (int h = 2 * g; h < 2 * g + 2; ++h) {
+            for (int i = 0; i < handSize[h]; ++i) {
+                savedHands[h * CARDS + i] = hands[h * CARDS + ringIndex(h, i)];
+            }
+            savedSize[h] = handSize[h];
+        }
+        savedFingerprint[g] = fingerprint(g);
+    }
+
+    /**
+     * Checks if a hand holds exactly the cards it held in the saved state.
+     */
+    private boolean sameAsSaved(int h) {
+        if (handSize[h] != savedSize[h]) {
+            return false;
+        }
+        for (int i = 0; i < handSize[h]; ++i) {
+            if (hands[h * CARDS + ringIndex(h, i)] != savedHands[h * CARDS + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int ringIndex(int h, int position) {
+        int index = top[h] + position;
+        return (index >= CARDS) ? index - CARDS : index;
+    }
+
+    /**
+     * The outcomes of a range of games, kept by the index of the game.
+     */
+    static final class Outcomes {
+        private final long from;        // the index of the first game of the range
+        private final boolean[] finished;
+        private final boolean[] cycle;
+        private final byte[] winner;    // the index of the winner, or -1
+        private final int[] rounds;
+        private final int[] wars;
+        private final int[] chainedWars;
+        private final int[] cycleStart;
+        private final int[] cyclePeriod;
+
+        /**
+         * Constructs the outcomes of a range of games.
+         * @param from the index of the first game in the range
+         * @param to the index after the last game in the range
+         */
+        Outcomes(long from, long to) {
+            int count = Math.toIntExact(to - from);
+            this.from = from;
+            finished = new boolean[count];
+            cycle = new boolean[count];
+            winner = new byte[count];
+            rounds = new int[count];
+            wars = new int[count];
+            chainedWars = new int[count];
+            cycleStart = new int[count];
+            cyclePeriod = new int[count];
+        }
+
+        private void set(long game, boolean finished, boolean cycle, int winner, int rounds, int wars,
+                         int chainedWars, int cycleStart, int cyclePeriod) {
+            int i = (int) (game - from);
+            this.finished[i] = finished;
+            this.cycle[i] = cycle;
+            this.winner[i] = (byte) winner;
+            this.rounds[i] = rounds;
+            this.wars[i] = wars;
+            this.chainedWars[i] = chainedWars;
+            this.cycleStart[i] = cycleStart;
+            this.cyclePeriod[i] = cyclePeriod;
+        }
+
+        /**
+         * Records the outcome of a game into a result.
+         * @param game the index of the game, in the range of these outcomes
+         * @param result the result to record the game into
+         */
+        void record(long game, SimulationResult result) {
+            int i = (int) (game - from);
+            result.record(2, finished[i], cycle[i], winner[i], rounds[i], wars[i], chainedWars[i]);
+            if (cycle[i]) {
+                result.recordCycle(cycleStart[i], cyclePeriod[i]);
+            }
+        }
+    }
+}
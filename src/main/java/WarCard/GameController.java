@@ -1,14 +1,27 @@
 package WarCard;
 
+import javafx.animation.AnimationTimer;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.Slider;
 import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
- * The GameController class manages the game logic and user interface for the War Card game.
+ * The GameController class manages the game logic and user interface for the War Card game. <br>
+ * The rounds are executed on a separate engine thread. The engine's events are coalesced, and only
+ * the latest round is displayed once per pulse, so playing fast never queues work on the FX thread. <br>
+ * The cards are drawn and animated on a canvas by a {@link TableRenderer}, which redraws only what changed.
  */
 public class GameController {
     private boolean newGame = true;
@@ -19,13 +32,29 @@ public class GameController {
     private final int DONT_SHOW_CARD = 2;
     private final int OUT_OF_CARDS = 3;
 
-    private WarCard warCard;
+    private volatile WarCard warCard;       // created by the engine thread, before any of its other tasks
+
+    private final ScheduledExecutorService engine = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "war-engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean engineGameOn;           // accessed only by the engine thread
+    private ScheduledFuture<?> autoPlay;    // the auto-play rounds, or null when auto-play is off
+
+    private TableRenderer renderer;         // draws the cards on the canvas, on the FX thread
+
+    private final AtomicReference<RoundEvent> latestRound = new AtomicReference<>(); // not yet displayed
+    private volatile boolean gameOver;      // set when the engine published the end of the game
 
     @FXML
-    private ImageView imgComCard;
+    private Button btnAuto;
 
     @FXML
-    private ImageView imgUserCard;
+    private Slider sldRate;
+
+    @FXML
+    private Canvas cnvTable;
 
     @FXML
     private Label lblComName;
@@ -50,13 +79,87 @@ public class GameController {
         }
     }
 
+    @FXML
+    void onAutoBtnPressed(ActionEvent event) {
+        if (autoPlay != null) {
+            stopAutoPlay();
+        } else if (gameIsOn) {
+            startAutoPlay();
+        }
+    }
+
+    @FXML
+    void onEndBtnPressed(ActionEvent event) {
+        if (gameIsOn) {
+            stopAutoPlay();
+            engine.execute(this::engineRunToEnd);
+        }
+    }
+
     /**
      * Initializes the GameController.
-     * Creates a new instance of the WarCard class and displays face down cards in the welcome screen
+     * Creates a new instance of the WarCard class and displays face down cards in the welcome screen.
+     * The game is created on the engine thread, so the window does not wait for the engine's classes to load.
      */
     public void initialize() {
-        warCard = new WarCard();
+        engine.execute(this::engineCreateGame);
+        renderer = new TableRenderer(cnvTable);
         displaySpecialCards(FACE_DOWN, FACE_DOWN);
+
+        sldRate.valueProperty().addListener((observable, oldRate, newRate) -> {
+            if (autoPlay != null) {
+                stopAutoPlay();
+                startAutoPlay();
+            }
+        });
+
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse(now);
+            }
+        }.start();
+    }
+
+    /**
+     * Called once per pulse on the FX thread.
+     * Displays the latest round the engine executed, skipping the rounds it executed since the last pulse,
+     * and draws the frame of the pulse.
+     *
+     * @param now the time of the pulse, in nanoseconds
+     */
+    private void onPulse(long now) {
+        RoundEvent event = latestRound.getAndSet(null);
+        if (event != null) {
+            displayRound(event, now);
+        }
+        renderer.render(now);
+        if (gameOver && gameIsOn) {
+            gameIsOn = false;
+            stopAutoPlay();
+        }
+    }
+
+    /**
+     * Starts executing rounds automatically, at the rate chosen on the slider (rounds per second).
+     */
+    private void startAutoPlay() {
+        long period = (long) (TimeUnit.SECONDS.toNanos(1) / sldRate.getValue());
+        autoPlay = engine.scheduleAtFixedRate(this::engineRound, 0, period, TimeUnit.NANOSECONDS);
+        renderer.setRoundPeriod(period);
+        btnAuto.setText("stop");
+    }
+
+    /**
+     * Stops executing rounds automatically.
+     */
+    private void stopAutoPlay() {
+        if (autoPlay != null) {
+            autoPlay.cancel(false);
+            autoPlay = null;
+        }
+        renderer.setRoundPeriod(Long.MAX_VALUE);
+        btnAuto.setText("auto");
     }
 
     /**
@@ -71,8 +174,8 @@ public class GameController {
         lblComName.setText("computer");
         lblInstructions.setText("press next to draw the next card");
 
-        warCard.startGame();
-        runGame();
+        gameOver = false;
+        engine.execute(this::engineStartGame);
     }
 
     /**
@@ -90,17 +193,63 @@ public class GameController {
 
     /**
      * Handles the logic for each round of the game.
-     * Executes a round of the game and updates the game interface accordingly.
+     * Executes a round of the game on the engine thread; the interface is updated by the round's events.
      */
     private void handleGameRound() {
-        gameIsOn = warCard.exeRound();
+        engine.execute(this::engineRound);
+    }
 
-        displayCards();
+    /**
+     * Creates the game and subscribes to its rounds. Runs on the engine thread.
+     */
+    private void engineCreateGame() {
+        WarCard created = new WarCard();
+        created.subscribe(new RoundDisplay());
+        warCard = created;
+    }
+
+    /**
+     * Starts a new game and executes its first round. Runs on the engine thread.
+     */
+    private void engineStartGame() {
+        warCard.startGame();
+        engineGameOn = true;
+        engineRound();
+    }
+
+    /**
+     * Executes a single round, unless the game is over. Runs on the engine thread.
+     */
+    private void engineRound() {
+        if (engineGameOn) {
+            engineGameOn = warCard.exeRound();
+        }
+    }
 
-        if (warCard.getWinner() != null && !warCard.insideWar()) {
-            lblRoundRes.setText(warCard.getWinner() + " won the round");
+    /**
+     * Executes all the remaining rounds of the game. Runs on the engine thread.
+     */
+    private void engineRunToEnd() {
+        while (engineGameOn) {
+            engineGameOn = warCard.exeRound();
+        }
+    }
+
+    /**
+     * Updates the game interface with the cards and the result of a round.
+     *
+     * @param event the event of the round
+     * @param now the time of the current pulse, in nanoseconds
+     */
+    private void displayRound(RoundEvent event, long now) {
+        boolean pickup = event.getWinner() != null && event.getWarCardsCount() <= 0;
+        int pickupBy = !pickup ? -1 : (event.getWinner() == warCard.getPlayerUser()) ? TableRenderer.USER : TableRenderer.COM;
+        renderer.showRound(event, pickupBy, now);
+
+        if (pickup) {
+            lblRoundRes.setText(event.getWinner() + " won the round");
         } else {
-            switch (warCard.getWarCardsCount()) {
+            switch (event.getWarCardsCount()) {
                 case 0:
                     lblRoundRes.setText("war!");
                     break;
@@ -126,8 +275,13 @@ public class GameController {
         gameEnded = true;
         lblInstructions.setText("press next to see game's score summary");
 
+        // endless game
+        if (warCard.isCycle()) {
+            lblRoundRes.setText("Endless game - it's a tie");
+            displaySpecialCards(FACE_DOWN, FACE_DOWN);
+        }
         // tie
-        if (warCard.getWinner() == null) {
+        else if (warCard.getWinner() == null) {
             lblRoundRes.setText("It's a tie");
             displaySpecialCards(DONT_SHOW_CARD, DONT_SHOW_CARD);
         }
@@ -160,83 +314,64 @@ public class GameController {
 
 
     /**
-     * Returns the image of a card based on the provided card object.
-     *
-     * @param card The card object for which to retrieve the image.
-     * @return The image corresponding to the provided card object.
-     */
-    private Image getCardImg(Card card) {
-
-        if (card == null) {
-            return null;
-        }
-        return getCardImg(card.toString().replace(' ', '_'));
-    }
-
-    /**
-     * Returns the image of a card based on its name.
-     * Searches for the card image in the resources directory based on the card name.
+     * Displays cards in special state: reversed card, or no card at all
+     * (in the end or start of the game)
      *
-     * @param cardName The name of the card for which to retrieve the image.
-     * @return The image corresponding to the card name.
-     */
-    private Image getCardImg(String cardName) {
-
-        return new Image(getClass().getResource("cardImg/" + cardName + ".png").toString());
-    }
-
-    /**
-     * Displays the cards drawn by players during the game round.
+     * @param comCardState  The state of the computer's card (NO_CARD or FACE_DOWN).
+     * @param userCardState The state of the user's card (NO_CARD or FACE_DOWN).
      */
-    private void displayCards() {
-        displayCard(imgComCard, warCard.getCardCom());
-        displayCard(imgUserCard, warCard.getCardUser());
+    private void displaySpecialCards(int comCardState, int userCardState) {
+        renderer.showStill(specialImage(comCardState), specialImage(userCardState));
     }
 
     /**
-     * Displays a single card image in the specified ImageView.
+     * Returns the image of a card in special state.
      *
-     * @param imageView The ImageView in which to display the card image.
-     * @param card      The card for which to display the image.
+     * @param cardState the state of the card
+     * @return the image of the state, or null if no card is shown
      */
-    private void displayCard(ImageView imageView, Card card) {
-        // player run out of card
-        if (card == null) {
-            displaySpecialCard(imageView, OUT_OF_CARDS);
-        }
-        //one of the 3 war cards
-        else if (card.isFaceDown()) {
-            displaySpecialCard(imageView, FACE_DOWN);
-            card.setFaceUp(); // turns the card back over
+    private Image specialImage(int cardState) {
+        if (cardState == FACE_DOWN){
+            return CardImages.back();
         }
-        // regular card
-        else {
-            imageView.setImage(getCardImg(card));
+        if (cardState == OUT_OF_CARDS){
+            return CardImages.outOfCards();
         }
+        return null;
     }
 
     /**
-     * Displays cards in special state: reversed card, or no card at all
-     * (in the end or start of the game)
-     *
-     * @param comCardState  The state of the computer's card (NO_CARD or FACE_DOWN).
-     * @param userCardState The state of the user's card (NO_CARD or FACE_DOWN).
+     * Receives the events of the game and keeps only the latest round, to be displayed on the next pulse. <br>
+     * It may lose round events while it is behind, which only skips rounds the display would have replaced
+     * anyway; it only sets a reference and a flag, so it is never behind long enough to lose the end of a game.
      */
-    private void displaySpecialCards(int comCardState, int userCardState) {
-        displaySpecialCard(imgComCard, comCardState);
-        displaySpecialCard(imgUserCard, userCardState);
-    }
+    private class RoundDisplay implements Flow.Subscriber<RoundEvent> {
 
-    private void displaySpecialCard(ImageView imageView, int cardState) {
-        if (cardState == DONT_SHOW_CARD){
-            imageView.setImage(null);
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
         }
-        if (cardState == FACE_DOWN){
-            imageView.setImage(getCardImg("back"));
+
+        @Override
+        public void onNext(RoundEvent event) {
+            switch (event.getType()) {
+                case PICKUP:
+                    break;
+                case GAME_END:
+                    gameOver = true;
+                    break;
+                default:
+                    latestRound.set(event);
+            }
         }
-        if (cardState == OUT_OF_CARDS){
-            imageView.setImage(getCardImg("out_of_cards"));
+
+        @Override
+        public void onError(Throwable throwable) {
+            throwable.printStackTrace();
+        }
+
+        @Override
+        public void onComplete() {
         }
     }
 }
-
@@ -0,0 +1,41 @@
+package WarCard;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The GameFinishedEvent class is a JDK Flight Recorder event committed at the end of every
+ * game that is instrumented by {@link EngineMetrics}. Its duration spans the whole game.
+ */
+@Name("WarCard.GameFinished")
+@Label("Game Finished")
+@Category("War Card Game")
+@Description("A game of War that was played to its end")
+class GameFinishedEvent extends jdk.jfr.Event {
+
+    @Label("Rounds")
+    int rounds;
+
+    @Label("Wars")
+    int wars;
+
+    @Label("Deepest War")
+    @Description("The most wars that broke out one after the other in a single battle")
+    int deepestWar;
+
+    @Label("Largest Hand")
+    int largestHand;
+
+    @Label("Smallest Hand")
+    @Description("The smallest hand of a player still in the game, after the deal or a pickup")
+    int smallestHand;
+
+    @Label("Winner")
+    @Description("The index of the winner, or -1 for a tie or a cycle")
+    int winner;
+
+    @Label("Cycle")
+    boolean cycle;
+}
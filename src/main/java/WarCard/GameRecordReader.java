@@ -0,0 +1,154 @@
+package WarCard;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The GameRecordReader class reads the games written by a {@link GameRecordWriter}, one record at a time. <br>
+ * {@link #next()} moves to the next record, whose fields are then returned by the getters.
+ * The records come in the order they were written, which is not the order the games were played in
+ * when several threads recorded them.
+ */
+public class GameRecordReader implements AutoCloseable {
+
+    private final DataInputStream in;
+
+    // the current record
+    private long seed;
+    private final byte[] dealCom;
+    private final byte[] dealUser;
+    private int dealComSize;
+    private int dealUserSize;
+    private byte[] rounds;                      // the results of the rounds, packed four to a byte
+    private int roundsCount;
+    private int outcome;
+
+    /**
+     * Opens the given file and checks its header.
+     * @param path the file the games were written to
+     * @throws IOException if the file cannot be read, or is not a game record file of the current version
+     */
+    public GameRecordReader(Path path) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+        byte[] header = new byte[GameRecordWriter.HEADER.length + 1];
+        try {
+            in.readFully(header);
+        } catch (EOFException e) {
+            in.close();
+            throw new IOException("not a game record file: " + path, e);
+        }
+        if (!Arrays.equals(header, 0, GameRecordWriter.HEADER.length, GameRecordWriter.HEADER, 0,
+                GameRecordWriter.HEADER.length) || header[GameRecordWriter.HEADER.length] != GameRecordWriter.FORMAT_VERSION) {
+            in.close();
+            throw new IOException("not a game record file of version " + GameRecordWriter.FORMAT_VERSION + ": " + path);
+        }
+
+        dealCom = new byte[Card.CODES_COUNT];
+        dealUser = new byte[Card.CODES_COUNT];
+        rounds = new byte[256];
+    }
+
+    /**
+     * Reads the next record.
+     * @return true if a record was read, false at the end of the file
+     * @throws IOException if the file cannot be read, or ends in the middle of a record
+     */
+    public boolean next() throws IOException {
+        long nextSeed;
+        try {
+            nextSeed = in.readLong();
+        } catch (EOFException e) {
+            return false;
+        }
+        seed = nextSeed;
+        dealComSize = readDeal(dealCom);
+        dealUserSize = readDeal(dealUser);
+        roundsCount = in.readInt();
+        if (roundsCount < 0) {
+            throw new IOException("corrupt game record: " + roundsCount + " rounds");
+        }
+        int packedRounds = GameRecorder.packedRoundsSize(roundsCount);
+        if (packedRounds > rounds.length) {
+            rounds = new byte[Math.max(packedRounds, 2 * rounds.length)];
+        }
+        in.readFully(rounds, 0, packedRounds);
+        outcome = in.readUnsignedByte();
+        return true;
+    }
+
+    private int readDeal(byte[] deal) throws IOException {
+        int size = in.readUnsignedByte();
+        if (size > deal.length) {
+            throw new IOException("corrupt game record: a deal of " + size + " cards");
+        }
+        in.readFully(deal, 0, size);
+        return size;
+    }
+
+    /**
+     * Returns the seed the game was dealt from.
+     * @return the seed, or 0 if the game was not dealt from a seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Copies the codes of the cards dealt to the computer, from top to bottom.
+     * @param codes the array to copy the codes into, of at least {@link Card#CODES_COUNT} bytes
+     * @return the number of cards dealt to the computer
+     */
+    public int copyDealCom(byte[] codes) {
+        System.arraycopy(dealCom, 0, codes, 0, dealComSize);
+        return dealComSize;
+    }
+
+    /**
+     * Copies the codes of the cards dealt to the user, from top to bottom.
+     * @param codes the array to copy the codes into, of at least {@link Card#CODES_COUNT} bytes
+     * @return the number of cards dealt to the user
+     */
+    public int copyDealUser(byte[] codes) {
+        System.arraycopy(dealUser, 0, codes, 0, dealUserSize);
+        return dealUserSize;
+    }
+
+    /**
+     * Returns the number of rounds played.
+     * @return the number of rounds
+     */
+    public int getRoundsCount() {
+        return roundsCount;
+    }
+
+    /**
+     * Returns the result of a round.
+     * @param round the round, from 0
+     * @return one of the ROUND_ constants of {@link GameRecorder}
+     */
+    public int getRoundResult(int round) {
+        if (round < 0 || round >= roundsCount) {
+            throw new IndexOutOfBoundsException("round " + round + " of " + roundsCount);
+        }
+        return GameRecorder.roundResult(rounds, round);
+    }
+
+    /**
+     * Returns the outcome of the game.
+     * @return one of the GAME_ constants of {@link GameRecorder}, plus {@link GameRecorder#GAME_FROM_CACHE}
+     *         if the end of the game was taken from the transposition cache
+     */
+    public int getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,143 @@
+package WarCard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The GameRecordWriter class writes recorded games to a file on a background thread. <br>
+ * The games themselves are encoded by {@link GameRecorder}s, one for each thread that plays games.
+ * Every recorder fills one buffer while its other buffer is being written, and hands full buffers
+ * to the writer thread, which writes them to the file through a {@link FileChannel}.
+ * A buffer always holds whole game records, so buffers of different recorders can be written
+ * in any order. <br>
+ * The file starts with the ASCII header {@code WARREC} and a format version byte,
+ * followed by the game records described in {@link GameRecorder}.
+ */
+public class GameRecordWriter implements AutoCloseable {
+
+    static final byte FORMAT_VERSION = 2;    // 2 records unfinished games
+    static final byte[] HEADER = "WARREC".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final BlockingQueue<Chunk> queue;
+    private final Thread writerThread;
+    private volatile IOException failure;   // the first error of the writer thread, reported to the producers
+
+    /**
+     * A buffer waiting to be written, and the queue it is returned to once it was written.
+     */
+    private static final class Chunk {
+        final ByteBuffer buffer;
+        final BlockingQueue<ByteBuffer> owner;
+
+        Chunk(ByteBuffer buffer, BlockingQueue<ByteBuffer> owner) {
+            this.buffer = buffer;
+            this.owner = owner;
+        }
+    }
+
+    private static final Chunk END = new Chunk(null, null);
+
+    /**
+     * Creates (or truncates) the given file, writes its header and starts the writer thread.
+     * @param path the file to write the games to
+     * @throws IOException if the file cannot be opened
+     */
+    public GameRecordWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER.length + 1).put(HEADER).put(FORMAT_VERSION).flip();
+        writeFully(header);
+
+        queue = new LinkedBlockingQueue<>();
+        writerThread = new Thread(this::writeLoop, "game-record-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Creates a recorder that writes its games through this writer.
+     * A recorder must be used by a single thread, and flushed before the writer is closed.
+     * @return a new recorder
+     */
+    public GameRecorder newRecorder() {
+        return new GameRecorder(this);
+    }
+
+    /**
+     * Queues a buffer to be written. Once written, the buffer is cleared and put back in the owner queue.
+     * @param buffer the buffer to write, ready to be read
+     * @param owner the queue of free buffers of the recorder that filled the buffer
+     */
+    void submit(ByteBuffer buffer, BlockingQueue<ByteBuffer> owner) {
+        checkFailure();
+        queue.add(new Chunk(buffer, owner));
+    }
+
+    /**
+     * Waits for all the queued buffers to be written, then closes the file.
+     * @throws IOException if writing any of the buffers failed
+     */
+    @Override
+    public void close() throws IOException {
+        queue.add(END);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The body of the writer thread: writes the queued buffers until the end mark is reached.
+     */
+    private void writeLoop() {
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (chunk == END) {
+                return;
+            }
+
+            if (failure == null) {
+                try {
+                    writeFully(chunk.buffer);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            chunk.buffer.clear();
+            chunk.owner.add(chunk.buffer);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Reports an error of the writer thread to the thread that produces the games.
+     */
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+}
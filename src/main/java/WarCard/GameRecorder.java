@@ -0,0 +1,218 @@
+package WarCard;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The GameRecorder class encodes whole games in a compact binary format. <br>
+ * Every game record holds:
+ * <ul>
+ *     <li>the seed of the deal (8 bytes, 0 if the game was not dealt from a seed)</li>
+ *     <li>the number of cards dealt to the computer, and their codes from top to bottom (a byte each)</li>
+ *     <li>the number of cards dealt to the user, and their codes from top to bottom (a byte each)</li>
+ *     <li>the number of rounds played (4 bytes)</li>
+ *     <li>the result of every round in 2 bits, four rounds to a byte, the first round in the lowest bits</li>
+ *     <li>the outcome of the game (a byte)</li>
+ * </ul>
+ * Every game played is recorded, including games stopped at the rounds limit, which have the outcome
+ * {@link #GAME_UNFINISHED}. The records are read back by {@link GameRecordReader}. <br>
+ * Only two-player games dealt from a single deck can be recorded. <br>
+ * A recorder is used by a single thread. Its records are collected in one of two buffers,
+ * and a full buffer is handed to the {@link GameRecordWriter} while the other one is filled.
+ */
+public class GameRecorder {
+
+    /** The round was won by the computer. */
+    static final int ROUND_COM_WON = 0;
+    /** The round was won by the user. */
+    static final int ROUND_USER_WON = 1;
+    /**
+     * The round was a tie, and a war broke out - or, as the last round of a game, a tie that left no
+     * player with cards, so the game ended in a tie (see {@link #GAME_TIE}).
+     */
+    static final int ROUND_WAR = 2;
+    /** The round drew one of the face-down cards of a war. */
+    static final int ROUND_WAR_CARD = 3;
+
+    /** The game was won by the computer. */
+    static final int GAME_COM_WON = 0;
+    /** The game was won by the user. */
+    static final int GAME_USER_WON = 1;
+    /** The game ended with both players out of cards. */
+    static final int GAME_TIE = 2;
+    /** The game was stopped because it repeats itself forever. */
+    static final int GAME_CYCLE = 3;
+    /** Added to the outcome when the end of the game was taken from the transposition cache. */
+    static final int GAME_FROM_CACHE = 4;
+    /** The game was stopped at the rounds limit before it ended. */
+    static final int GAME_UNFINISHED = 8;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final GameRecordWriter writer;
+    private final BlockingQueue<ByteBuffer> freeBuffers;
+    private ByteBuffer buffer;                  // the buffer currently being filled
+
+    // the game being recorded
+    private long seed;
+    private final byte[] dealCom;
+    private final byte[] dealUser;
+    private int dealComSize;
+    private int dealUserSize;
+    private byte[] rounds;                      // the results of the rounds, packed four to a byte
+    private int roundsCount;
+
+    /**
+     * Constructs a GameRecorder that hands its buffers to the given writer.
+     * @param writer the writer of the recorded games
+     */
+    GameRecorder(GameRecordWriter writer) {
+        this.writer = writer;
+        freeBuffers = new ArrayBlockingQueue<>(2);
+        freeBuffers.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        dealCom = new byte[Card.CODES_COUNT];
+        dealUser = new byte[Card.CODES_COUNT];
+        rounds = new byte[256];
+    }
+
+    /**
+     * Returns the number of bytes the results of the given number of rounds are packed into.
+     * @return the size of the packed results
+     */
+    static int packedRoundsSize(int roundsCount) {
+        return (roundsCount + 3) >> 2;
+    }
+
+    /**
+     * Returns the result of a round from the packed results of a game.
+     * @return one of the ROUND_ constants
+     */
+    static int roundResult(byte[] rounds, int round) {
+        return (rounds[round >> 2] >> ((round & 3) * 2)) & 3;
+    }
+
+    /**
+     * Starts recording a game that has just been dealt.
+     * @param warCard the game, before its first round
+     * @param seed the seed the game was dealt from, or 0 if it was not dealt from a seed
+     * @throws IllegalArgumentException if the game has more than two players or more than one deck,
+     *                                  or is not played by the standard rules
+     */
+    public void startGame(WarCard warCard, long seed) {
+        if (warCard.getPlayersCount() != 2 || warCard.getDecksCount() != 1) {
+            throw new IllegalArgumentException("only two-player games with a single deck can be recorded");
+        }
+        if (!warCard.getRules().equals(Rules.STANDARD)) {
+            throw new IllegalArgumentException("only games of the standard rules can be recorded");
+        }
+        this.seed = seed;
+        dealComSize = warCard.getPlayerCom().copyHand(dealCom);
+        dealUserSize = warCard.getPlayerUser().copyHand(dealUser);
+        roundsCount = 0;
+    }
+
+    /**
+     * Records the result of the round that has just been executed. <br>
+     * A last round that left both players out of cards has no winner, and is recorded as {@link #ROUND_WAR}.
+     * @param warCard the game, right after {@link WarCard#exeRound()}
+     */
+    public void recordRound(WarCard warCard) {
+        int result;
+        if (warCard.getWarCardsCount() > 0) {
+            result = ROUND_WAR_CARD;
+        } else if (warCard.getWarCardsCount() == 0) {
+            result = ROUND_WAR;
+        } else if (warCard.getWinner() == warCard.getPlayerCom()) {
+            result = ROUND_COM_WON;
+        } else if (warCard.getWinner() == warCard.getPlayerUser()) {
+            result = ROUND_USER_WON;
+        } else {    // both players ran out of cards in the last round
+            result = ROUND_WAR;
+        }
+
+        int index = roundsCount >> 2;
+        if (index == rounds.length) {
+            rounds = Arrays.copyOf(rounds, 2 * rounds.length);
+        }
+        int shift = (roundsCount & 3) * 2;
+        rounds[index] = (byte) ((shift == 0 ? 0 : rounds[index]) | result << shift);
+        roundsCount++;
+    }
+
+    /**
+     * Finishes the record of a game, and adds it to the current buffer.
+     * @param warCard the game, after its last round
+     * @param finished whether the game has ended, rather than being stopped at the rounds limit
+     */
+    public void endGame(WarCard warCard, boolean finished) {
+        int outcome;
+        if (!finished) {
+            outcome = GAME_UNFINISHED;
+        } else if (warCard.isCycle()) {
+            outcome = GAME_CYCLE;
+        } else if (warCard.getWinner() == null) {
+            outcome = GAME_TIE;
+        } else if (warCard.getWinner() == warCard.getPlayerCom()) {
+            outcome = GAME_COM_WON;
+        } else {
+            outcome = GAME_USER_WON;
+        }
+        if (warCard.isFinishedFromCache()) {
+            outcome += GAME_FROM_CACHE;
+        }
+
+        int packedRounds = packedRoundsSize(roundsCount);
+        int size = Long.BYTES + 1 + dealComSize + 1 + dealUserSize + Integer.BYTES + packedRounds + 1;
+        ByteBuffer target = reserve(size);
+        target.putLong(seed)
+                .put((byte) dealComSize).put(dealCom, 0, dealComSize)
+                .put((byte) dealUserSize).put(dealUser, 0, dealUserSize)
+                .putInt(roundsCount)
+                .put(rounds, 0, packedRounds)
+                .put((byte) outcome);
+        if (target != buffer) {     // a record too large for any buffer is written on its own
+            writer.submit(target.flip(), new ArrayBlockingQueue<>(1));
+        }
+    }
+
+    /**
+     * Hands the records collected so far to the writer, even if the buffer is not full.
+     */
+    public void flush() {
+        if (buffer.position() > 0) {
+            swapBuffers();
+        }
+    }
+
+    /**
+     * Returns a buffer with room for a record of the given size, handing the current buffer
+     * to the writer if it is too full.
+     */
+    private ByteBuffer reserve(int size) {
+        if (size > BUFFER_SIZE) {
+            return ByteBuffer.allocate(size);
+        }
+        if (buffer.remaining() < size) {
+            swapBuffers();
+        }
+        return buffer;
+    }
+
+    /**
+     * Hands the current buffer to the writer, and continues with the other buffer
+     * once the writer is done with it.
+     */
+    private void swapBuffers() {
+        writer.submit(buffer.flip(), freeBuffers);
+        try {
+            buffer = freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for the game record writer", e);
+        }
+    }
+}
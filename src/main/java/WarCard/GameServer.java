@@ -0,0 +1,278 @@
+package WarCard;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameServer class hosts many concurrent War games over a small local HTTP API. <br>
+ * The games are kept by a {@link SessionManager}, and every request is handled on its own thread -
+ * a virtual thread when the runtime has them, so tens of thousands of clients can wait on their
+ * sessions at once without holding a platform thread each. The API is:
+ * <ul>
+ *     <li>{@code POST /sessions?players=2&decks=1} - creates a session and returns its id; the players range
+ *     from {@link WarCard#MIN_PLAYERS} to {@link WarCard#MAX_PLAYERS} and the decks from 1 to {@link Deck#MAX_DECKS}</li>
+ *     <li>{@code POST /sessions/{id}/game?seed=42} - deals a new game, from the seed if it is given</li>
+ *     <li>{@code POST /sessions/{id}/round} - plays a single round</li>
+ *     <li>{@code GET /sessions/{id}} - returns the state of the session</li>
+ *     <li>{@code DELETE /sessions/{id}} - removes the session</li>
+ * </ul>
+ * The states are returned as JSON objects. The server listens on the loopback address only.
+ */
+public class GameServer {
+
+    private static final String SESSIONS = "/sessions";
+    private static final long EVICTION_PERIOD_SECONDS = 60;
+
+    private final SessionManager sessions;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService evictor;
+    private final long idleNanos;
+
+    /**
+     * Constructs a GameServer on the given local port.
+     * @param port the port to listen on, or 0 for any free port
+     * @param maxSessions the maximal number of live sessions
+     * @param idleSeconds the time after which a session that was not accessed is removed
+     * @throws IOException if the server cannot listen on the port
+     */
+    public GameServer(int port, int maxSessions, long idleSeconds) throws IOException {
+        sessions = new SessionManager(maxSessions);
+        idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(SESSIONS, this::handle);
+        requestExecutor = newRequestExecutor();
+        server.setExecutor(requestExecutor);
+        evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts accepting requests, and starts evicting idle sessions.
+     */
+    public void start() {
+        server.start();
+        evictor.scheduleAtFixedRate(() -> sessions.evictIdle(idleNanos),
+                EVICTION_PERIOD_SECONDS, EVICTION_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the server, waiting up to the given time for the requests being handled.
+     * @param delaySeconds the maximal time to wait for the requests being handled
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        evictor.shutdownNow();
+        requestExecutor.shutdownNow();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return the port of the server
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the manager of the sessions hosted by the server.
+     * @return the session manager
+     */
+    public SessionManager getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Returns an executor that runs every task on a new virtual thread, or a pool of platform threads
+     * on runtimes that have no virtual threads.
+     * @return the executor of the requests
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "session-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Routes a request to the session manager and sends its response.
+     * @param exchange the request and its response
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            URI uri = exchange.getRequestURI();
+            // the context matches any path that starts with SESSIONS, so the rest must be empty or a sub-path
+            String rest = uri.getPath().substring(SESSIONS.length());
+            String[] path = rest.startsWith("/") ? rest.substring(1).split("/", -1) : null;
+            // path[0] is the session id and path[1] the action
+            if (rest.isEmpty()) {
+                if (method.equals("POST")) {
+                    int players = intParam(uri, "players", WarCard.MIN_PLAYERS, WarCard.MIN_PLAYERS, WarCard.MAX_PLAYERS);
+                    int decks = intParam(uri, "decks", 1, 1, Deck.MAX_DECKS);
+                    long id = sessions.create(players, decks);
+                    send(exchange, 201, "{\"id\":" + id + "}");
+                    return;
+                }
+            } else if (path != null && path.length <= 2 && isId(path[0]) && !(path.length == 2 && path[1].isEmpty())) {
+                long id = Long.parseLong(path[0]);
+                String action = (path.length > 1) ? path[1] : "";
+                if (method.equals("GET") && action.isEmpty()) {
+                    send(exchange, 200, sessions.getState(id));
+                    return;
+                }
+                if (method.equals("DELETE") && action.isEmpty()) {
+                    send(exchange, sessions.remove(id) ? 204 : 404, null);
+                    return;
+                }
+                if (method.equals("POST") && action.equals("game")) {
+                    String seed = param(uri, "seed");
+                    send(exchange, 200, sessions.startGame(id, seed == null ? null : Long.parseLong(seed)));
+                    return;
+                }
+                if (method.equals("POST") && action.equals("round")) {
+                    send(exchange, 200, sessions.playRound(id));
+                    return;
+                }
+            }
+            send(exchange, 404, error("unknown request " + method + " " + uri.getPath()));
+        } catch (NoSuchElementException e) {
+            send(exchange, 404, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            send(exchange, 503, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            send(exchange, 500, error(e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends a response with a JSON body.
+     * @param body the body of the response, or null for an empty response
+     */
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Returns the JSON body of an error response.
+     * @param message the message of the error, or null
+     */
+    private static String error(String message) {
+        return "{\"error\":" + jsonString(String.valueOf(message)) + "}";
+    }
+
+    /**
+     * Returns a string as a JSON string literal, with its quotes, backslashes and control characters escaped.
+     */
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    /**
+     * Checks if a path segment is a session id: a non-empty run of digits.
+     */
+    private static boolean isId(String segment) {
+        if (segment.isEmpty() || segment.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < segment.length(); ++i) {
+            if (segment.charAt(i) < '0' || segment.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the value of a query parameter, or null if the request has no such parameter.
+     */
+    private static String param(URI uri, String name) {
+        String query = uri.getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0 && pair.substring(0, eq).equals(name)) {
+                return pair.substring(eq + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the value of an integer query parameter, checked against its range.
+     * @throws IllegalArgumentException if the value is not an integer or is out of range, answered with 400
+     */
+    private static int intParam(URI uri, String name, int defaultValue, int min, int max) {
+        String value = param(uri, name);
+        int result = (value == null) ? defaultValue : Integer.parseInt(value);
+        if (result < min || result > max) {
+            throw new IllegalArgumentException(name + " must be between " + min + " and " + max + ": " + result);
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int maxSessions = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        long idleSeconds = args.length > 2 ? Long.parseLong(args[2]) : 600;
+
+        GameServer server = new GameServer(port, maxSessions, idleSeconds);
+        server.start();
+        System.out.println("War game server listening on http://localhost:" + server.getPort() + SESSIONS);
+    }
+}
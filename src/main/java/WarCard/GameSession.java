@@ -0,0 +1,124 @@
+package WarCard;
+
+import java.util.StringJoiner;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The GameSession class is a single game hosted by the {@link SessionManager}. <br>
+ * A session owns its own {@link WarCard}, which is not thread safe, so every access to the game
+ * goes through the session's lock. The lock is a {@link ReentrantLock} rather than a synchronized block,
+ * so a virtual thread that waits for it does not pin its carrier thread.
+ */
+class GameSession {
+
+    private final long id;
+    private final WarCard warCard;
+    private final ReentrantLock lock;
+    private boolean gameIsOn;               // false before the first game and after a game ended
+    private volatile long lastAccessNanos;  // the time of the last request, for evicting idle sessions
+
+    /**
+     * Constructs a GameSession with a new game of the given number of players and decks.
+     * @param id the id of the session
+     * @param playersCount the number of players in the game
+     * @param decksCount the number of standard decks in the shoe
+     */
+    GameSession(long id, int playersCount, int decksCount) {
+        this.id = id;
+        this.warCard = new WarCard(playersCount, decksCount);
+        this.lock = new ReentrantLock();
+        this.lastAccessNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the id of the session.
+     * @return the session's id
+     */
+    long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the time of the last request to the session, as in {@link System#nanoTime()}.
+     * @return the time of the last access
+     */
+    long getLastAccessNanos() {
+        return lastAccessNanos;
+    }
+
+    /**
+     * Deals a new game, from the given seed or from a random one.
+     * @param seed the seed of the deal, or null for a random deal
+     * @return the state of the session after the deal
+     */
+    String startGame(Long seed) {
+        lock.lock();
+        try {
+            lastAccessNanos = System.nanoTime();
+            if (seed == null) {
+                warCard.startGame();
+            } else {
+                warCard.startGame(seed);
+            }
+            gameIsOn = true;
+            return state();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Plays a single round of the game, if it is still on.
+     * @return the state of the session after the round
+     */
+    String playRound() {
+        lock.lock();
+        try {
+            lastAccessNanos = System.nanoTime();
+            if (gameIsOn) {
+                gameIsOn = warCard.exeRound();
+            }
+            return state();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the state of the session.
+     * @return the state of the session as a JSON object
+     */
+    String getState() {
+        lock.lock();
+        try {
+            lastAccessNanos = System.nanoTime();
+            return state();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Formats the state of the game as a JSON object. Must be called while holding the lock.
+     */
+    private String state() {
+        StringJoiner cards = new StringJoiner(",", "[", "]");
+        StringJoiner handSizes = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < warCard.getPlayersCount(); ++i) {
+            Card card = warCard.getCard(i);
+            cards.add(card == null ? "null" : "\"" + card + "\"");
+            handSizes.add(Integer.toString(warCard.getPlayer(i).getHandSize()));
+        }
+        Player winner = warCard.getWinner();
+        return "{\"id\":" + id
+                + ",\"gameOn\":" + gameIsOn
+                + ",\"round\":" + warCard.getRoundsCount()
+                + ",\"warCardsCount\":" + warCard.getWarCardsCount()
+                + ",\"faceDown\":" + warCard.isFaceDownRound()
+                + ",\"winner\":" + (winner == null ? "null" : "\"" + winner.getName() + "\"")
+                + ",\"cycle\":" + warCard.isCycle()
+                + ",\"cards\":" + cards
+                + ",\"handSizes\":" + handSizes
+                + "}";
+    }
+}
@@ -0,0 +1,227 @@
+package WarCard;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The Histogram class counts non-negative values in logarithmic buckets, without locking. <br>
+ * Every power of two is split into 4 buckets, so a value is known up to 25% of it, and the whole
+ * range of a {@code long} fits in 256 buckets. Any thread may record values or take a snapshot at any time. <br>
+ * Recording into a shared histogram costs an atomic update, so a hot loop records into a {@link Local}
+ * histogram of its own, and adds it to the shared one once in a while.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong sum;
+    private final AtomicLong min;
+    private final AtomicLong max;
+
+    /**
+     * Constructs an empty Histogram.
+     */
+    public Histogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        sum = new AtomicLong();
+        min = new AtomicLong(Long.MAX_VALUE);
+        max = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * Records a single value.
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+        counts.incrementAndGet(bucket(value));
+        sum.addAndGet(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Adds all the values of a local histogram to this histogram, and clears the local histogram.
+     * @param local the local histogram to add
+     */
+    void add(Local local) {
+        if (local.count == 0) {
+            return;
+        }
+        for (int i = local.lowestBucket; i <= local.highestBucket; ++i) {
+            if (local.counts[i] != 0) {
+                counts.addAndGet(i, local.counts[i]);
+                local.counts[i] = 0;
+            }
+        }
+        sum.addAndGet(local.sum);
+        min.accumulateAndGet(local.min, Math::min);
+        max.accumulateAndGet(local.max, Math::max);
+        local.reset();
+    }
+
+    /**
+     * Returns a copy of the current counts. Values that are recorded while the snapshot is taken
+     * may be partly included.
+     * @return a snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.get(), min.get(), max.get());
+    }
+
+    /**
+     * Returns the bucket of a value.
+     * @param value a non-negative value
+     * @return the index of the value's bucket
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the smallest value of a bucket.
+     * @param bucket the index of the bucket
+     * @return the lower bound of the bucket
+     */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * The Local class is a histogram owned by a single thread, recorded without any synchronization.
+     */
+    static final class Local {
+        private final long[] counts = new long[BUCKETS];
+        private long count;
+        private long sum;
+        private long min;
+        private long max;
+        private int lowestBucket;       // the range of the buckets that may hold values
+        private int highestBucket;
+
+        Local() {
+            reset();
+        }
+
+        /**
+         * Records a single value.
+         * @param value the value to record, a non-negative value
+         */
+        void record(long value) {
+            int bucket = bucket(value);
+            counts[bucket]++;
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            lowestBucket = Math.min(lowestBucket, bucket);
+            highestBucket = Math.max(highestBucket, bucket);
+        }
+
+        private void reset() {
+            count = 0;
+            sum = 0;
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            lowestBucket = BUCKETS;
+            highestBucket = -1;
+        }
+    }
+
+    /**
+     * The Snapshot class is an immutable copy of a histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long min, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         * @return the count of values
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the smallest recorded value.
+         * @return the minimal value, or 0 if no value was recorded
+         */
+        public long getMin() {
+            return count == 0 ? 0 : min;
+        }
+
+        /**
+         * Returns the largest recorded value.
+         * @return the maximal value, or 0 if no value was recorded
+         */
+        public long getMax() {
+            return count == 0 ? 0 : max;
+        }
+
+        /**
+         * Returns the average of the recorded values.
+         * @return the mean value, or 0 if no value was recorded
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value below which the given fraction of the values fall, up to the resolution of a bucket.
+         * @param fraction the fraction of the values, between 0 and 1
+         * @return the lower bound of the bucket of the percentile, or 0 if no value was recorded
+         */
+        public long getPercentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; ++i) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.max(lowerBound(i), getMin());
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Returns a string representation of the snapshot.
+         * @return the count, mean, median, 99th percentile and extremes of the values
+         */
+        @Override
+        public String toString() {
+            return String.format("count %d, mean %.2f, p50 %d, p99 %d, min %d, max %d",
+                    count, getMean(), getPercentile(0.5), getPercentile(0.99), getMin(), getMax());
+        }
+    }
+}
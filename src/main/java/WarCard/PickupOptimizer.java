@@ -0,0 +1,347 @@
+package WarCard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The PickupOptimizer class searches for the order in which the user should pick up the table to win
+ * the most two-player games against a computer that picks it up in the standard order. <br>
+ * It first scores the fixed policies (in order, highest first, lowest first and alternating), and then
+ * learns an order of the ranks by local search from the best ranked one: in every step it scores every
+ * order that swaps two adjacent ranks of the current one, and moves to the best of them if it is
+ * significantly better. As the best of the 12 neighbours is picked before it is tested, its z-score must pass
+ * the Bonferroni correction of {@link #SIGNIFICANT_Z} for 12 comparisons. <br>
+ * All the candidates of a step are scored on the same games - the same seeded deals, as {@link Simulator}
+ * deals them - using common random numbers. The games are split between the cores with fork-join, and
+ * every game is played once by each candidate. A candidate is compared with the current policy by their
+ * paired difference in every game, whose variance is much smaller than the variance of two independent
+ * win rates, so far fewer games tell two policies apart. <br>
+ * Picking the best of many candidates on the same games favours the ones those games happen to suit,
+ * so the learned policy is finally compared with the best fixed one on as many other games, the next
+ * range of seeds of the master seed, which no step of the search has played. <br>
+ * A game scores 1 for a win of the user, 0 for a loss, and 1/2 for a tie, a cycle or an unfinished game.
+ */
+public class PickupOptimizer {
+
+    private static final int GAMES_PER_TASK = 1024;    // games played by a single task without splitting
+    static final double SIGNIFICANT_Z = 3.0;            // the z-score of a paired difference that counts as better
+    static final int NEIGHBOURS = Rank.values().length - 1; // the orders that swap two adjacent ranks of an order
+    // the z-score of the best of the neighbours: the one-sided tail of SIGNIFICANT_Z (0.00135) divided by NEIGHBOURS
+    static final double SIGNIFICANT_NEIGHBOUR_Z = 3.689;
+
+    private final ForkJoinPool pool;
+    private final long games;
+    private final long masterSeed;
+    private final int maxRounds;
+
+    /**
+     * Constructs a PickupOptimizer that scores every candidate on the same games.
+     * @param pool the pool that executes the games
+     * @param games the number of games every candidate plays: the games 0 to games - 1 of the master seed
+     *              in the search, and the next as many games in the final comparison
+     * @param masterSeed the seed from which the seeds of all the games are derived
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     * @throws IllegalArgumentException if the number of games is less than 2
+     */
+    public PickupOptimizer(ForkJoinPool pool, long games, long masterSeed, int maxRounds) {
+        if (games < 2) {
+            throw new IllegalArgumentException("at least 2 games are needed to compare policies: " + games);
+        }
+        this.pool = pool;
+        this.games = games;
+        this.masterSeed = masterSeed;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Scores a list of candidates on the same games. The first candidate is the one all the others are compared with.
+     * @param candidates the policies of the user, the first of them the current one
+     * @return the scores of the candidates
+     */
+    Scores evaluate(List<PickupPolicy> candidates) {
+        return evaluate(candidates, 0);
+    }
+
+    /**
+     * Scores a list of candidates on the same games, starting from the given game of the master seed.
+     * @param candidates the policies of the user, the first of them the current one
+     * @param firstGame the index of the first game
+     * @return the scores of the candidates
+     */
+    Scores evaluate(List<PickupPolicy> candidates, long firstGame) {
+        PickupPolicy[] policies = candidates.toArray(new PickupPolicy[0]);
+        return pool.invoke(new EvaluationTask(policies, firstGame, firstGame + games));
+    }
+
+    /**
+     * Scores the fixed policies, and then learns an order of the ranks by local search.
+     * @param maxSteps the most steps of the local search
+     * @return the best policy found
+     */
+    PickupPolicy search(int maxSteps) {
+        List<PickupPolicy> fixed = List.of(PickupPolicy.inOrder(), PickupPolicy.highestFirst(),
+                PickupPolicy.lowestFirst(), PickupPolicy.alternating());
+        Scores scores = evaluate(fixed);
+        System.out.println("fixed policies, " + games + " games each:");
+        System.out.print(scores);
+
+        PickupPolicy best = fixed.get(scores.best());
+        PickupPolicy current = fixed.get(scores.bestRanked(fixed));
+        for (int step = 1; step <= maxSteps; ++step) {
+            List<PickupPolicy> candidates = new ArrayList<>();
+            candidates.add(current);
+            for (int place = 0; place < NEIGHBOURS; ++place) {
+                candidates.add(current.swap("learned " + step, place));
+            }
+            scores = evaluate(candidates);
+            int next = scores.best();
+            System.out.printf("step %d: best neighbour %+.4f (z %.1f)%n", step,
+                    scores.difference(next), scores.z(next));
+            if (next == 0 || scores.z(next) < SIGNIFICANT_NEIGHBOUR_Z) {
+                break;
+            }
+            current = candidates.get(next);
+        }
+
+        if (current == best) {
+            return best;
+        }
+        Scores last = evaluate(List.of(best, current), games);
+        System.out.println("learned policy against the best fixed one, on " + games + " other games:");
+        System.out.print(last);
+        return last.z(1) >= SIGNIFICANT_Z ? current : best;
+    }
+
+    /**
+     * The sums of the scores of several candidates over the same games, and of their paired differences
+     * from the first candidate. The scores are counted in half points, so the sums are exact
+     * and do not depend on the order in which the games were merged.
+     */
+    static class Scores {
+        private final PickupPolicy[] policies;
+        private long games;
+        private final long[] sums;          // the half points of every candidate
+        private final long[] squares;       // the squares of the half points of every candidate
+        private final long[] differences;   // the half points of every candidate less those of the first, per game
+        private final long[] differenceSquares;
+
+        Scores(PickupPolicy[] policies) {
+            this.policies = policies;
+            sums = new long[policies.length];
+            squares = new long[policies.length];
+            differences = new long[policies.length];
+            differenceSquares = new long[policies.length];
+        }
+
+        /**
+         * Adds the half points of a single game, as played by every candidate.
+         * @param points the half points of every candidate
+         */
+        void record(int[] points) {
+            games++;
+            for (int i = 0; i < points.length; ++i) {
+                int difference = points[i] - points[0];
+                sums[i] += points[i];
+                squares[i] += points[i] * points[i];
+                differences[i] += difference;
+                differenceSquares[i] += difference * difference;
+            }
+        }
+
+        /**
+         * Adds the sums of other games, of the same candidates, to these.
+         * @param other the scores to add
+         * @return this scores
+         */
+        Scores merge(Scores other) {
+            games += other.games;
+            for (int i = 0; i < sums.length; ++i) {
+                sums[i] += other.sums[i];
+                squares[i] += other.squares[i];
+                differences[i] += other.differences[i];
+                differenceSquares[i] += other.differenceSquares[i];
+            }
+            return this;
+        }
+
+        /**
+         * Returns the mean score of a candidate.
+         * @param i the index of the candidate
+         * @return the mean score, between 0 and 1
+         */
+        double mean(int i) {
+            return sums[i] / (2.0 * games);
+        }
+
+        /**
+         * Returns the mean of a candidate's score less the first candidate's score, over the same games.
+         * @param i the index of the candidate
+         * @return the mean paired difference
+         */
+        double difference(int i) {
+            return differences[i] / (2.0 * games);
+        }
+
+        /**
+         * Returns the standard error of the mean paired difference of a candidate.
+         * @param i the index of the candidate
+         * @return the standard error, using common random numbers
+         */
+        double pairedError(int i) {
+            return Math.sqrt(variance(differences[i], differenceSquares[i]) / games);
+        }
+
+        /**
+         * Returns the standard error the difference of a candidate would have, had the two candidates
+         * been scored on independent games.
+         * @param i the index of the candidate
+         * @return the standard error of the difference of two independent means
+         */
+        double independentError(int i) {
+            return Math.sqrt((variance(sums[i], squares[i]) + variance(sums[0], squares[0])) / games);
+        }
+
+        /**
+         * Returns the z-score of the paired difference of a candidate: how many standard errors it is above 0.
+         * @param i the index of the candidate
+         * @return the z-score, or 0 if the candidate scored exactly as the first one in every game
+         */
+        double z(int i) {
+            double error = pairedError(i);
+            return (error == 0) ? 0 : difference(i) / error;
+        }
+
+        /**
+         * Returns the candidate with the highest mean score, the first of them on equal scores.
+         * @return the index of the best candidate
+         */
+        int best() {
+            int best = 0;
+            for (int i = 1; i < sums.length; ++i) {
+                if (sums[i] > sums[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Returns the best of the candidates that order the ranks, from which an order can be learned.
+         * @param candidates the candidates, in the order they were scored
+         * @return the index of the best ranked candidate
+         */
+        int bestRanked(List<PickupPolicy> candidates) {
+            int best = -1;
+            for (int i = 0; i < sums.length; ++i) {
+                if (candidates.get(i).isRanked() && (best < 0 || sums[i] > sums[best])) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Returns the variance of the values of a single game, in points, from their sums in half points.
+         */
+        private double variance(long sum, long sumOfSquares) {
+            double mean = (double) sum / games;
+            return (sumOfSquares - mean * sum) / (games - 1) / 4;
+        }
+
+        /**
+         * Returns a table of the candidates, their mean scores, and their differences from the first
+         * with the paired and the independent standard errors.
+         * @return a string representation of the scores
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < policies.length; ++i) {
+                builder.append(String.format("  %-60s %.4f", policies[i], mean(i)));
+                if (i > 0) {
+                    builder.append(String.format("  %+.4f +- %.4f paired (+- %.4f independent), z %.1f",
+                            difference(i), pairedError(i), independentError(i), z(i)));
+                }
+                builder.append(System.lineSeparator());
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * A fork-join task that plays a range of games with every candidate, splitting it in half while it is too large.
+     */
+    private class EvaluationTask extends RecursiveTask<Scores> {
+        private final PickupPolicy[] policies;
+        private final long from;    // index of the first game in the range
+        private final long to;      // index after the last game in the range
+
+        EvaluationTask(PickupPolicy[] policies, long from, long to) {
+            this.policies = policies;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Scores compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                WarCard[] warCards = new WarCard[policies.length];
+                for (int i = 0; i < policies.length; ++i) {
+                    warCards[i] = new WarCard(WarCard.MIN_PLAYERS, 1);
+                    warCards[i].setPickupPolicy(1, policies[i]);
+                }
+                Scores scores = new Scores(policies);
+                int[] points = new int[policies.length];
+                for (long game = from; game < to; ++game) {
+                    long seed = Simulator.gameSeed(masterSeed, game);
+                    for (int i = 0; i < policies.length; ++i) {
+                        points[i] = play(warCards[i], seed);
+                    }
+                    scores.record(points);
+                }
+                return scores;
+            }
+
+            long middle = from + (to - from) / 2;
+            EvaluationTask left = new EvaluationTask(policies, from, middle);
+            EvaluationTask right = new EvaluationTask(policies, middle, to);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+
+        /**
+         * Plays a single game to the end (or until the rounds limit).
+         * @return the half points of the user: 2 for a win, 0 for a loss, and 1 otherwise
+         */
+        private int play(WarCard warCard, long seed) {
+            warCard.startGame(seed);
+            boolean gameIsOn = true;
+            while (gameIsOn && warCard.getRoundsCount() < maxRounds) {
+                gameIsOn = warCard.exeRound();
+            }
+            if (gameIsOn || warCard.getWinner() == null) {
+                return 1;
+            }
+            return (warCard.getWinner() == warCard.getPlayerUser()) ? 2 : 0;
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 20_000;
+        long masterSeed = args.length > 1 ? Long.parseLong(args[1]) : new SplittableRandom().nextLong();
+        int maxSteps = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        PickupOptimizer optimizer = new PickupOptimizer(ForkJoinPool.commonPool(), games, masterSeed,
+                Simulator.DEFAULT_MAX_ROUNDS);
+        long start = System.nanoTime();
+        PickupPolicy best = optimizer.search(maxSteps);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("master seed: " + masterSeed);
+        System.out.println("best policy: " + best);
+        System.out.printf("%.2f seconds%n", seconds);
+    }
+}
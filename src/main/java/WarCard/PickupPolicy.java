@@ -0,0 +1,168 @@
+package WarCard;
+
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * The PickupPolicy class describes an order in which a player picks up the cards of the table,
+ * for the player's own battles only (see {@link WarCard#setPickupPolicy(int, PickupPolicy)}). <br>
+ * A policy gives every rank a place in the order: the cards go to the bottom of the hand from the rank
+ * placed first to the rank placed last, and the cards of the same rank keep the order they were drawn in.
+ * An alternating policy then takes the cards from both ends of that order in turn - the last, the first,
+ * the one before the last, and so on. <br>
+ * Policies are immutable, so a single policy can be shared by any number of games.
+ */
+final class PickupPolicy {
+
+    private static final int RANKS = Rank.values().length;
+
+    private final String name;
+    private final byte[] rankOrder;         // the rank values, from the rank picked up first to the last
+    private final byte[] codePlaces;        // the place of the rank of every card code in the order
+    private final boolean alternating;
+    private final boolean inOrder;          // true if the policy keeps the order the cards were drawn in
+
+    /**
+     * Constructs a pickup policy.
+     * @param name the name of the policy
+     * @param rankOrder the rank values, from the rank picked up first to the last, or null to keep the drawn order
+     * @param alternating true to take the cards from both ends of the order in turn
+     */
+    private PickupPolicy(String name, byte[] rankOrder, boolean alternating) {
+        this.name = name;
+        this.rankOrder = rankOrder;
+        this.alternating = alternating;
+        this.inOrder = (rankOrder == null);
+        codePlaces = new byte[Card.CODES_COUNT];
+        if (!inOrder) {
+            byte[] places = new byte[Rank.ACE.getValue() + 1];
+            for (int place = 0; place < rankOrder.length; ++place) {
+                places[rankOrder[place]] = (byte) place;
+            }
+            for (int code = 0; code < Card.CODES_COUNT; ++code) {
+                codePlaces[code] = places[Card.rankValue(code)];
+            }
+        }
+    }
+
+    /**
+     * Returns the policy that picks up the table in the order it was drawn, as the standard rules do.
+     * @return the in-order policy
+     */
+    static PickupPolicy inOrder() {
+        return new PickupPolicy("in order", null, false);
+    }
+
+    /**
+     * Returns the policy that picks up the highest rank first, so it is drawn again first.
+     * @return the highest-first policy
+     */
+    static PickupPolicy highestFirst() {
+        return ranked("highest first", descendingRanks());
+    }
+
+    /**
+     * Returns the policy that picks up the lowest rank first, so the high ranks are kept for later.
+     * @return the lowest-first policy
+     */
+    static PickupPolicy lowestFirst() {
+        return ranked("lowest first", ascendingRanks());
+    }
+
+    /**
+     * Returns the policy that picks up the highest and the lowest remaining ranks in turn.
+     * @return the alternating policy
+     */
+    static PickupPolicy alternating() {
+        return new PickupPolicy("alternating", ascendingRanks(), true);
+    }
+
+    /**
+     * Returns a policy that picks up the ranks in the given order.
+     * @param name the name of the policy
+     * @param rankOrder the values of all the ranks, from the rank picked up first to the last
+     * @return the policy
+     * @throws IllegalArgumentException if the order does not hold every rank exactly once
+     */
+    static PickupPolicy ranked(String name, byte[] rankOrder) {
+        boolean[] seen = new boolean[Rank.ACE.getValue() + 1];
+        for (byte value : rankOrder) {
+            if (value < Rank.TWO.getValue() || value > Rank.ACE.getValue() || seen[value]) {
+                throw new IllegalArgumentException("not an order of the ranks: " + Arrays.toString(rankOrder));
+            }
+            seen[value] = true;
+        }
+        if (rankOrder.length != RANKS) {
+            throw new IllegalArgumentException("not an order of the ranks: " + Arrays.toString(rankOrder));
+        }
+        return new PickupPolicy(name, rankOrder.clone(), false);
+    }
+
+    /**
+     * Returns the policy that picks up the ranks in the order of this policy, with two adjacent ranks swapped.
+     * @param name the name of the new policy
+     * @param place the place of the first of the swapped ranks, between 0 and 11
+     * @return the new policy
+     * @throws IllegalStateException if this policy keeps the drawn order or alternates
+     */
+    PickupPolicy swap(String name, int place) {
+        if (inOrder || alternating) {
+            throw new IllegalStateException("the " + this.name + " policy has no order of ranks to change");
+        }
+        byte[] swapped = rankOrder.clone();
+        swapped[place] = rankOrder[place + 1];
+        swapped[place + 1] = rankOrder[place];
+        return new PickupPolicy(name, swapped, false);
+    }
+
+    /**
+     * Checks if the policy picks up the ranks in an order of its own, which {@link #swap(String, int)} can change.
+     * @return true if the policy orders the ranks and does not alternate, false otherwise
+     */
+    boolean isRanked() {
+        return !inOrder && !alternating;
+    }
+
+    /**
+     * Returns a new pickup order of this policy, for a single game to use.
+     * @return the order in which the game picks up the table
+     */
+    Rules.TableOrder newTableOrder() {
+        if (inOrder) {
+            return new Rules.TableOrder(Rules.TableOrder.IN_ORDER, null);
+        }
+        return new Rules.TableOrder(alternating ? Rules.TableOrder.ALTERNATING : Rules.TableOrder.SORTED, codePlaces);
+    }
+
+    /**
+     * Returns the name of the policy, and the order of its ranks from the first picked up to the last.
+     * @return a string representation of the policy
+     */
+    @Override
+    public String toString() {
+        if (!isRanked()) {
+            return name;
+        }
+        StringJoiner joiner = new StringJoiner(" ", name + " [", "]");
+        for (byte value : rankOrder) {
+            joiner.add(Rank.values()[value == Rank.ACE.getValue() ? 0 : value - 1].toString());
+        }
+        return joiner.toString();
+    }
+
+    private static byte[] ascendingRanks() {
+        byte[] ranks = new byte[RANKS];
+        for (int i = 0; i < RANKS; ++i) {
+            ranks[i] = (byte) (Rank.TWO.getValue() + i);
+        }
+        return ranks;
+    }
+
+    private static byte[] descendingRanks() {
+        byte[] ranks = new byte[RANKS];
+        for (int i = 0; i < RANKS; ++i) {
+            ranks[i] = (byte) (Rank.ACE.getValue() - i);
+        }
+        return ranks;
+    }
+}
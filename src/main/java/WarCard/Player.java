@@ -1,15 +1,22 @@
 package WarCard;
 
-import java.util.ArrayList;
+import java.util.StringJoiner;
 
 /**
  * The Player class represents a player in the card game. <br>
- * Each player has a name, a hand of cards, and a score.
+ * Each player has a name, a hand of cards, and a score. <br>
+ * The hand is kept as a circular buffer of card codes (see {@link Card#getCode()}),
+ * so drawing from the top and adding to the top or bottom never shift the rest of the hand.
  */
 public class Player {
 
     private final String name;
-    private final ArrayList<Card> hand;
+    private final Card[] cardsByCode;   // maps the codes in the hand back to cards
+    private final byte[] hand;          // circular buffer of card codes
+    private int top;                    // index of the top card in the buffer
+    private int size;                   // number of cards in the hand
+    private long hash;                  // incremental hash of the hand (see Zobrist)
+    private long power;                 // Zobrist.BASE to the power of the hand's size
     private int score;
 
     /**
@@ -17,8 +24,33 @@ public class Player {
      * @param name the name of the player
      */
     public Player(String name) {
+        this(name, Card.byCode());
+    }
+
+    /**
+     * Constructs a new Player object whose card codes are translated back to the cards of a given deck.
+     * @param name the name of the player
+     * @param cardsByCode the cards of the deck, indexed by their code
+     */
+    Player(String name, Card[] cardsByCode) {
+        this(name, cardsByCode, cardsByCode.length);
+    }
+
+    /**
+     * Constructs a new Player object whose hand can hold up to the given number of cards,
+     * such as all the cards of a shoe of several decks.
+     * @param name the name of the player
+     * @param cardsByCode the cards of the deck, indexed by their code
+     * @param capacity the maximal number of cards in the hand
+     */
+    Player(String name, Card[] cardsByCode, int capacity) {
         this.name = name;
-        this.hand = new ArrayList<>();
+        this.cardsByCode = cardsByCode;
+        this.hand = new byte[capacity];
+        this.top = 0;
+        this.size = 0;
+        this.hash = 0;
+        this.power = 1;
         this.score = 0;
     }
 
@@ -35,7 +67,19 @@ public class Player {
      * @return player's hand represent as string
      */
     public String getHand(){
-        return hand.toString();
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < size; ++i) {
+            joiner.add(cardsByCode[hand[index(i)]].toString());
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Returns the number of cards in the player's hand.
+     * @return the size of the hand
+     */
+    public int getHandSize() {
+        return size;
     }
 
     /**
@@ -58,7 +102,7 @@ public class Player {
      * @param card the card to add to the top of the hand
      */
     public void addCardToTop(Card card) {
-        hand.add(0, card);
+        addCodeToTop(card.getCode());
     }
 
     /**
@@ -67,7 +111,7 @@ public class Player {
      */
     public void addCardsToBottom(Card ... cards) {
         for (Card card : cards){
-            hand.add(hand.size(), card);
+            addCodeToBottom(card.getCode());
         }
     }
 
@@ -76,10 +120,135 @@ public class Player {
      * @return the card drawn from the top of the hand, or null if the hand is empty
      */
     public Card drawCard() {
-        if (!hand.isEmpty()) {
-            return this.hand.remove(0);
+        int code = drawCode();
+        if (code < 0) {
+            return null; //hand is empty
         }
-        return null; //hand is empty
+        return cardsByCode[code];
+    }
+
+    /**
+     * Adds the card with the given code to the top of the player's hand.
+     * @param code the code of the card to add
+     */
+    void addCodeToTop(int code) {
+        top = (top == 0) ? hand.length - 1 : top - 1;
+        hand[top] = (byte) code;
+        size++;
+        hash = Zobrist.key(code) + hash * Zobrist.BASE;
+        power *= Zobrist.BASE;
+    }
+
+    /**
+     * Adds the card with the given code to the bottom of the player's hand.
+     * @param code the code of the card to add
+     */
+    void addCodeToBottom(int code) {
+        hand[index(size)] = (byte) code;
+        size++;
+        hash += Zobrist.key(code) * power;
+        power *= Zobrist.BASE;
+    }
+
+    /**
+     * Adds a range of card codes to the bottom of the player's hand, keeping their order.
+     * @param codes the array holding the codes to add
+     * @param from the index of the first code to add
+     * @param count the number of codes to add
+     */
+    void addCodesToBottom(byte[] codes, int from, int count) {
+        int bottom = index(size);
+        int firstPart = Math.min(count, hand.length - bottom);  // codes that fit before the buffer wraps
+        System.arraycopy(codes, from, hand, bottom, firstPart);
+        System.arraycopy(codes, from + firstPart, hand, 0, count - firstPart);
+        size += count;
+        for (int i = from; i < from + count; ++i) {
+            hash += Zobrist.key(codes[i]) * power;
+            power *= Zobrist.BASE;
+        }
+    }
+
+    /**
+     * Draws the code of the card at the top of the player's hand.
+     * @return the code of the card drawn from the top of the hand, or -1 if the hand is empty
+     */
+    int drawCode() {
+        if (size == 0) {
+            return -1; //hand is empty
+        }
+        int code = hand[top];
+        top = (top == hand.length - 1) ? 0 : top + 1;
+        size--;
+        hash = (hash - Zobrist.key(code)) * Zobrist.BASE_INVERSE;
+        power *= Zobrist.BASE_INVERSE;
+        return code;
+    }
+
+    /**
+     * Copies the card codes of the hand, from top to bottom, into the given array.
+     * @param codes the array to copy the codes into, at least as long as the hand
+     * @return the number of codes copied
+     */
+    int copyHand(byte[] codes) {
+        int firstPart = Math.min(size, hand.length - top);  // codes before the buffer wraps
+        System.arraycopy(hand, top, codes, 0, firstPart);
+        System.arraycopy(hand, 0, codes, firstPart, size - firstPart);
+        return size;
+    }
+
+    /**
+     * Checks if the hand holds exactly the given card codes, from top to bottom.
+     * @param codes the codes to compare with
+     * @param count the number of codes to compare with
+     * @return true if the hand is identical to the given codes, false otherwise
+     */
+    boolean handEquals(byte[] codes, int count) {
+        if (count != size) {
+            return false;
+        }
+        for (int i = 0; i < size; ++i) {
+            if (hand[index(i)] != codes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the hand holds exactly the same cards as another player's hand, in the same order.
+     * @param other the player to compare with
+     * @return true if the two hands are identical, false otherwise
+     */
+    boolean handEquals(Player other) {
+        if (other.size != size) {
+            return false;
+        }
+        for (int i = 0; i < size; ++i) {
+            if (hand[index(i)] != other.hand[other.index(i)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a 64-bit hash of the order of the cards in the hand.
+     * The hash is updated with every change of the hand, so it is available in constant time.
+     * Identical hands always have the same hash.
+     * @return the hash of the hand
+     */
+    long getHandHash() {
+        return hash;
+    }
+
+    /**
+     * Translates a position in the hand (0 is the top) to an index in the circular buffer.
+     * @param position the position in the hand
+     * @return the index of that position in the buffer
+     */
+    private int index(int position) {
+        int index = top + position;
+        return (index >= hand.length) ? index - hand.length : index;
     }
 
     /**
@@ -87,14 +256,17 @@ public class Player {
      * @return true if the player has no cards, false otherwise
      */
     public boolean hasNoCards() {
-        return hand.isEmpty();
+        return size == 0;
     }
 
     /**
      * Clears the player's hand.
      */
     public void clearHand() {
-        hand.clear();
+        top = 0;
+        size = 0;
+        hash = 0;
+        power = 1;
     }
 
     /**
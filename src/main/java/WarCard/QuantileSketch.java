@@ -0,0 +1,263 @@
+package WarCard;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The QuantileSketch class estimates the quantiles of a stream of values in a small, bounded memory. <br>
+ * It is a KLL sketch: the values are kept in levels, where every value of level h stands for 2<sup>h</sup>
+ * values of the stream. When a level is full it is sorted and compacted - every other value moves up
+ * to the next level, starting from a random one of the first two - and higher levels have larger
+ * capacities, shrinking by 2/3 per level downwards. With the default accuracy the sketch keeps
+ * a few hundred values whatever the length of the stream, and the rank of an estimated quantile is
+ * within about 1% of the requested one. <br>
+ * Two sketches are merged by combining their levels, so every thread can sketch its own values
+ * and the sketches are merged at the end.
+ */
+public final class QuantileSketch {
+
+    private static final int DEFAULT_K = 200;
+    private static final double SHRINK = 2.0 / 3;
+
+    private int k;                      // the capacity of the top level
+    private long[][] levels;            // the values of every level
+    private int[] sizes;                // the number of values in every level
+    private int[] capacities;           // the number of values every level holds before it is compacted
+    private int levelsCount;
+    private int totalSize;
+    private int totalCapacity;
+    private long count;                 // the number of values in the stream
+    private long min;
+    private long max;
+    private long randomState;           // picks the values that survive a compaction
+
+    /**
+     * Constructs an empty QuantileSketch with the default accuracy.
+     */
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Constructs an empty QuantileSketch.
+     * @param k the capacity of the top level; larger values are more accurate and take more memory
+     */
+    public QuantileSketch(int k) {
+        this.k = k;
+        levels = new long[0][];
+        sizes = new int[0];
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+        randomState = 0x9e3779b97f4a7c15L;
+        addLevel();
+    }
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value to add
+     */
+    public void add(long value) {
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (totalSize >= totalCapacity) {
+            compress();
+        }
+    }
+
+    /**
+     * Adds all the values of another sketch to this one.
+     * @param other the sketch to merge into this one
+     * @return this sketch, after the merge
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        while (levelsCount < other.levelsCount) {
+            addLevel();
+        }
+        for (int h = 0; h < other.levelsCount; ++h) {
+            for (int i = 0; i < other.sizes[h]; ++i) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        while (totalSize >= totalCapacity) {
+            compress();
+        }
+        return this;
+    }
+
+    /**
+     * Writes the whole state of the sketch, including its random generator, so that
+     * {@link #readFrom(ByteBuffer)} restores a sketch that goes on exactly like this one.
+     * @param buffer the buffer to write to
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(k).putInt(levelsCount);
+        for (int h = 0; h < levelsCount; ++h) {
+            buffer.putInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; ++i) {
+                buffer.putLong(levels[h][i]);
+            }
+        }
+        buffer.putLong(count).putLong(min).putLong(max).putLong(randomState);
+    }
+
+    /**
+     * Replaces the state of the sketch with one written by {@link #writeTo(ByteBuffer)}.
+     * @param buffer the buffer to read from
+     */
+    void readFrom(ByteBuffer buffer) {
+        k = buffer.getInt();
+        int levels = buffer.getInt();
+        this.levels = new long[0][];
+        sizes = new int[0];
+        levelsCount = 0;
+        totalSize = 0;
+        while (levelsCount < levels) {
+            addLevel();
+        }
+        for (int h = 0; h < levelsCount; ++h) {
+            int size = buffer.getInt();
+            for (int i = 0; i < size; ++i) {
+                append(h, buffer.getLong());
+            }
+        }
+        count = buffer.getLong();
+        min = buffer.getLong();
+        max = buffer.getLong();
+        randomState = buffer.getLong();
+    }
+
+    /**
+     * Returns the number of values added to the sketch.
+     * @return the count of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns an estimate of the value below which the given fraction of the values fall.
+     * @param fraction the fraction of the values, between 0 and 1
+     * @return the estimated quantile, or 0 if the sketch is empty
+     */
+    public long getQuantile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        if (fraction <= 0) {
+            return min;
+        }
+        if (fraction >= 1) {
+            return max;
+        }
+
+        // all the values, with the levels that give their weights, visited in increasing order
+        long[] values = new long[totalSize];
+        int[] valueLevels = new int[totalSize];
+        Integer[] order = new Integer[totalSize];
+        int n = 0;
+        for (int h = 0; h < levelsCount; ++h) {
+            for (int i = 0; i < sizes[h]; ++i) {
+                values[n] = levels[h][i];
+                valueLevels[n] = h;
+                order[n] = n;
+                n++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(values[a], values[b]));
+
+        double rank = fraction * count;
+        long seen = 0;
+        for (int index : order) {
+            seen += 1L << valueLevels[index];
+            if (seen >= rank) {
+                return values[index];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns a string representation of the sketch.
+     * @return the estimated median, 90th and 99th percentiles
+     */
+    @Override
+    public String toString() {
+        return "p50 " + getQuantile(0.5) + ", p90 " + getQuantile(0.9) + ", p99 " + getQuantile(0.99);
+    }
+
+    /**
+     * Appends a value to a level, growing the level if it is full.
+     */
+    private void append(int level, long value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], 2 * levels[level].length);
+        }
+        levels[level][sizes[level]++] = value;
+        totalSize++;
+    }
+
+    /**
+     * Compacts every level that reached its capacity, adding a level on top when needed.
+     */
+    private void compress() {
+        for (int h = 0; h < levelsCount; ++h) {
+            if (sizes[h] >= capacities[h]) {
+                if (h + 1 == levelsCount) {
+                    addLevel();
+                }
+                compact(h);
+            }
+        }
+    }
+
+    /**
+     * Moves every other value of a level, in sorted order, to the next level. When the level holds
+     * an odd number of values, its largest value stays.
+     */
+    private void compact(int level) {
+        long[] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        int even = size & ~1;
+        for (int i = nextRandomBit(); i < even; i += 2) {
+            append(level + 1, values[i]);
+        }
+        if (even < size) {
+            values[0] = values[even];
+        }
+        sizes[level] = size - even;
+        totalSize -= even;
+    }
+
+    /**
+     * Adds an empty level on top, and recomputes the capacities of all the levels.
+     */
+    private void addLevel() {
+        levelsCount++;
+        levels = Arrays.copyOf(levels, levelsCount);
+        sizes = Arrays.copyOf(sizes, levelsCount);
+        levels[levelsCount - 1] = new long[Math.max(2, k)];
+        capacities = new int[levelsCount];
+        totalCapacity = 0;
+        for (int h = 0; h < levelsCount; ++h) {
+            int depth = levelsCount - 1 - h;
+            capacities[h] = Math.max(2, (int) Math.ceil(k * Math.pow(SHRINK, depth)));
+            totalCapacity += capacities[h];
+        }
+    }
+
+    /**
+     * Returns a pseudo-random bit, from a xorshift generator.
+     */
+    private int nextRandomBit() {
+        randomState ^= randomState << 13;
+        randomState ^= randomState >>> 7;
+        randomState ^= randomState << 17;
+        return (int) (randomState >>> 63);
+    }
+}
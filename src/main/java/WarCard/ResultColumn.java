@@ -0,0 +1,18 @@
+package WarCard;
+
+/**
+ * The ResultColumn enum represents the fields of the result of a single game,
+ * as they are stored by {@link ResultStore} and by {@link ColumnarResultsWriter}.
+ */
+public enum ResultColumn {
+    SEED, WINNER, ROUNDS, WARS, LONGEST_WAR_CHAIN, FLAGS;
+
+    /**
+     * Returns the lowercase string representation of this column.
+     * @return the string representation of the column
+     */
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
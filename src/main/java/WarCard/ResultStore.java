@@ -0,0 +1,426 @@
+package WarCard;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * The ResultStore class is an append-only store of the results of single games, kept outside the Java heap. <br>
+ * Every game takes a fixed-width record of {@link #RECORD_SIZE} bytes, in big-endian order:
+ * <ul>
+ *     <li>the seed of the game's deal (a long)</li>
+ *     <li>the number of rounds, the number of wars and the longest chain of wars (ints)</li>
+ *     <li>the index of the winner, or -1 if there is none (a byte)</li>
+ *     <li>flags: {@link #CYCLE} and {@link #UNFINISHED} (a byte)</li>
+ *     <li>2 reserved bytes</li>
+ * </ul>
+ * The records are kept in segments of direct buffers, so the store holds no Java object per game, and the
+ * garbage collector never scans its contents. A store may be backed by a file, in which case the segments
+ * are mapped from the file: the file starts with the ASCII header {@code WARRES}, a format version byte,
+ * a padding byte and the number of records (a long), followed by the records. <br>
+ * Any number of threads may append records at the same time. Records are scanned in parallel, on the common
+ * fork-join pool, through a {@link Cursor} that reads the fields in place; a scan should start after the
+ * appends it should see have returned. Direct buffers count against {@code -XX:MaxDirectMemorySize},
+ * so a store of billions of records should be backed by a file.
+ */
+public class ResultStore implements AutoCloseable {
+
+    static final int RECORD_SIZE = 24;
+    static final int CYCLE = 1;         // the game was stopped because it repeats itself forever
+    static final int UNFINISHED = 2;    // the game was stopped after reaching the rounds limit
+    static final byte FORMAT_VERSION = 1;
+    static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    private static final byte[] MAGIC = "WARRES".getBytes(StandardCharsets.US_ASCII);
+    private static final int HEADER_SIZE = MAGIC.length + 2 + Long.BYTES;
+    private static final int RECORDS_PER_TASK = 1 << 16;    // records scanned by a single task without splitting
+
+    // the offsets of the fields in a record
+    private static final int SEED = 0;
+    private static final int ROUNDS = 8;
+    private static final int WARS = 12;
+    private static final int LONGEST_WAR_CHAIN = 16;
+    private static final int WINNER = 20;
+    private static final int FLAGS = 21;
+
+    private final int segmentRecords;
+    private final FileChannel channel;          // the backing file, or null for a store in memory
+    private volatile ByteBuffer[] segments;     // grows, under the lock of the store, as records are appended
+    private final AtomicLong size;              // the number of records appended, or being appended
+
+    /**
+     * Constructs an empty ResultStore in off-heap memory.
+     */
+    public ResultStore() {
+        this(DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Constructs an empty ResultStore in off-heap memory.
+     * @param segmentRecords the number of records in a segment, the unit in which memory is allocated
+     */
+    public ResultStore(int segmentRecords) {
+        this.segmentRecords = checkSegmentRecords(segmentRecords);
+        channel = null;
+        segments = new ByteBuffer[0];
+        size = new AtomicLong();
+    }
+
+    /**
+     * Opens a ResultStore backed by the given file, or creates the file if it does not exist.
+     * New records are appended after the records already in the file.
+     * @param path the file of the store
+     * @throws IOException if the file cannot be opened, or is not a results file
+     */
+    public ResultStore(Path path) throws IOException {
+        this(path, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Opens a ResultStore backed by the given file, or creates the file if it does not exist.
+     * The segments of a file do not depend on the segments it was written with.
+     * @param path the file of the store
+     * @param segmentRecords the number of records in a segment, the unit in which the file is mapped
+     * @throws IOException if the file cannot be opened, or is not a results file
+     */
+    ResultStore(Path path, int segmentRecords) throws IOException {
+        this.segmentRecords = checkSegmentRecords(segmentRecords);
+        segments = new ByteBuffer[0];
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() == 0) {
+            header.put(MAGIC).put(FORMAT_VERSION).put((byte) 0).putLong(0).flip();
+            channel.write(header, 0);
+            size = new AtomicLong();
+            return;
+        }
+
+        channel.read(header, 0);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(0, magic);
+        if (header.position() < HEADER_SIZE || !Arrays.equals(magic, MAGIC) || header.get(MAGIC.length) != FORMAT_VERSION) {
+            channel.close();
+            throw new IOException("not a results file of version " + FORMAT_VERSION + ": " + path);
+        }
+        size = new AtomicLong(header.getLong(MAGIC.length + 2));
+    }
+
+    private static int checkSegmentRecords(int segmentRecords) {
+        if (segmentRecords < 1 || (long) segmentRecords * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a segment must hold between 1 and "
+                    + Integer.MAX_VALUE / RECORD_SIZE + " records: " + segmentRecords);
+        }
+        return segmentRecords;
+    }
+
+    /**
+     * Appends the result of a game that has just been played.
+     * @param seed the seed of the game's deal
+     * @param warCard the game, after its last round
+     * @param finished false if the game was stopped before it ended
+     * @return the index of the record
+     */
+    public long append(long seed, WarCard warCard, boolean finished) {
+        int flags = (finished ? 0 : UNFINISHED) | (finished && warCard.isCycle() ? CYCLE : 0);
+        return append(seed, finished ? warCard.getWinnerIndex() : -1, warCard.getRoundsCount(),
+                warCard.getWarsCount(), warCard.getLongestWarChain(), flags);
+    }
+
+    /**
+     * Appends the result of a game.
+     * @param seed the seed of the game's deal
+     * @param winner the index of the winner, or -1 if there is none
+     * @param rounds the number of rounds of the game
+     * @param wars the number of wars of the game
+     * @param longestWarChain the most wars that broke out one after the other in a single battle
+     * @param flags {@link #CYCLE} and {@link #UNFINISHED}
+     * @return the index of the record
+     */
+    long append(long seed, int winner, int rounds, int wars, int longestWarChain, int flags) {
+        long index = size.getAndIncrement();
+        ByteBuffer segment = segment((int) (index / segmentRecords));
+        int offset = (int) (index % segmentRecords) * RECORD_SIZE;
+        segment.putLong(offset + SEED, seed);
+        segment.putInt(offset + ROUNDS, rounds);
+        segment.putInt(offset + WARS, wars);
+        segment.putInt(offset + LONGEST_WAR_CHAIN, longestWarChain);
+        segment.put(offset + WINNER, (byte) winner);
+        segment.put(offset + FLAGS, (byte) flags);
+        return index;
+    }
+
+    /**
+     * Returns the number of records in the store.
+     * @return the number of records
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Returns a cursor positioned on a single record.
+     * @param index the index of the record
+     * @return a new cursor on the record
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public Cursor get(long index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("record " + index + " of " + size());
+        }
+        Cursor cursor = new Cursor();
+        cursor.moveTo(index);
+        return cursor;
+    }
+
+    /**
+     * Counts the records that pass a filter, scanning the store in parallel.
+     * @param filter the filter of the records
+     * @return the number of records that pass the filter
+     */
+    public long count(Predicate<Cursor> filter) {
+        return scan(filter, () -> new long[1], (count, cursor) -> count[0]++, (a, b) -> {
+            a[0] += b[0];
+            return a;
+        })[0];
+    }
+
+    /**
+     * Reduces the records that pass a filter, scanning the store in parallel. <br>
+     * Every task of the scan accumulates its own container, and the containers are combined in the order of
+     * the records, so the result does not depend on the scheduling of the tasks. The cursor is valid only
+     * during the call of the filter or the accumulator.
+     * @param filter the filter of the records
+     * @param supplier creates an empty container
+     * @param accumulator adds a record to a container
+     * @param combiner combines two containers, of earlier and later records, into one
+     * @param <A> the type of the container
+     * @return the container of all the records that pass the filter
+     */
+    public <A> A scan(Predicate<Cursor> filter, Supplier<A> supplier, BiConsumer<A, Cursor> accumulator,
+                      BinaryOperator<A> combiner) {
+        return ForkJoinPool.commonPool().invoke(new ScanTask<>(0, size(), filter, supplier, accumulator, combiner));
+    }
+
+    /**
+     * Writes the number of records to the header of the backing file, and forces the records to the disk.
+     * Does nothing for a store in memory.
+     * @throws IOException if the file cannot be written
+     */
+    public void flush() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        for (ByteBuffer segment : segments) {
+            if (segment != null) {
+                ((MappedByteBuffer) segment).force();
+            }
+        }
+        ByteBuffer count = ByteBuffer.allocate(Long.BYTES).putLong(0, size()).position(0);
+        channel.write(count, MAGIC.length + 2);
+        channel.force(false);
+    }
+
+    /**
+     * Flushes and closes the backing file. The memory of the segments is released once they are garbage collected.
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            flush();
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns a segment, allocating (or mapping) the segments up to it if they do not exist yet.
+     */
+    private ByteBuffer segment(int index) {
+        ByteBuffer[] current = segments;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = segments;
+            if (index >= current.length) {
+                current = Arrays.copyOf(current, Math.max(index + 1, 2 * current.length));
+            }
+            for (int i = 0; i <= index; ++i) {
+                if (current[i] == null) {
+                    current[i] = allocateSegment(i);
+                }
+            }
+            segments = current;
+            return current[index];
+        }
+    }
+
+    private ByteBuffer allocateSegment(int index) {
+        int bytes = segmentRecords * RECORD_SIZE;
+        if (channel == null) {
+            return ByteBuffer.allocateDirect(bytes);
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + (long) index * bytes, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The Cursor class reads the fields of a record in place, without copying the record to the heap.
+     */
+    public final class Cursor {
+        private ByteBuffer segment;
+        private int offset;
+        private long index;
+
+        private Cursor() {
+        }
+
+        private void moveTo(long index) {
+            this.index = index;
+            segment = segment((int) (index / segmentRecords));
+            offset = (int) (index % segmentRecords) * RECORD_SIZE;
+        }
+
+        /**
+         * Returns the index of the record in the store.
+         * @return the index of the record
+         */
+        public long getIndex() {
+            return index;
+        }
+
+        /**
+         * Returns the seed of the game's deal.
+         * @return the seed of the game
+         */
+        public long getSeed() {
+            return segment.getLong(offset + SEED);
+        }
+
+        /**
+         * Returns the index of the winner of the game.
+         * @return the index of the winner, or -1 if there is none
+         */
+        public int getWinner() {
+            return segment.get(offset + WINNER);
+        }
+
+        /**
+         * Returns the number of rounds of the game.
+         * @return the number of rounds
+         */
+        public int getRounds() {
+            return segment.getInt(offset + ROUNDS);
+        }
+
+        /**
+         * Returns the number of wars of the game.
+         * @return the number of wars
+         */
+        public int getWars() {
+            return segment.getInt(offset + WARS);
+        }
+
+        /**
+         * Returns the most wars that broke out one after the other in a single battle of the game.
+         * @return the length of the longest chain of wars
+         */
+        public int getLongestWarChain() {
+            return segment.getInt(offset + LONGEST_WAR_CHAIN);
+        }
+
+        /**
+         * Checks if the game was stopped because it repeats itself forever.
+         * @return true if the game entered a cycle, false otherwise
+         */
+        public boolean isCycle() {
+            return (segment.get(offset + FLAGS) & CYCLE) != 0;
+        }
+
+        /**
+         * Checks if the game was stopped after reaching the rounds limit.
+         * @return true if the game is unfinished, false otherwise
+         */
+        public boolean isUnfinished() {
+            return (segment.get(offset + FLAGS) & UNFINISHED) != 0;
+        }
+    }
+
+    /**
+     * A fork-join task that scans a range of records, splitting it in half while it is too large.
+     */
+    private final class ScanTask<A> extends RecursiveTask<A> {
+        private final long from;    // index of the first record in the range
+        private final long to;      // index after the last record in the range
+        private final Predicate<Cursor> filter;
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, Cursor> accumulator;
+        private final BinaryOperator<A> combiner;
+
+        ScanTask(long from, long to, Predicate<Cursor> filter, Supplier<A> supplier,
+                 BiConsumer<A, Cursor> accumulator, BinaryOperator<A> combiner) {
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= RECORDS_PER_TASK) {
+                A container = supplier.get();
+                Cursor cursor = new Cursor();
+                for (long index = from; index < to; ++index) {
+                    cursor.moveTo(index);
+                    if (filter.test(cursor)) {
+                        accumulator.accept(container, cursor);
+                    }
+                }
+                return container;
+            }
+
+            long middle = from + (to - from) / 2;
+            ScanTask<A> left = new ScanTask<>(from, middle, filter, supplier, accumulator, combiner);
+            ScanTask<A> right = new ScanTask<>(middle, to, filter, supplier, accumulator, combiner);
+            left.fork();
+            A later = right.compute();
+            return combiner.apply(left.join(), later);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        try (ResultStore store = new ResultStore(Path.of(args.length > 0 ? args[0] : "results.wrs"))) {
+            long start = System.nanoTime();
+            long cycles = store.count(Cursor::isCycle);
+            long ties = store.count(cursor -> cursor.getWinner() < 0 && !cursor.isCycle() && !cursor.isUnfinished());
+            long longGames = store.count(cursor -> cursor.getRounds() >= 2000);
+            int longestChain = store.scan(cursor -> true, () -> new int[1],
+                    (max, cursor) -> max[0] = Math.max(max[0], cursor.getLongestWarChain()),
+                    (a, b) -> a[0] >= b[0] ? a : b)[0];
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println("records: " + store.size());
+            System.out.println("cycles: " + cycles + ", ties: " + ties + ", games of 2000 rounds or more: " + longGames);
+            System.out.println("longest chain of wars: " + longestChain);
+            System.out.printf("4 scans in %.2f seconds%n", seconds);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package WarCard;
+
+/**
+ * The RoundEvent class describes something that happened in a game of War. <br>
+ * {@link WarCard} publishes the events of every round to its subscribers: first the event of the
+ * round itself (a battle, the start of a war, or a face-down war card), then the pickup of the table
+ * if the round was decided, and finally the end of the game if it was the last round.
+ */
+public class RoundEvent {
+
+    /**
+     * The kinds of round events.
+     */
+    public enum Type {
+        /** The players drew a card and the round was decided (or a player ran out of cards). */
+        BATTLE,
+        /** Two or more players drew cards of the highest rank, and a war broke out between them. */
+        WAR_START,
+        /** The players of a war drew one of its face-down cards. */
+        FACE_DOWN_CARD,
+        /** The winner of the round took the cards on the table. */
+        PICKUP,
+        /** The game ended. */
+        GAME_END
+    }
+
+    private final Type type;
+    private final int round;
+    private final Card[] cards;     // the card drawn by every player, indexed like the players of the game
+    private final Player winner;
+    private final int warCardsCount;
+    private final int cardsCount;
+
+    /**
+     * Constructs a RoundEvent.
+     * @param type the kind of the event
+     * @param round the number of the round, starting from 1
+     * @param cards the cards drawn by the players in the round, indexed like the players (not copied)
+     * @param winner the winner of the round or the game, or null if there is none
+     * @param warCardsCount the count of cards drawn in the current war, as in {@link WarCard#getWarCardsCount()}
+     * @param cardsCount the number of cards picked up from the table, for a pickup event
+     */
+    RoundEvent(Type type, int round, Card[] cards, Player winner, int warCardsCount, int cardsCount) {
+        this.type = type;
+        this.round = round;
+        this.cards = cards;
+        this.winner = winner;
+        this.warCardsCount = warCardsCount;
+        this.cardsCount = cardsCount;
+    }
+
+    /**
+     * Returns the kind of the event.
+     * @return the event's type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the number of the round in which the event happened, starting from 1.
+     * @return the round number
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Returns the card drawn by the computer in the round.
+     * @return the computer's card, or null if the computer ran out of cards
+     */
+    public Card getCardCom() {
+        return cards[0];
+    }
+
+    /**
+     * Returns the card drawn by the user in the round.
+     * @return the user's card, or null if the user ran out of cards
+     */
+    public Card getCardUser() {
+        return cards[1];
+    }
+
+    /**
+     * Returns the card drawn by a player in the round.
+     * @param player the index of the player, as in {@link WarCard#getPlayer(int)}
+     * @return the player's card, or null if the player did not draw a card in the round
+     */
+    public Card getCard(int player) {
+        return cards[player];
+    }
+
+    /**
+     * Returns the winner of the round, the player who picked up the table, or the winner of the game.
+     * @return the winning player, or null if there is none
+     */
+    public Player getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the count of cards drawn in the current war after the round.
+     * @return the war cards count, as in {@link WarCard#getWarCardsCount()}
+     */
+    public int getWarCardsCount() {
+        return warCardsCount;
+    }
+
+    /**
+     * Returns the number of cards picked up from the table.
+     * @return the number of cards, for a pickup event, or 0 otherwise
+     */
+    public int getCardsCount() {
+        return cardsCount;
+    }
+
+    /**
+     * Checks if the cards of the round were drawn face down.
+     * @return true for a face-down card event, false otherwise
+     */
+    public boolean isFaceDown() {
+        return type == Type.FACE_DOWN_CARD;
+    }
+
+    /**
+     * Returns a string representation of the event.
+     * @return the type of the event and its round
+     */
+    @Override
+    public String toString() {
+        return type + " (round " + round + ")";
+    }
+}
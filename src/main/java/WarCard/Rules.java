@@ -0,0 +1,270 @@
+package WarCard;
+
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * The Rules class describes a variant of the rules of War: the number of face-down cards each player
+ * of a war draws, the order in which the winner of a battle picks up the table, and whether aces rank
+ * above kings or below twos. <br>
+ * Rules are immutable, and are resolved once, when a game is constructed with them: the rank of every
+ * card code is looked up in a table of the variant, the face-down cards are counted against a field of
+ * the game, and the pickup order is a {@link TableOrder} of the game, whose kind is fixed when it is made.
+ * No pickup is a virtual call, whichever variants a JVM plays, and picking up the table in the order
+ * it was drawn, as the standard rules do, returns from the order at once. <br>
+ * A variant is written as {@code <face-down cards>[,sorted|,shuffled][,ace-low]}, for example
+ * {@code 1,shuffled,ace-low}; the standard rules are {@code 3}.
+ */
+public final class Rules {
+
+    /** The fewest face-down cards a war can be played with. */
+    public static final int MIN_FACE_DOWN_CARDS = 1;
+    /** The most face-down cards a war can be played with. */
+    public static final int MAX_FACE_DOWN_CARDS = 3;
+
+    /** The standard rules: three face-down cards, the table is picked up in the order it was drawn, and aces are high. */
+    public static final Rules STANDARD = new Rules(3, Pickup.IN_ORDER, false);
+
+    /**
+     * The order in which the winner of a battle adds the cards of the table to the bottom of their hand.
+     */
+    public enum Pickup {
+        /** In the order the cards were drawn to the table. */
+        IN_ORDER,
+        /** From the lowest rank to the highest, keeping the order of the cards of the same rank. */
+        SORTED,
+        /** In a random order, drawn from the seed of the game. */
+        SHUFFLED
+    }
+
+    private final int faceDownCards;
+    private final Pickup pickup;
+    private final boolean aceLow;
+    private final byte[] rankValues;    // the value of the rank of every card code under these rules
+
+    /**
+     * Constructs a variant of the rules.
+     * @param faceDownCards the number of face-down cards each player of a war draws,
+     *                      between {@link #MIN_FACE_DOWN_CARDS} and {@link #MAX_FACE_DOWN_CARDS}
+     * @param pickup the order in which the table is picked up
+     * @param aceLow true if aces rank below twos, false if they rank above kings
+     * @throws IllegalArgumentException if the number of face-down cards is out of range
+     */
+    public Rules(int faceDownCards, Pickup pickup, boolean aceLow) {
+        if (faceDownCards < MIN_FACE_DOWN_CARDS || faceDownCards > MAX_FACE_DOWN_CARDS) {
+            throw new IllegalArgumentException("the number of face-down cards must be between "
+                    + MIN_FACE_DOWN_CARDS + " and " + MAX_FACE_DOWN_CARDS + ": " + faceDownCards);
+        }
+        this.faceDownCards = faceDownCards;
+        this.pickup = Objects.requireNonNull(pickup);
+        this.aceLow = aceLow;
+
+        rankValues = new byte[Card.CODES_COUNT];
+        for (int code = 0; code < Card.CODES_COUNT; ++code) {
+            int value = Card.rankValue(code);
+            rankValues[code] = (byte) ((aceLow && value == Rank.ACE.getValue()) ? 1 : value);
+        }
+    }
+
+    /**
+     * Parses a variant of the rules, written as {@code <face-down cards>[,sorted|,shuffled][,ace-low]}.
+     * @param spec the written variant, as returned by {@link #toString()}
+     * @return the rules of the variant
+     * @throws IllegalArgumentException if the variant is not written correctly
+     */
+    public static Rules parse(String spec) {
+        String[] parts = spec.split(",");
+        int faceDownCards;
+        try {
+            faceDownCards = Integer.parseInt(parts[0].trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("the rules must start with the number of face-down cards: " + spec, e);
+        }
+        Pickup pickup = Pickup.IN_ORDER;
+        boolean aceLow = false;
+        for (int i = 1; i < parts.length; ++i) {
+            switch (parts[i].trim()) {
+                case "sorted" -> pickup = Pickup.SORTED;
+                case "shuffled" -> pickup = Pickup.SHUFFLED;
+                case "ace-low" -> aceLow = true;
+                default -> throw new IllegalArgumentException("unknown rule '" + parts[i] + "' in " + spec);
+            }
+        }
+        return new Rules(faceDownCards, pickup, aceLow);
+    }
+
+    /**
+     * Returns the number of face-down cards each player of a war draws.
+     * @return the number of face-down cards
+     */
+    public int getFaceDownCards() {
+        return faceDownCards;
+    }
+
+    /**
+     * Returns the order in which the winner of a battle picks up the table.
+     * @return the pickup order
+     */
+    public Pickup getPickup() {
+        return pickup;
+    }
+
+    /**
+     * Checks if aces rank below twos.
+     * @return true if aces are low, false if they rank above kings
+     */
+    public boolean isAceLow() {
+        return aceLow;
+    }
+
+    /**
+     * Checks if the course of a game is determined by its state alone. <br>
+     * A game whose table is picked up in a random order may leave the same state differently every time,
+     * so it cannot be stopped when it repeats a state, nor finished from a transposition cache.
+     * @return true unless the table is picked up in a random order
+     */
+    public boolean isDeterministic() {
+        return pickup != Pickup.SHUFFLED;
+    }
+
+    /**
+     * Returns the value of the rank of every card code under these rules. Shared - must not be modified.
+     * @return the rank values, indexed by card code
+     */
+    byte[] rankValues() {
+        return rankValues;
+    }
+
+    /**
+     * Returns a new pickup order of these rules, for a single game to use.
+     * @return the order in which the game picks up the table
+     */
+    TableOrder newTableOrder() {
+        return switch (pickup) {
+            case IN_ORDER -> new TableOrder(TableOrder.IN_ORDER, null);
+            case SORTED -> new TableOrder(TableOrder.SORTED, rankValues);
+            case SHUFFLED -> new TableOrder(TableOrder.SHUFFLED, null);
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Rules)) {
+            return false;
+        }
+        Rules other = (Rules) o;
+        return faceDownCards == other.faceDownCards && pickup == other.pickup && aceLow == other.aceLow;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(faceDownCards, pickup, aceLow);
+    }
+
+    /**
+     * Returns the written variant, which {@link #parse(String)} reads back.
+     * @return the variant, such as {@code 1,shuffled,ace-low}
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder().append(faceDownCards);
+        if (pickup != Pickup.IN_ORDER) {
+            builder.append(',').append(pickup.name().toLowerCase());
+        }
+        if (aceLow) {
+            builder.append(",ace-low");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Arranges the cards of the table in the order the winner of a battle picks them up. <br>
+     * Every game has its own instances. The class is final, and holds the code of every kind of order in
+     * its one method, which tests the kind fixed when the order was made: a pickup is a call bound at compile
+     * time, which the JIT inlines into the game's pickup with the code of every kind it has seen, however
+     * many kinds the JVM plays.
+     */
+    static final class TableOrder {
+        static final int IN_ORDER = 0;      // in the order the cards were drawn: nothing to arrange
+        static final int SORTED = 1;        // from the lowest key to the highest
+        static final int ALTERNATING = 2;   // sorted, then taken from both ends in turn
+        static final int SHUFFLED = 3;      // in a random order, reseeded by every seeded game
+
+        private final int kind;
+        private final byte[] keys;          // the key of every card code, for the sorting kinds
+        private byte[] sorted;              // the sorted table of an alternating order, grown for larger shoes
+        private SplittableRandom random;    // the generator of a shuffled order
+
+        /**
+         * Constructs an order of the given kind.
+         * @param kind one of the kinds of this class
+         * @param keys the key of every card code to sort by - its rank value under the rules or its place
+         *             in a pickup policy - or null if the kind does not sort
+         */
+        TableOrder(int kind, byte[] keys) {
+            this.kind = kind;
+            this.keys = keys;
+            if (kind == ALTERNATING) {
+                sorted = new byte[2 * Card.CODES_COUNT];
+            } else if (kind == SHUFFLED) {
+                random = new SplittableRandom();
+            }
+        }
+
+        /**
+         * Reorders the cards of the table in place.
+         * @param table the codes of the cards on the table, in the order they were drawn
+         * @param size the number of cards on the table
+         */
+        void arrange(byte[] table, int size) {
+            if (kind == IN_ORDER) {
+                return;
+            }
+            if (kind == SHUFFLED) {
+                for (int i = size - 1; i > 0; --i) {
+                    int j = random.nextInt(i + 1);
+                    byte code = table[i];
+                    table[i] = table[j];
+                    table[j] = code;
+                }
+                return;
+            }
+
+            for (int i = 1; i < size; ++i) {   // insertion sort - the table rarely holds more than a few cards
+                byte code = table[i];
+                int key = keys[code];
+                int j = i - 1;
+                while (j >= 0 && keys[table[j]] > key) {
+                    table[j + 1] = table[j];
+                    j--;
+                }
+                table[j + 1] = code;
+            }
+            if (kind == ALTERNATING) {      // take the sorted cards from both ends in turn, the last first
+                if (sorted.length < size) {
+                    sorted = new byte[size];
+                }
+                System.arraycopy(table, 0, sorted, 0, size);
+                int low = 0;
+                int high = size - 1;
+                for (int i = 0; i < size; ++i) {
+                    table[i] = ((i & 1) == 0) ? sorted[high--] : sorted[low++];
+                }
+            }
+        }
+
+        /**
+         * Prepares the order for a game dealt from the given seed, so the game replays the same way.
+         * @param seed the seed of the game's deal
+         */
+        void startGame(long seed) {
+            if (kind == SHUFFLED) {
+                // split, so the pickups do not repeat the numbers that shuffled the deck
+                random = new SplittableRandom(seed).split();
+            }
+        }
+    }
+}
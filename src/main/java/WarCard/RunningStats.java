@@ -0,0 +1,127 @@
+package WarCard;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The RunningStats class keeps the count, mean, variance and extremes of a stream of values
+ * in constant memory. <br>
+ * The mean and variance are updated with Welford's algorithm, which stays accurate over long streams,
+ * and two instances are merged with Chan's formula, so every thread can collect its own statistics
+ * and combine them at the end.
+ */
+public final class RunningStats {
+
+    private long count;
+    private double mean;
+    private double m2;      // sum of the squared differences from the mean
+    private double min;
+    private double max;
+
+    /**
+     * Constructs an empty RunningStats.
+     */
+    public RunningStats() {
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Adds a value to the statistics.
+     * @param value the value to add
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all the values of another instance to this one.
+     * @param other the statistics to merge into this one
+     * @return this instance, after the merge
+     */
+    public RunningStats merge(RunningStats other) {
+        if (other.count == 0) {
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * Writes the whole state of the statistics, so that {@link #readFrom(ByteBuffer)} restores it exactly.
+     * @param buffer the buffer to write to
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.putLong(count).putDouble(mean).putDouble(m2).putDouble(min).putDouble(max);
+    }
+
+    /**
+     * Replaces the state of the statistics with one written by {@link #writeTo(ByteBuffer)}.
+     * @param buffer the buffer to read from
+     */
+    void readFrom(ByteBuffer buffer) {
+        count = buffer.getLong();
+        mean = buffer.getDouble();
+        m2 = buffer.getDouble();
+        min = buffer.getDouble();
+        max = buffer.getDouble();
+    }
+
+    /**
+     * Returns the number of values added.
+     * @return the count of values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values.
+     * @return the mean, or 0 if no value was added
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * Returns the sample variance of the values.
+     * @return the variance, or 0 if fewer than two values were added
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : m2 / (count - 1);
+    }
+
+    /**
+     * Returns the sample standard deviation of the values.
+     * @return the standard deviation, or 0 if fewer than two values were added
+     */
+    public double getStdDev() {
+        return Math.sqrt(getVariance());
+    }
+
+    /**
+     * Returns the smallest value added.
+     * @return the minimal value, or 0 if no value was added
+     */
+    public double getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest value added.
+     * @return the maximal value, or 0 if no value was added
+     */
+    public double getMax() {
+        return count == 0 ? 0 : max;
+    }
+}
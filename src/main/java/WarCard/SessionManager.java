@@ -0,0 +1,136 @@
+package WarCard;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SessionManager class keeps many independent games, keyed by a session id. <br>
+ * Sessions are created, played and read concurrently by any number of threads; a single session
+ * is only ever played by one thread at a time (see {@link GameSession}). <br>
+ * The number of sessions is bounded, and sessions that were not accessed for a while can be evicted,
+ * so the memory held by the manager stays bounded no matter how many clients come and go.
+ */
+public class SessionManager {
+
+    private final ConcurrentHashMap<Long, GameSession> sessions;
+    private final AtomicLong nextId;
+    private final AtomicInteger count;  // the number of live sessions, including those being created
+    private final int maxSessions;
+
+    /**
+     * Constructs a SessionManager that holds up to the given number of sessions.
+     * @param maxSessions the maximal number of live sessions
+     */
+    public SessionManager(int maxSessions) {
+        this.sessions = new ConcurrentHashMap<>();
+        this.nextId = new AtomicLong(1);
+        this.count = new AtomicInteger();
+        this.maxSessions = maxSessions;
+    }
+
+    /**
+     * Creates a new session with a game of the given number of players and decks.
+     * @param playersCount the number of players in the game
+     * @param decksCount the number of standard decks in the shoe
+     * @return the id of the new session
+     * @throws IllegalStateException if the manager already holds the maximal number of sessions
+     * @throws IllegalArgumentException if the number of players or decks is out of range
+     */
+    public long create(int playersCount, int decksCount) {
+        if (count.incrementAndGet() > maxSessions) {
+            count.decrementAndGet();
+            throw new IllegalStateException("too many sessions: " + maxSessions);
+        }
+        try {
+            long id = nextId.getAndIncrement();
+            sessions.put(id, new GameSession(id, playersCount, decksCount));
+            return id;
+        } catch (RuntimeException e) {
+            count.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Deals a new game in a session.
+     * @param id the id of the session
+     * @param seed the seed of the deal, or null for a random deal
+     * @return the state of the session after the deal, as a JSON object
+     * @throws NoSuchElementException if there is no session with the given id
+     */
+    public String startGame(long id, Long seed) {
+        return session(id).startGame(seed);
+    }
+
+    /**
+     * Plays a single round in a session.
+     * @param id the id of the session
+     * @return the state of the session after the round, as a JSON object
+     * @throws NoSuchElementException if there is no session with the given id
+     */
+    public String playRound(long id) {
+        return session(id).playRound();
+    }
+
+    /**
+     * Returns the state of a session.
+     * @param id the id of the session
+     * @return the state of the session, as a JSON object
+     * @throws NoSuchElementException if there is no session with the given id
+     */
+    public String getState(long id) {
+        return session(id).getState();
+    }
+
+    /**
+     * Removes a session.
+     * @param id the id of the session
+     * @return true if the session was removed, false if there was no such session
+     */
+    public boolean remove(long id) {
+        if (sessions.remove(id) == null) {
+            return false;
+        }
+        count.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes all the sessions that were not accessed for the given time.
+     * @param idleNanos the time, in nanoseconds, after which an idle session is removed
+     * @return the number of sessions removed
+     */
+    public int evictIdle(long idleNanos) {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (GameSession session : sessions.values()) {
+            if (now - session.getLastAccessNanos() > idleNanos && sessions.remove(session.getId(), session)) {
+                count.decrementAndGet();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Returns the number of live sessions.
+     * @return the number of sessions
+     */
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the session with the given id.
+     * @throws NoSuchElementException if there is no such session
+     */
+    private GameSession session(long id) {
+        GameSession session = sessions.get(id);
+        if (session == null) {
+            throw new NoSuchElementException("no session " + id);
+        }
+        return session;
+    }
+}
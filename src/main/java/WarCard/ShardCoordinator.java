@@ -0,0 +1,386 @@
+package WarCard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ShardCoordinator class plays a run of games in several worker JVMs. <br>
+ * The games of the run are split into shards of consecutive games, which are handed to the {@link ShardWorker}s
+ * that connect to the coordinator, one shard at a time. The coordinator starts the given number of workers
+ * on its own host, and more workers may connect from other hosts. The results of the shards are merged
+ * as they arrive, in the order of the shards, so the result of a run depends only on its master seed
+ * and its shard size, and not on the number of workers or on the order in which they finish. <br>
+ * A shard whose worker fails or disconnects before it returns the result is handed to another worker,
+ * up to {@link #MAX_ATTEMPTS} times, and a local worker that fails is replaced by a new one. A worker that
+ * hangs counts as failed once it has not returned the result of its shard in time: the time a shard may
+ * take grows with its games, allowing every game {@link #GAME_TIMEOUT_MILLIS}, many times what a game takes
+ * on a single core, on top of {@link #MIN_SHARD_TIMEOUT_MILLIS}. <br>
+ * The workers play the games by the standard {@link Rules}.
+ */
+public class ShardCoordinator {
+
+    static final int MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_SHARD_GAMES = 1 << 18;
+    private static final long POLL_MILLIS = 100;
+    static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;    // the time a connected worker may take to identify itself
+    static final long MIN_SHARD_TIMEOUT_MILLIS = 30_000;    // the time a worker may take to return any result
+    static final double GAME_TIMEOUT_MILLIS = 1.0;          // the time added for every game of a shard
+
+    private final InetSocketAddress bindAddress;
+    private final int localWorkers;
+    private final long shardGames;
+    private final int playersCount;
+    private final int decksCount;
+    private final int maxRounds;
+
+    /**
+     * Constructs a ShardCoordinator of two-player games with a single deck, that listens on an ephemeral
+     * port of the loopback address.
+     * @param localWorkers the number of worker JVMs to start on this host
+     * @param shardGames the number of games in a shard
+     */
+    public ShardCoordinator(int localWorkers, long shardGames) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), localWorkers, shardGames,
+                WarCard.MIN_PLAYERS, 1, Simulator.DEFAULT_MAX_ROUNDS);
+    }
+
+    /**
+     * Constructs a ShardCoordinator.
+     * @param bindAddress the address the workers connect to, with port 0 for an ephemeral port
+     * @param localWorkers the number of worker JVMs to start on this host
+     * @param shardGames the number of games in a shard
+     * @param playersCount the number of players in every game
+     * @param decksCount the number of standard decks in the shoe of every game
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     */
+    public ShardCoordinator(InetSocketAddress bindAddress, int localWorkers, long shardGames,
+                            int playersCount, int decksCount, int maxRounds) {
+        if (shardGames < 1) {
+            throw new IllegalArgumentException("a shard must hold at least one game: " + shardGames);
+        }
+        this.bindAddress = bindAddress;
+        this.localWorkers = localWorkers;
+        this.shardGames = shardGames;
+        this.playersCount = playersCount;
+        this.decksCount = decksCount;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Plays the given number of games in the workers and aggregates their results.
+     * @param games the number of games to play
+     * @param masterSeed the seed from which the seeds of all the games are derived
+     * @return the aggregated results of all the games
+     * @throws IOException if the coordinator cannot listen on its address, or cannot start the local workers
+     * @throws IllegalStateException if a shard failed {@link #MAX_ATTEMPTS} times
+     */
+    public SimulationResult run(long games, long masterSeed) throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(bindAddress);
+            return new Run(games, masterSeed, server).execute();
+        }
+    }
+
+    /**
+     * A range of consecutive games, played by a single worker.
+     */
+    private static final class Shard {
+        final int index;
+        final long from;    // index of the first game in the shard
+        final long to;      // index after the last game in the shard
+        int attempts;       // the number of workers that failed to play the shard
+
+        Shard(int index, long from, long to) {
+            this.index = index;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * The state of a single run: the shards still to be played, the results of the played shards,
+     * and the local workers.
+     */
+    private final class Run {
+        private final long masterSeed;
+        private final ServerSocket server;
+        private final BlockingQueue<Shard> pending;
+        private final SimulationResult[] shardResults;  // results that arrived before the results of the earlier shards
+        private final SimulationResult result;
+        private final List<Process> processes;
+        private int merged;                             // the number of shards merged into the result
+        private int restarts;                           // local workers started to replace failed ones
+        private volatile boolean done;
+        private RuntimeException failure;
+
+        Run(long games, long masterSeed, ServerSocket server) {
+            this.masterSeed = masterSeed;
+            this.server = server;
+            int shardsCount = (int) ((games + shardGames - 1) / shardGames);
+            pending = new LinkedBlockingQueue<>();
+            for (int i = 0; i < shardsCount; ++i) {
+                pending.add(new Shard(i, i * shardGames, Math.min(games, (i + 1) * shardGames)));
+            }
+            shardResults = new SimulationResult[shardsCount];
+            result = new SimulationResult();
+            processes = new ArrayList<>();
+        }
+
+        /**
+         * Starts the local workers, serves all the workers that connect, and waits for the result of the last shard.
+         */
+        SimulationResult execute() throws IOException {
+            Thread acceptor = new Thread(this::acceptLoop, "shard-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            try {
+                for (int i = 0; i < localWorkers; ++i) {
+                    startWorker();
+                }
+                synchronized (this) {
+                    while (merged < shardResults.length && failure == null) {
+                        wait();
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+                return result;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while waiting for the shards", e);
+            } finally {
+                done = true;
+                stopWorkers();
+            }
+        }
+
+        private void acceptLoop() {
+            while (!server.isClosed()) {
+                try {
+                    Socket socket = server.accept();
+                    Thread connection = new Thread(() -> serve(socket), "shard-connection");
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException e) {
+                    return; // the server was closed at the end of the run
+                }
+            }
+        }
+
+        /**
+         * Hands shards to a connected worker until the run is done.
+         */
+        private void serve(Socket socket) {
+            try (socket) {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                byte[] magic = new byte[ShardWorker.MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, ShardWorker.MAGIC) || in.readByte() != ShardWorker.PROTOCOL_VERSION) {
+                    return;
+                }
+
+                while (true) {
+                    Shard shard = nextShard();
+                    if (shard == null) {
+                        out.writeByte(ShardWorker.STOP);
+                        out.flush();
+                        return;
+                    }
+                    SimulationResult shardResult;
+                    try {
+                        shardResult = play(shard, socket, in, out);
+                    } catch (IOException | RuntimeException e) {
+                        retry(shard, e);
+                        return;
+                    }
+                    complete(shard, shardResult);
+                }
+            } catch (IOException e) {
+                // the worker disconnected between shards, so there is nothing to retry
+            }
+        }
+
+        /**
+         * Sends a shard to a worker and reads back its result.
+         * @throws SocketTimeoutException if the worker did not return the result in the time the shard may take
+         */
+        private SimulationResult play(Shard shard, Socket socket, DataInputStream in, DataOutputStream out)
+                throws IOException {
+            out.writeByte(ShardWorker.SHARD);
+            out.writeLong(masterSeed);
+            out.writeLong(shard.from);
+            out.writeLong(shard.to);
+            out.writeInt(playersCount);
+            out.writeInt(decksCount);
+            out.writeInt(maxRounds);
+            out.flush();
+
+            socket.setSoTimeout(shardTimeoutMillis(shard));
+            int length = in.readInt();
+            if (length < 0 || length > ShardWorker.MAX_RESULT_SIZE) {
+                throw new IOException("invalid result length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return SimulationResult.readFrom(ByteBuffer.wrap(bytes));
+        }
+
+        /**
+         * Returns the time a worker may take to return the result of a shard.
+         */
+        private int shardTimeoutMillis(Shard shard) {
+            double millis = MIN_SHARD_TIMEOUT_MILLIS + (shard.to - shard.from) * GAME_TIMEOUT_MILLIS;
+            return (int) Math.min(Integer.MAX_VALUE, millis);
+        }
+
+        /**
+         * Waits for a shard to play.
+         * @return the next shard, or null once the run is done
+         */
+        private Shard nextShard() {
+            try {
+                while (!done) {
+                    Shard shard = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (shard != null) {
+                        return shard;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }
+
+        /**
+         * Merges the result of a shard, followed by the results of the shards after it that already arrived.
+         */
+        private synchronized void complete(Shard shard, SimulationResult shardResult) {
+            shardResults[shard.index] = shardResult;
+            while (merged < shardResults.length && shardResults[merged] != null) {
+                result.merge(shardResults[merged]);
+                shardResults[merged++] = null;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Hands a shard whose worker failed to another worker, or fails the run if the shard failed too many times.
+         */
+        private synchronized void retry(Shard shard, Exception cause) {
+            if (++shard.attempts >= MAX_ATTEMPTS) {
+                failure = new IllegalStateException("shard " + shard.index + " (games " + shard.from + " to "
+                        + shard.to + ") failed " + shard.attempts + " times", cause);
+                notifyAll();
+            } else {
+                pending.add(shard);
+            }
+        }
+
+        /**
+         * Starts a worker JVM on this host, with the class path of this JVM and the incubating Vector API
+         * module, which the game is compiled against (see {@link GameBatch}).
+         */
+        private void startWorker() throws IOException {
+            InetAddress address = server.getInetAddress();
+            String host = address.isAnyLocalAddress() ? InetAddress.getLoopbackAddress().getHostAddress()
+                    : address.getHostAddress();
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            Process process = new ProcessBuilder(java, "--add-modules", "jdk.incubator.vector",
+                    "-cp", System.getProperty("java.class.path"),
+                    ShardWorker.class.getName(), host, Integer.toString(server.getLocalPort()))
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            synchronized (this) {
+                processes.add(process);
+            }
+            process.onExit().thenAccept(this::workerExited);
+        }
+
+        /**
+         * Replaces a local worker that failed, while the run is not done.
+         */
+        private void workerExited(Process process) {
+            if (done || process.exitValue() == 0) {
+                return;
+            }
+            synchronized (this) {
+                if (++restarts > localWorkers * MAX_ATTEMPTS) {
+                    failure = new IllegalStateException("local workers failed " + restarts + " times");
+                    notifyAll();
+                    return;
+                }
+            }
+            try {
+                startWorker();
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = new IllegalStateException("cannot restart a local worker", e);
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Waits for the local workers to receive {@link ShardWorker#STOP} and exit, and kills the ones that do not.
+         */
+        private void stopWorkers() {
+            List<Process> started;
+            synchronized (this) {
+                started = new ArrayList<>(processes);
+            }
+            for (Process process : started) {
+                try {
+                    if (!process.waitFor(POLL_MILLIS * 20, TimeUnit.MILLISECONDS)) {
+                        process.destroyForcibly();
+                    }
+                } catch (InterruptedException e) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long masterSeed = args.length > 1 ? Long.parseLong(args[1]) : new SplittableRandom().nextLong();
+        int workers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long shardGames = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SHARD_GAMES;
+        int port = args.length > 4 ? Integer.parseInt(args[4]) : 0;
+        // workers of other hosts can connect only if the coordinator listens on all the addresses
+        InetSocketAddress bindAddress = (args.length > 5 && args[5].equals("public"))
+                ? new InetSocketAddress(port) : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+
+        ShardCoordinator coordinator = new ShardCoordinator(bindAddress, workers, shardGames,
+                WarCard.MIN_PLAYERS, 1, Simulator.DEFAULT_MAX_ROUNDS);
+        long start = System.nanoTime();
+        SimulationResult result = coordinator.run(games, masterSeed);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("master seed: " + masterSeed);
+        System.out.println(result);
+        System.out.printf("%.2f seconds, %.0f games/second%n", seconds, games / seconds);
+    }
+}
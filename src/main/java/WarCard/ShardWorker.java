@@ -0,0 +1,90 @@
+package WarCard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ShardWorker class plays the shards of a sharded run for a {@link ShardCoordinator}, in a JVM of its own. <br>
+ * The worker connects to the coordinator over TCP, so it may run on the coordinator's host or on any other host,
+ * and speaks the following protocol, in big-endian order:
+ * <ol>
+ *     <li>the worker sends the ASCII header {@code WARSHD} and a protocol version byte</li>
+ *     <li>the coordinator sends a command byte: {@link #STOP} closes the connection, and {@link #SHARD} is followed
+ *     by the master seed, the index of the first game and the index after the last game of a shard (longs),
+ *     and the number of players, the number of decks and the rounds limit (ints)</li>
+ *     <li>the worker plays the shard and sends the length of the shard's result (an int), followed by the result
+ *     in the format of {@link SimulationResult#writeTo(ByteBuffer)}, then waits for the next command</li>
+ * </ol>
+ */
+public class ShardWorker {
+
+    static final byte PROTOCOL_VERSION = 1;
+    static final byte[] MAGIC = "WARSHD".getBytes(StandardCharsets.US_ASCII);
+    static final byte STOP = 0;
+    static final byte SHARD = 1;
+    static final int MAX_RESULT_SIZE = 1 << 20;
+
+    private final String host;
+    private final int port;
+
+    /**
+     * Constructs a ShardWorker of the coordinator at the given address.
+     * @param host the host of the coordinator
+     * @param port the port of the coordinator
+     */
+    public ShardWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Connects to the coordinator, and plays the shards it sends until it sends {@link #STOP}.
+     * @throws IOException if the connection fails
+     */
+    public void run() throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.write(MAGIC);
+            out.writeByte(PROTOCOL_VERSION);
+            out.flush();
+
+            ByteBuffer buffer = ByteBuffer.allocate(MAX_RESULT_SIZE);
+            Simulator simulator = null;
+            while (in.readByte() == SHARD) {
+                long masterSeed = in.readLong();
+                long from = in.readLong();
+                long to = in.readLong();
+                int playersCount = in.readInt();
+                int decksCount = in.readInt();
+                int maxRounds = in.readInt();
+                if (simulator == null || simulator.getPlayersCount() != playersCount
+                        || simulator.getDecksCount() != decksCount || simulator.getMaxRounds() != maxRounds) {
+                    simulator = new Simulator(ForkJoinPool.commonPool(), maxRounds, null, playersCount, decksCount);
+                }
+
+                SimulationResult result = simulator.runRange(masterSeed, from, to);
+                buffer.clear();
+                result.writeTo(buffer);
+                buffer.flip();
+                out.writeInt(buffer.remaining());
+                out.write(buffer.array(), 0, buffer.remaining());
+                out.flush();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 9090;
+        new ShardWorker(host, port).run();
+    }
+}
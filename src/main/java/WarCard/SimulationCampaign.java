@@ -0,0 +1,125 @@
+package WarCard;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The SimulationCampaign class plays a long run of a {@link Simulator} a range of games at a time,
+ * and checkpoints its progress to a {@link CheckpointFile} after every range. <br>
+ * A checkpoint holds the configuration of the run (its master seed, number of games, range size,
+ * players, decks and rounds limit), the index of the first game that was not played yet,
+ * and the merged result of all the games before it. A campaign that is started again on the same file
+ * resumes after the last committed range, and since the seed of every game is derived from its index
+ * (see {@link Simulator#gameSeed(long, long)}) and the ranges are merged in the same order, its final result
+ * is identical, bit for bit, to the result of a run that was never stopped. <br>
+ * With a transposition cache, the number of games finished from the cache depends on which games
+ * were played before in the same process, so it is the one value that may differ after a restart.
+ */
+public class SimulationCampaign {
+
+    private static final int DEFAULT_RANGE_GAMES = 1 << 20;
+
+    private final Simulator simulator;
+    private final Path checkpointPath;
+    private final long games;
+    private final long masterSeed;
+    private final long rangeGames;
+
+    /**
+     * Constructs a SimulationCampaign.
+     * @param simulator the simulator that plays the games
+     * @param checkpointPath the checkpoint file, which is created if it does not exist
+     * @param games the number of games to play
+     * @param masterSeed the seed from which the seeds of all the games are derived
+     * @param rangeGames the number of games played between two checkpoints
+     */
+    public SimulationCampaign(Simulator simulator, Path checkpointPath, long games, long masterSeed, long rangeGames) {
+        if (rangeGames < 1) {
+            throw new IllegalArgumentException("the range must hold at least one game: " + rangeGames);
+        }
+        this.simulator = simulator;
+        this.checkpointPath = checkpointPath;
+        this.games = games;
+        this.masterSeed = masterSeed;
+        this.rangeGames = rangeGames;
+    }
+
+    /**
+     * Plays all the games that were not played yet, checkpointing after every range.
+     * @return the aggregated results of all the games of the campaign
+     * @throws IOException if the checkpoint file cannot be opened
+     * @throws IllegalStateException if the checkpoint file belongs to a campaign of another configuration
+     */
+    public SimulationResult run() throws IOException {
+        try (CheckpointFile checkpoint = new CheckpointFile(checkpointPath, CheckpointFile.DEFAULT_SLOT_SIZE)) {
+            long next = 0;
+            SimulationResult result = new SimulationResult();
+            ByteBuffer saved = checkpoint.load();
+            if (saved != null) {
+                checkConfiguration(saved);
+                next = saved.getLong();
+                result = SimulationResult.readFrom(saved);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(checkpoint.getCapacity());
+            while (next < games) {
+                long to = Math.min(games, next + rangeGames);
+                result.merge(simulator.runRange(masterSeed, next, to));
+                next = to;
+
+                buffer.clear();
+                try {
+                    writeConfiguration(buffer);
+                    buffer.putLong(next);
+                    result.writeTo(buffer);
+                } catch (BufferOverflowException e) {
+                    throw new IllegalStateException("the checkpoint does not fit in " + checkpoint.getCapacity() + " bytes", e);
+                }
+                checkpoint.commit(buffer.flip());
+            }
+            return result;
+        }
+    }
+
+    private void writeConfiguration(ByteBuffer buffer) {
+        buffer.putLong(masterSeed).putLong(games).putLong(rangeGames);
+        buffer.putInt(simulator.getPlayersCount()).putInt(simulator.getDecksCount()).putInt(simulator.getMaxRounds());
+        Rules rules = simulator.getRules();
+        buffer.putInt(rules.getFaceDownCards()).putInt(rules.getPickup().ordinal()).putInt(rules.isAceLow() ? 1 : 0);
+    }
+
+    /**
+     * Checks that a checkpoint was written by a campaign of the same configuration.
+     */
+    private void checkConfiguration(ByteBuffer saved) {
+        ByteBuffer expected = ByteBuffer.allocate(3 * Long.BYTES + 6 * Integer.BYTES);
+        writeConfiguration(expected);
+        expected.flip();
+        ByteBuffer actual = saved.slice(saved.position(), expected.remaining());
+        if (!actual.equals(expected)) {
+            throw new IllegalStateException("the checkpoint " + checkpointPath + " belongs to another campaign");
+        }
+        saved.position(saved.position() + expected.remaining());
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path checkpointPath = Path.of(args.length > 0 ? args[0] : "campaign.ckp");
+        long games = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000_000L;
+        long masterSeed = args.length > 2 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+        long rangeGames = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_RANGE_GAMES;
+
+        Simulator simulator = new Simulator(ForkJoinPool.commonPool(), Simulator.DEFAULT_MAX_ROUNDS, null);
+        SimulationCampaign campaign = new SimulationCampaign(simulator, checkpointPath, games, masterSeed, rangeGames);
+        long start = System.nanoTime();
+        SimulationResult result = campaign.run();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("master seed: " + masterSeed);
+        System.out.println(result);
+        System.out.printf("%.2f seconds%n", seconds);
+    }
+}
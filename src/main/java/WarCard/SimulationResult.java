@@ -0,0 +1,407 @@
+package WarCard;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The SimulationResult class aggregates the outcome of many simulated War games. <br>
+ * Each worker of the {@link Simulator} fills its own result, and the partial results
+ * are merged together once the workers are done. <br>
+ * A result takes the same memory however many games it aggregates: besides the counters it keeps
+ * the running mean and variance ({@link RunningStats}) and a quantile sketch ({@link QuantileSketch})
+ * of the length and of the number of wars of the finished games.
+ */
+public class SimulationResult {
+
+    private long games;             // number of games played
+    private final long[] wins;      // games won by every player, indexed like the players of the game
+    private int playersCount;       // the largest number of players in a recorded game
+    private long ties;              // games that ended with all the players out of cards
+    private long cycles;            // games stopped because they repeat themselves forever
+    private long unfinished;        // games stopped after reaching the rounds limit
+
+    private long totalRounds;       // sum of the rounds of all games
+    private int minRounds;          // length of the shortest game
+    private int maxRounds;          // length of the longest game
+
+    private long totalWars;         // sum of the wars of all games
+    private long chainedWars;       // wars that broke out again right after a tied war
+
+    private long totalCycleStart;   // sum of the rounds played before entering a cycle, of all cyclic games
+    private long totalCyclePeriod;  // sum of the periods of all cycles
+    private int maxCyclePeriod;     // the longest period of a cycle
+
+    private long cacheHits;         // games whose end was taken from the transposition cache
+
+    private final RunningStats roundsStats;     // rounds of the finished games
+    private final RunningStats warsStats;       // wars of the finished games
+    private final QuantileSketch roundsSketch;
+    private final QuantileSketch warsSketch;
+
+    /**
+     * Constructs an empty SimulationResult.
+     */
+    public SimulationResult() {
+        wins = new long[WarCard.MAX_PLAYERS];
+        playersCount = WarCard.MIN_PLAYERS;
+        minRounds = Integer.MAX_VALUE;
+        maxRounds = 0;
+        roundsStats = new RunningStats();
+        warsStats = new RunningStats();
+        roundsSketch = new QuantileSketch();
+        warsSketch = new QuantileSketch();
+    }
+
+    /**
+     * Records the outcome of a game that has just been played to the end.
+     * @param warCard the game to record
+     * @param finished false if the game was stopped before it ended
+     */
+    void record(WarCard warCard, boolean finished) {
+        boolean cycle = finished && warCard.isCycle();
+        record(warCard.getPlayersCount(), finished, cycle, warCard.getWinnerIndex(),
+                warCard.getRoundsCount(), warCard.getWarsCount(), warCard.getChainedWarsCount());
+        if (cycle) {
+            recordCycle(warCard.getCycleStartRound(), warCard.getCyclePeriod());
+        }
+        if (warCard.isFinishedFromCache()) {
+            cacheHits++;
+        }
+    }
+
+    /**
+     * Records the outcome of a game from its counters, for engines that do not keep a {@link WarCard}
+     * for every game. The start and period of a cycle are recorded separately, by {@link #recordCycle(int, int)}.
+     * @param playersCount the number of players in the game
+     * @param finished false if the game was stopped before it ended
+     * @param cycle true if the game was stopped because it repeats itself forever
+     * @param winnerIndex the index of the winner of the game, or -1 if there is none
+     * @param rounds the number of rounds of the game
+     * @param wars the number of wars of the game
+     * @param chainedWars the number of chained wars of the game
+     */
+    void record(int playersCount, boolean finished, boolean cycle, int winnerIndex,
+                int rounds, int wars, int chainedWars) {
+        games++;
+        if (!finished) {
+            unfinished++;
+        } else if (cycle) {
+            cycles++;
+        } else if (winnerIndex < 0) {
+            ties++;
+        } else {
+            wins[winnerIndex]++;
+        }
+        this.playersCount = Math.max(this.playersCount, playersCount);
+
+        totalRounds += rounds;
+        minRounds = Math.min(minRounds, rounds);
+        maxRounds = Math.max(maxRounds, rounds);
+
+        totalWars += wars;
+        this.chainedWars += chainedWars;
+
+        if (finished) {
+            roundsStats.add(rounds);
+            roundsSketch.add(rounds);
+            warsStats.add(wars);
+            warsSketch.add(wars);
+        }
+    }
+
+    /**
+     * Records where the cycle of a game that was recorded as a cycle starts, and its length.
+     * @param startRound the number of rounds played before the game entered its cycle
+     * @param period the number of rounds in a single repetition of the cycle
+     */
+    void recordCycle(int startRound, int period) {
+        totalCycleStart += startRound;
+        totalCyclePeriod += period;
+        maxCyclePeriod = Math.max(maxCyclePeriod, period);
+    }
+
+    /**
+     * Adds the games of another result to this one.
+     * @param other the result to merge into this one
+     * @return this result, after the merge
+     */
+    SimulationResult merge(SimulationResult other) {
+        games += other.games;
+        for (int i = 0; i < wins.length; ++i) {
+            wins[i] += other.wins[i];
+        }
+        playersCount = Math.max(playersCount, other.playersCount);
+        ties += other.ties;
+        cycles += other.cycles;
+        unfinished += other.unfinished;
+        totalRounds += other.totalRounds;
+        minRounds = Math.min(minRounds, other.minRounds);
+        maxRounds = Math.max(maxRounds, other.maxRounds);
+        totalWars += other.totalWars;
+        chainedWars += other.chainedWars;
+        totalCycleStart += other.totalCycleStart;
+        totalCyclePeriod += other.totalCyclePeriod;
+        maxCyclePeriod = Math.max(maxCyclePeriod, other.maxCyclePeriod);
+        cacheHits += other.cacheHits;
+        roundsStats.merge(other.roundsStats);
+        warsStats.merge(other.warsStats);
+        roundsSketch.merge(other.roundsSketch);
+        warsSketch.merge(other.warsSketch);
+        return this;
+    }
+
+    /**
+     * Writes the whole state of the result, so that {@link #readFrom(ByteBuffer)} restores it exactly.
+     * @param buffer the buffer to write to
+     */
+    void writeTo(ByteBuffer buffer) {
+        buffer.putLong(games);
+        for (long playerWins : wins) {
+            buffer.putLong(playerWins);
+        }
+        buffer.putInt(playersCount);
+        buffer.putLong(ties).putLong(cycles).putLong(unfinished);
+        buffer.putLong(totalRounds).putInt(minRounds).putInt(maxRounds);
+        buffer.putLong(totalWars).putLong(chainedWars);
+        buffer.putLong(totalCycleStart).putLong(totalCyclePeriod).putInt(maxCyclePeriod);
+        buffer.putLong(cacheHits);
+        roundsStats.writeTo(buffer);
+        warsStats.writeTo(buffer);
+        roundsSketch.writeTo(buffer);
+        warsSketch.writeTo(buffer);
+    }
+
+    /**
+     * Reads a result written by {@link #writeTo(ByteBuffer)}.
+     * @param buffer the buffer to read from
+     * @return the result, in exactly the state it was written in
+     */
+    static SimulationResult readFrom(ByteBuffer buffer) {
+        SimulationResult result = new SimulationResult();
+        result.games = buffer.getLong();
+        for (int i = 0; i < result.wins.length; ++i) {
+            result.wins[i] = buffer.getLong();
+        }
+        result.playersCount = buffer.getInt();
+        result.ties = buffer.getLong();
+        result.cycles = buffer.getLong();
+        result.unfinished = buffer.getLong();
+        result.totalRounds = buffer.getLong();
+        result.minRounds = buffer.getInt();
+        result.maxRounds = buffer.getInt();
+        result.totalWars = buffer.getLong();
+        result.chainedWars = buffer.getLong();
+        result.totalCycleStart = buffer.getLong();
+        result.totalCyclePeriod = buffer.getLong();
+        result.maxCyclePeriod = buffer.getInt();
+        result.cacheHits = buffer.getLong();
+        result.roundsStats.readFrom(buffer);
+        result.warsStats.readFrom(buffer);
+        result.roundsSketch.readFrom(buffer);
+        result.warsSketch.readFrom(buffer);
+        return result;
+    }
+
+    /**
+     * Returns the number of games played.
+     * @return the number of games
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * Returns the number of games won by the computer.
+     * @return the computer's wins
+     */
+    public long getComWins() {
+        return wins[0];
+    }
+
+    /**
+     * Returns the number of games won by the user.
+     * @return the user's wins
+     */
+    public long getUserWins() {
+        return wins[1];
+    }
+
+    /**
+     * Returns the number of games won by a player.
+     * @param player the index of the player, as in {@link WarCard#getPlayer(int)}
+     * @return the player's wins
+     */
+    public long getWins(int player) {
+        return wins[player];
+    }
+
+    /**
+     * Returns the number of games that ended in a tie.
+     * @return the number of ties
+     */
+    public long getTies() {
+        return ties;
+    }
+
+    /**
+     * Returns the number of games that were stopped because they repeat themselves forever.
+     * @return the number of cyclic games
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Returns the average number of rounds played before a cyclic game entered its cycle.
+     * @return the average start of a cycle
+     */
+    public double getAvgCycleStart() {
+        return cycles == 0 ? 0 : (double) totalCycleStart / cycles;
+    }
+
+    /**
+     * Returns the average number of rounds in a single repetition of a cycle.
+     * @return the average period of a cycle
+     */
+    public double getAvgCyclePeriod() {
+        return cycles == 0 ? 0 : (double) totalCyclePeriod / cycles;
+    }
+
+    /**
+     * Returns the longest period of a cycle.
+     * @return the maximal period of a cycle
+     */
+    public int getMaxCyclePeriod() {
+        return maxCyclePeriod;
+    }
+
+    /**
+     * Returns the number of games whose end was taken from the transposition cache.
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of games that were stopped after reaching the rounds limit.
+     * @return the number of unfinished games
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Returns the sum of the rounds of all games.
+     * @return the total number of rounds
+     */
+    public long getTotalRounds() {
+        return totalRounds;
+    }
+
+    /**
+     * Returns the length of the shortest game, or 0 if no game was played.
+     * @return the minimal number of rounds
+     */
+    public int getMinRounds() {
+        return games == 0 ? 0 : minRounds;
+    }
+
+    /**
+     * Returns the length of the longest game.
+     * @return the maximal number of rounds
+     */
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    /**
+     * Returns the average length of a game.
+     * @return the average number of rounds
+     */
+    public double getAvgRounds() {
+        return games == 0 ? 0 : (double) totalRounds / games;
+    }
+
+    /**
+     * Returns the sum of the wars of all games.
+     * @return the total number of wars
+     */
+    public long getTotalWars() {
+        return totalWars;
+    }
+
+    /**
+     * Returns the number of wars that broke out right after a tied war.
+     * @return the number of chained wars
+     */
+    public long getChainedWars() {
+        return chainedWars;
+    }
+
+    /**
+     * Returns the average number of wars in a game.
+     * @return the average number of wars
+     */
+    public double getAvgWars() {
+        return games == 0 ? 0 : (double) totalWars / games;
+    }
+
+    /**
+     * Returns the running statistics of the rounds of the finished games.
+     * @return the mean, variance and extremes of the game length
+     */
+    public RunningStats getRoundsStats() {
+        return roundsStats;
+    }
+
+    /**
+     * Returns the running statistics of the wars of the finished games.
+     * @return the mean, variance and extremes of the wars per game
+     */
+    public RunningStats getWarsStats() {
+        return warsStats;
+    }
+
+    /**
+     * Returns the quantile sketch of the rounds of the finished games.
+     * @return the sketch of the game length
+     */
+    public QuantileSketch getRoundsSketch() {
+        return roundsSketch;
+    }
+
+    /**
+     * Returns the quantile sketch of the wars of the finished games.
+     * @return the sketch of the wars per game
+     */
+    public QuantileSketch getWarsSketch() {
+        return warsSketch;
+    }
+
+    /**
+     * Returns a string representation of the aggregated results.
+     * @return a summary of the simulated games
+     */
+    @Override
+    public String toString() {
+        StringBuilder winners = new StringBuilder("computer wins: " + wins[0] + ", user wins: " + wins[1]);
+        for (int i = 2; i < playersCount; ++i) {
+            winners.append(", player ").append(i + 1).append(" wins: ").append(wins[i]);
+        }
+        return String.format("games: %d%n" +
+                        "%s, ties: %d, cycles: %d, unfinished: %d%n" +
+                        "rounds: avg %.2f, min %d, max %d%n" +
+                        "finished game rounds: std dev %.2f, %s%n" +
+                        "wars: avg %.2f per game, total %d, chained %d%n" +
+                        "finished game wars: std dev %.2f, %s%n" +
+                        "cycles: avg start %.2f, avg period %.2f, max period %d%n" +
+                        "finished from cache: %d",
+                games, winners, ties, cycles, unfinished,
+                getAvgRounds(), getMinRounds(), maxRounds,
+                roundsStats.getStdDev(), roundsSketch,
+                getAvgWars(), totalWars, chainedWars,
+                warsStats.getStdDev(), warsSketch,
+                getAvgCycleStart(), getAvgCyclePeriod(), maxCyclePeriod,
+                cacheHits);
+    }
+}
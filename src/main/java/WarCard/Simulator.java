@@ -0,0 +1,319 @@
+package WarCard;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The Simulator class plays many full War games without any user interface. <br>
+ * The games are split between all the available cores using fork-join,
+ * and the outcome of every game is aggregated into a {@link SimulationResult}. <br>
+ * Every game is dealt from its own seed, derived from a single master seed and the game's index,
+ * so a run is reproducible regardless of how the games were scheduled between the threads.
+ */
+public class Simulator {
+
+    static final int GAMES_PER_TASK = 2048;     // games played by a single task without splitting
+    static final int DEFAULT_MAX_ROUNDS = 100_000;
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;   // the increment used by SplittableRandom
+
+    private final ForkJoinPool pool;
+    private final int maxRounds;
+    private final TranspositionCache cache;
+    private final int playersCount;
+    private final int decksCount;
+    private Rules rules;                                    // the rules every game is played by
+    private EngineMetrics metrics;                          // the metrics the games record into, or null
+    private GameRecordWriter recordWriter;                  // the writer of the played games, or null
+    private ResultStore resultStore;                        // the store of the results of single games, or null
+    private final Map<Thread, GameRecorder> recorders;      // a recorder for every thread that plays games
+
+    /**
+     * Constructs a Simulator that uses the common fork-join pool.
+     */
+    public Simulator() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MAX_ROUNDS, null);
+    }
+
+    /**
+     * Constructs a Simulator that runs its games on the given pool.
+     * @param pool the pool that executes the games
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     * @param cache a transposition cache shared by all the games, or null to play every game to its end
+     */
+    public Simulator(ForkJoinPool pool, int maxRounds, TranspositionCache cache) {
+        this(pool, maxRounds, cache, WarCard.MIN_PLAYERS, 1);
+    }
+
+    /**
+     * Constructs a Simulator of games with the given number of players and decks.
+     * @param pool the pool that executes the games
+     * @param maxRounds the number of rounds after which a game is stopped as unfinished
+     * @param cache a transposition cache shared by all the games, or null to play every game to its end
+     * @param playersCount the number of players in every game
+     * @param decksCount the number of standard decks in the shoe of every game
+     */
+    public Simulator(ForkJoinPool pool, int maxRounds, TranspositionCache cache, int playersCount, int decksCount) {
+        this.pool = pool;
+        this.maxRounds = maxRounds;
+        this.cache = cache;
+        this.playersCount = playersCount;
+        this.decksCount = decksCount;
+        this.rules = Rules.STANDARD;
+        this.recorders = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Sets the rules every game is played by. The rules are resolved once for every task's game,
+     * when the game is constructed (see {@link Rules}).
+     * @param rules the rules of the games
+     * @throws IllegalStateException if the rules are not deterministic and the games share a transposition cache,
+     *                               or if the rules are not the standard rules and the games are recorded
+     */
+    public void setRules(Rules rules) {
+        if (cache != null && !rules.isDeterministic()) {
+            throw new IllegalStateException("games of the rules " + rules + " cannot share a transposition cache");
+        }
+        if (recordWriter != null && !rules.equals(Rules.STANDARD)) {
+            throw new IllegalStateException("games of the rules " + rules + " cannot be recorded");
+        }
+        this.rules = rules;
+    }
+
+    /**
+     * Sets the metrics that every game records its rounds, wars, pickups and hands into.
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the writer that records every game, including the games stopped at the rounds limit. <br>
+     * A record holds no rules, and is replayed by the standard rules, so only games of the standard rules are recorded.
+     * @param recordWriter the writer of the games, or null to stop recording
+     * @throws IllegalStateException if the games are not played by the standard rules
+     */
+    public void setRecordWriter(GameRecordWriter recordWriter) {
+        if (recordWriter != null && !rules.equals(Rules.STANDARD)) {
+            throw new IllegalStateException("games of the rules " + rules + " cannot be recorded");
+        }
+        this.recordWriter = recordWriter;
+        recorders.clear();
+    }
+
+    /**
+     * Returns the number of players in every game.
+     * @return the number of players
+     */
+    int getPlayersCount() {
+        return playersCount;
+    }
+
+    /**
+     * Returns the number of standard decks in the shoe of every game.
+     * @return the number of decks
+     */
+    int getDecksCount() {
+        return decksCount;
+    }
+
+    /**
+     * Returns the rules every game is played by.
+     * @return the rules of the games
+     */
+    Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the number of rounds after which a game is stopped as unfinished.
+     * @return the rounds limit
+     */
+    int getMaxRounds() {
+        return maxRounds;
+    }
+
+    /**
+     * Sets the store that the result of every game is appended to.
+     * @param resultStore the store of the games' results, or null to stop storing
+     */
+    public void setResultStore(ResultStore resultStore) {
+        this.resultStore = resultStore;
+    }
+
+    /**
+     * Plays the given number of games from a random master seed and aggregates their results.
+     * @param games the number of games to play
+     * @return the aggregated results of all the games
+     */
+    public SimulationResult run(long games) {
+        return run(games, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Plays the given number of games and aggregates their results.
+     * The same master seed always produces the same result.
+     * @param games the number of games to play
+     * @param masterSeed the seed from which the seeds of all the games are derived
+     * @return the aggregated results of all the games
+     */
+    public SimulationResult run(long games, long masterSeed) {
+        return runRange(masterSeed, 0, games);
+    }
+
+    /**
+     * Plays a range of the games of a run and aggregates their results. <br>
+     * The same range of the same master seed always produces the same result, so a long run can be
+     * played a range at a time (see {@link SimulationCampaign}).
+     * @param masterSeed the seed from which the seeds of all the games are derived
+     * @param from the index of the first game in the range
+     * @param to the index after the last game in the range
+     * @return the aggregated results of the games in the range
+     */
+    public SimulationResult runRange(long masterSeed, long from, long to) {
+        SimulationResult result = pool.invoke(new SimulationTask(masterSeed, from, to));
+        for (GameRecorder recorder : recorders.values()) {
+            recorder.flush();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the seed of a single game in a run. <br>
+     * The seeds are the same sequence {@code new SplittableRandom(masterSeed).nextLong()} produces,
+     * but any of them can be computed directly from its index, so any game can be replayed on its own with {@link WarCard#startGame(long)}.
+     * @param masterSeed the master seed of the run
+     * @param game the index of the game in the run
+     * @return the seed of the game
+     */
+    static long gameSeed(long masterSeed, long game) {
+        long z = masterSeed + (game + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Plays a single game to the end (or until the rounds limit) and records it.
+     * @param warCard the game to play
+     * @param seed the seed of the game's deal
+     * @param result the result to record the game into
+     * @param recorder the recorder of the game's rounds, or null
+     */
+    private void playGame(WarCard warCard, long seed, SimulationResult result, GameRecorder recorder) {
+        warCard.startGame(seed);
+        if (recorder != null) {
+            recorder.startGame(warCard, seed);
+        }
+
+        boolean gameIsOn = true;
+        while (gameIsOn && warCard.getRoundsCount() < maxRounds) {
+            gameIsOn = warCard.exeRound();
+            if (recorder != null) {
+                recorder.recordRound(warCard);
+            }
+        }
+
+        if (gameIsOn) {
+            warCard.stopGame();
+        }
+        result.record(warCard, !gameIsOn);
+        if (resultStore != null) {
+            resultStore.append(seed, warCard, !gameIsOn);
+        }
+        if (recorder != null) {
+            recorder.endGame(warCard, !gameIsOn);
+        }
+    }
+
+    /**
+     * Returns the recorder of the current thread, or null if the games are not recorded.
+     * @return the recorder of the current thread
+     */
+    private GameRecorder currentRecorder() {
+        GameRecordWriter writer = recordWriter;
+        if (writer == null) {
+            return null;
+        }
+        return recorders.computeIfAbsent(Thread.currentThread(), thread -> writer.newRecorder());
+    }
+
+    /**
+     * A fork-join task that plays a range of games, splitting it in half while it is too large.
+     */
+    private class SimulationTask extends RecursiveTask<SimulationResult> {
+        private final long masterSeed;
+        private final long from;    // index of the first game in the range
+        private final long to;      // index after the last game in the range
+
+        SimulationTask(long masterSeed, long from, long to) {
+            this.masterSeed = masterSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationResult compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                WarCard warCard = new WarCard(playersCount, decksCount, rules);
+                warCard.setTranspositionCache(cache, maxRounds);
+                warCard.setMetrics(metrics);
+                GameRecorder recorder = currentRecorder();
+                SimulationResult result = new SimulationResult();
+                for (long game = from; game < to; ++game) {
+                    playGame(warCard, gameSeed(masterSeed, game), result, recorder);
+                }
+                return result;
+            }
+
+            long middle = from + (to - from) / 2;
+            SimulationTask left = new SimulationTask(masterSeed, from, middle);
+            SimulationTask right = new SimulationTask(masterSeed, middle, to);
+            left.fork();
+            return right.compute().merge(left.join());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        long masterSeed = args.length > 1 ? Long.parseLong(args[1]) : new SplittableRandom().nextLong();
+        int cacheCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        TranspositionCache cache = (cacheCapacity > 0) ? new TranspositionCache(cacheCapacity) : null;
+
+        boolean record = args.length > 3 && !args[3].equals("-");  // "-" skips the recording
+        int playersCount = args.length > 4 ? Integer.parseInt(args[4]) : WarCard.MIN_PLAYERS;
+        int decksCount = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        EngineMetrics metrics = (args.length > 6 && Boolean.parseBoolean(args[6])) ? new EngineMetrics() : null;
+        GameRecordWriter recordWriter = record ? new GameRecordWriter(Path.of(args[3])) : null;
+        ResultStore resultStore = (args.length > 7 && !args[7].equals("-")) ? new ResultStore(Path.of(args[7])) : null;
+        Rules rules = args.length > 8 ? Rules.parse(args[8]) : Rules.STANDARD;
+
+        Simulator simulator = new Simulator(ForkJoinPool.commonPool(), DEFAULT_MAX_ROUNDS, cache,
+                playersCount, decksCount);
+        simulator.setRules(rules);
+        simulator.setRecordWriter(recordWriter);
+        simulator.setMetrics(metrics);
+        simulator.setResultStore(resultStore);
+        long start = System.nanoTime();
+        SimulationResult result = simulator.run(games, masterSeed);
+        if (recordWriter != null) {
+            recordWriter.close();
+        }
+        if (resultStore != null) {
+            resultStore.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("master seed: " + masterSeed + ", rules: " + rules);
+        System.out.println(result);
+        if (metrics != null) {
+            System.out.println(metrics);
+        }
+        System.out.printf("%.2f seconds, %.0f games/second%n", seconds, games / seconds);
+    }
+}
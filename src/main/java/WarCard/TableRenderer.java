@@ -0,0 +1,278 @@
+package WarCard;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+
+/**
+ * The TableRenderer class draws the cards of the two-player game on a {@link Canvas}, once per pulse. <br>
+ * Every displayed round is animated: the battle cards flip over, the face-down cards of a war drop onto
+ * the stacks under the cards that tied, and the table slides to the winner when it is picked up.
+ * The animations are interpolated by the time of the pulse, so a late pulse skips the frames it missed
+ * instead of slowing the animation down. <br>
+ * The animations fit in the time between the rounds: when the rounds come faster than a full animation
+ * takes, it is shortened, and when they come faster than a few frames, the rounds are drawn without
+ * animation. A round that arrives during the animation of the previous one cuts it short. <br>
+ * Only the regions of the canvas whose content changed since the last frame are cleared and redrawn,
+ * and nothing is drawn while the table is still. The canvas is transparent, so the background of the
+ * scene shows through it.
+ */
+final class TableRenderer {
+
+    static final int COM = 0;       // the side of the computer, as its index in the game
+    static final int USER = 1;      // the side of the user, as its index in the game
+
+    // the boxes of the cards of the players, as the cards were laid out in the scene
+    private static final double[] SLOT_X = {380, 120};
+    private static final double SLOT_Y = 160;
+    private static final double SLOT_WIDTH = 100;
+    private static final double SLOT_HEIGHT = 150;
+
+    private static final int MAX_STACK = 8;             // the most cards drawn under a player's top card
+    private static final double STACK_DX = -5;          // the offset of every card of a stack from the one above it
+    private static final double STACK_DY = -3;
+    private static final double DROP_HEIGHT = 30;       // the height a face-down card drops from
+    private static final double PICKUP_DY = 120;        // how far the table slides down toward its winner
+
+    private static final long FLIP_NANOS = 150_000_000L;
+    private static final long HOLD_NANOS = 500_000_000L;
+    private static final long PICKUP_NANOS = 250_000_000L;
+    private static final long ROUND_NANOS = FLIP_NANOS + HOLD_NANOS + PICKUP_NANOS;
+    private static final long FRAME_NANOS = 16_666_667L;
+    private static final long MIN_ANIMATED_NANOS = 3 * FRAME_NANOS;   // faster rounds are drawn without animation
+    private static final long MAX_INTERVAL_NANOS = 10 * ROUND_NANOS;  // longer intervals count as a manual round
+
+    private final GraphicsContext graphics;
+
+    //the displayed round
+    private final Image[] tops = new Image[2];      // the top card of every player, or null for none
+    private final boolean[] flips = new boolean[2]; // true if the top card flips over from its back
+    private final int[] stacks = new int[2];        // the number of cards under the top card of every player
+    private boolean faceDown;           // indicate if the top cards were drawn face down
+    private int pickupBy = -1;          // the side that picks up the table at the end of the round, or -1
+    private int lastRound;              // the number of the displayed round, or 0
+    private boolean lastPickedUp = true;
+
+    //animation timing
+    private long start;                 // the time of the pulse that started the displayed round
+    private long flipNanos;             // the durations of the phases of the displayed round, or 0 when still
+    private long holdNanos;
+    private long pickupNanos;
+    private long roundPeriod = Long.MAX_VALUE;  // the time between the rounds of auto-play, or MAX_VALUE
+    private long observedPeriod = MAX_INTERVAL_NANOS;   // a moving average of the time between displayed rounds
+    private boolean settled = true;     // indicate if the last frame drawn shows the end of the displayed round
+
+    //the regions drawn in the last frame, one for every side: x, y, width and height
+    private final double[] drawn = new double[8];
+    private final double[] drawing = new double[8];
+
+    /**
+     * Constructs a TableRenderer that draws on the given canvas.
+     * @param canvas the canvas, which covers the whole table
+     */
+    TableRenderer(Canvas canvas) {
+        this.graphics = canvas.getGraphicsContext2D();
+    }
+
+    /**
+     * Sets the time between the rounds of auto-play, which bounds the length of the animations.
+     * @param nanos the time between two rounds, in nanoseconds, or {@link Long#MAX_VALUE} when the rounds are played by hand
+     */
+    void setRoundPeriod(long nanos) {
+        roundPeriod = nanos;
+    }
+
+    /**
+     * Shows still images on the table, with no stacks and no animation, and forgets the rounds displayed before.
+     * @param com the image of the computer's card, or null for none
+     * @param user the image of the user's card, or null for none
+     */
+    void showStill(Image com, Image user) {
+        tops[COM] = com;
+        tops[USER] = user;
+        flips[COM] = false;
+        flips[USER] = false;
+        stacks[COM] = 0;
+        stacks[USER] = 0;
+        faceDown = false;
+        pickupBy = -1;
+        lastRound = 0;
+        lastPickedUp = true;
+        flipNanos = 0;
+        holdNanos = 0;
+        pickupNanos = 0;
+        settled = false;
+    }
+
+    /**
+     * Starts displaying a round, cutting short the animation of the round displayed before it.
+     * @param event the event of the round
+     * @param pickupBy the side that picks up the table at the end of the round, or -1 if the table stays
+     * @param now the time of the current pulse, in nanoseconds
+     */
+    void showRound(RoundEvent event, int pickupBy, long now) {
+        int stack;
+        if (event.getRound() == lastRound + 1) {
+            stack = lastPickedUp ? 0 : Math.min(MAX_STACK, stacks[USER] + 1);
+        } else { // the rounds in between were skipped, so only the current war is known
+            stack = Math.min(MAX_STACK, Math.max(0, event.getWarCardsCount()));
+        }
+        faceDown = event.isFaceDown();
+        for (int side = COM; side <= USER; ++side) {
+            Card card = event.getCard(side);
+            tops[side] = (card == null) ? CardImages.outOfCards() : faceDown ? CardImages.back() : CardImages.face(card);
+            flips[side] = (card != null && !faceDown);
+            stacks[side] = stack;
+        }
+        this.pickupBy = pickupBy;
+        lastRound = event.getRound();
+        lastPickedUp = (pickupBy >= 0);
+
+        if (start != 0) {
+            long interval = Math.min(MAX_INTERVAL_NANOS, now - start);
+            observedPeriod = (3 * observedPeriod + interval) / 4;
+        }
+        long period = Math.min(roundPeriod, observedPeriod);
+        if (period < MIN_ANIMATED_NANOS) {
+            flipNanos = 0;
+            holdNanos = 0;
+            pickupNanos = 0;
+        } else {
+            double scale = Math.min(1.0, (double) period / ROUND_NANOS);
+            flipNanos = (long) (FLIP_NANOS * scale);
+            holdNanos = (long) (HOLD_NANOS * scale);
+            pickupNanos = (pickupBy >= 0) ? (long) (PICKUP_NANOS * scale) : 0;
+        }
+        start = now;
+        settled = false;
+    }
+
+    /**
+     * Draws the frame of the given pulse, unless the table is still since the last frame.
+     * @param now the time of the current pulse, in nanoseconds
+     */
+    void render(long now) {
+        if (settled) {
+            return;
+        }
+        long elapsed = now - start;
+        settled = (elapsed >= flipNanos + holdNanos + pickupNanos);
+
+        double flip = progress(elapsed, flipNanos);
+        double pickup = (pickupNanos == 0) ? 0 : progress(elapsed - flipNanos - holdNanos, pickupNanos);
+        boolean pickedUp = (pickupNanos > 0 && pickup >= 1);
+        double dx = 0;
+        double dy = 0;
+        if (pickupNanos > 0) {
+            double eased = pickup * pickup;
+            dx = (SLOT_X[pickupBy] - SLOT_X[1 - pickupBy]) / 2 * eased;
+            dy = PICKUP_DY * eased;
+        }
+
+        for (int side = COM; side <= USER; ++side) {
+            bounds(side, pickedUp ? 0 : 1, dx, dy);
+        }
+        for (int side = COM; side <= USER; ++side) {
+            clear(drawn, side);
+            clear(drawing, side);
+        }
+
+        graphics.save();
+        graphics.beginPath();
+        for (int side = COM; side <= USER; ++side) {
+            clip(drawn, side);
+            clip(drawing, side);
+        }
+        graphics.clip();
+        if (!pickedUp) {
+            graphics.setGlobalAlpha(1 - pickup);
+            for (int side = COM; side <= USER; ++side) {
+                drawSide(side, flip, dx, dy);
+            }
+        }
+        graphics.restore();
+        System.arraycopy(drawing, 0, drawn, 0, drawing.length);
+    }
+
+    /**
+     * Draws the stack and the top card of a player.
+     */
+    private void drawSide(int side, double flip, double dx, double dy) {
+        double x = SLOT_X[side] + dx;
+        double y = SLOT_Y + dy;
+        Image back = (stacks[side] > 0) ? CardImages.back() : null;
+        for (int i = stacks[side]; i > 0; --i) {
+            drawCard(back, x + i * STACK_DX, y + i * STACK_DY, 1);
+        }
+        Image top = tops[side];
+        if (top == null) {
+            return;
+        }
+        if (faceDown) {
+            drawCard(top, x, y - DROP_HEIGHT * (1 - flip), 1);
+        } else if (flips[side] && flip < 0.5) {
+            drawCard(CardImages.back(), x, y, 1 - 2 * flip);
+        } else if (flips[side]) {
+            drawCard(top, x, y, 2 * flip - 1);
+        } else {
+            drawCard(top, x, y, 1);
+        }
+    }
+
+    /**
+     * Draws a card image in the box of a card, keeping its ratio, squeezed horizontally around its center.
+     */
+    private void drawCard(Image image, double x, double y, double widthScale) {
+        double scale = Math.min(SLOT_WIDTH / image.getWidth(), SLOT_HEIGHT / image.getHeight());
+        double width = image.getWidth() * scale;
+        double height = image.getHeight() * scale;
+        double squeezed = width * widthScale;
+        graphics.drawImage(image, x + (width - squeezed) / 2, y, squeezed, height);
+    }
+
+    /**
+     * Computes the region a player's cards take in the current frame, into {@link #drawing}.
+     * @param visible 1 if the cards are drawn, 0 if the side is empty
+     */
+    private void bounds(int side, int visible, double dx, double dy) {
+        int i = 4 * side;
+        if (visible == 0 || (tops[side] == null && stacks[side] == 0)) {
+            drawing[i + 2] = 0;
+            drawing[i + 3] = 0;
+            return;
+        }
+        double stackX = stacks[side] * STACK_DX;
+        double stackY = stacks[side] * STACK_DY;
+        double drop = faceDown ? DROP_HEIGHT : 0;
+        drawing[i] = Math.floor(SLOT_X[side] + dx + stackX) - 1;
+        drawing[i + 1] = Math.floor(SLOT_Y + dy + Math.min(stackY, -drop)) - 1;
+        drawing[i + 2] = Math.ceil(SLOT_WIDTH - stackX) + 2;
+        drawing[i + 3] = Math.ceil(SLOT_HEIGHT - Math.min(stackY, -drop)) + 2;
+    }
+
+    private void clear(double[] regions, int side) {
+        int i = 4 * side;
+        if (regions[i + 2] > 0) {
+            graphics.clearRect(regions[i], regions[i + 1], regions[i + 2], regions[i + 3]);
+        }
+    }
+
+    private void clip(double[] regions, int side) {
+        int i = 4 * side;
+        if (regions[i + 2] > 0) {
+            graphics.rect(regions[i], regions[i + 1], regions[i + 2], regions[i + 3]);
+        }
+    }
+
+    /**
+     * Returns the part of a phase that has passed.
+     * @return the progress, between 0 and 1, or 1 for a phase of no length
+     */
+    private static double progress(long elapsed, long nanos) {
+        if (nanos == 0 || elapsed >= nanos) {
+            return 1;
+        }
+        return (elapsed <= 0) ? 0 : (double) elapsed / nanos;
+    }
+
+}
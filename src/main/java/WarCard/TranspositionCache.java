@@ -0,0 +1,143 @@
+package WarCard;
+
+import java.util.Arrays;
+
+/**
+ * The TranspositionCache class remembers how games continued from states that were already played. <br>
+ * It maps the hash of a game state (see {@link WarCard#getStateHash()}) to the final outcome of the game
+ * from that state: the winner, and the rounds, wars and chained wars that were still to come. A game that
+ * reaches a cached state can be finished at once instead of playing the rest of its rounds. <br>
+ * The cache has a fixed number of slots, and a new entry simply evicts the entry that shared its slot.
+ * It may be shared between threads without locking: every slot stores the key XOR-ed with the value,
+ * so a slot that was torn by two racing writers no longer matches its key and is read as a miss.
+ */
+public class TranspositionCache {
+
+    /** The outcome of a game the computer won. The outcome of a game any player won is the index of that player. */
+    static final int COM_WON = 0;
+    /** The outcome of a game the user won. */
+    static final int USER_WON = 1;
+    /** The outcome of a game that ended with all the players out of cards. */
+    static final int TIE = WarCard.MAX_PLAYERS;
+    /** The value returned for a state that is not in the cache. No entry packs to it, since TIE is the largest outcome. */
+    static final long MISS = -1;
+
+    private static final int OUTCOME_BITS = 5;
+    private static final int ROUNDS_BITS = 24;
+    private static final int WARS_BITS = 18;
+    private static final int CHAINED_WARS_BITS = 17;
+    private static final long ROUNDS_MASK = (1L << ROUNDS_BITS) - 1;
+    private static final long WARS_MASK = (1L << WARS_BITS) - 1;
+    private static final long CHAINED_WARS_MASK = (1L << CHAINED_WARS_BITS) - 1;
+
+    private final long[] checks;    // the key of each slot XOR-ed with its value
+    private final long[] values;    // the packed outcome of each slot
+    private final int mask;
+
+    /**
+     * Constructs a TranspositionCache with at least the given number of slots.
+     * @param capacity the minimal number of entries the cache can hold
+     */
+    public TranspositionCache(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        checks = new long[slots];
+        values = new long[slots];
+        mask = slots - 1;
+        Arrays.fill(values, MISS);
+    }
+
+    /**
+     * Returns the packed outcome of the game from the given state.
+     * @param stateHash the hash of the state
+     * @return the packed outcome, or {@link #MISS} if the state is not in the cache
+     */
+    long get(long stateHash) {
+        int slot = slot(stateHash);
+        long value = values[slot];
+        if (value == MISS || (checks[slot] ^ value) != stateHash) {
+            return MISS;
+        }
+        return value;
+    }
+
+    /**
+     * Stores the outcome of the game from the given state, evicting any entry in the same slot.
+     * Outcomes whose counts do not fit in an entry are not stored.
+     * @param stateHash the hash of the state
+     * @param outcome the outcome of the game (the index of the winner, or {@link #TIE})
+     * @param rounds the number of rounds played from the state to the end
+     * @param wars the number of wars from the state to the end
+     * @param chainedWars the number of chained wars from the state to the end
+     */
+    void put(long stateHash, int outcome, int rounds, int wars, int chainedWars) {
+        if (rounds > ROUNDS_MASK || wars > WARS_MASK || chainedWars > CHAINED_WARS_MASK) {
+            return;
+        }
+        long value = outcome
+                | (long) rounds << OUTCOME_BITS
+                | (long) wars << (OUTCOME_BITS + ROUNDS_BITS)
+                | (long) chainedWars << (OUTCOME_BITS + ROUNDS_BITS + WARS_BITS);
+        int slot = slot(stateHash);
+        values[slot] = value;
+        checks[slot] = stateHash ^ value;
+    }
+
+    /**
+     * Removes all the entries of the cache.
+     */
+    public void clear() {
+        Arrays.fill(values, MISS);
+    }
+
+    /**
+     * Returns the number of slots in the cache.
+     * @return the capacity of the cache
+     */
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the outcome stored in a packed value.
+     * @param value the packed value returned by {@link #get(long)}
+     * @return the outcome of the game
+     */
+    static int outcome(long value) {
+        return (int) (value & ((1 << OUTCOME_BITS) - 1));
+    }
+
+    /**
+     * Returns the number of remaining rounds stored in a packed value.
+     * @param value the packed value returned by {@link #get(long)}
+     * @return the number of rounds to the end of the game
+     */
+    static int rounds(long value) {
+        return (int) ((value >>> OUTCOME_BITS) & ROUNDS_MASK);
+    }
+
+    /**
+     * Returns the number of remaining wars stored in a packed value.
+     * @param value the packed value returned by {@link #get(long)}
+     * @return the number of wars to the end of the game
+     */
+    static int wars(long value) {
+        return (int) ((value >>> (OUTCOME_BITS + ROUNDS_BITS)) & WARS_MASK);
+    }
+
+    /**
+     * Returns the number of remaining chained wars stored in a packed value.
+     * @param value the packed value returned by {@link #get(long)}
+     * @return the number of chained wars to the end of the game
+     */
+    static int chainedWars(long value) {
+        return (int) ((value >>> (OUTCOME_BITS + ROUNDS_BITS + WARS_BITS)) & CHAINED_WARS_MASK);
+    }
+
+    /**
+     * Returns the slot of a state. The high bits of the hash are used, since the low bits of the
+     * polynomial hash depend on fewer cards.
+     */
+    private int slot(long stateHash) {
+        return (int) (stateHash >>> 32) & mask;
+    }
+}
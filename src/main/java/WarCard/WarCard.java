@@ -1,24 +1,92 @@
 package WarCard;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.random.RandomGenerator;
 
 /**
  * The {@code WarCard} class represents the main logic of the card game "War".
- * It manages the deck, players, and game rounds.
+ * It manages the deck, players, and game rounds. <br>
+ * A game is played by 2 to {@link #MAX_PLAYERS} players with a shoe of 1 to {@link Deck#MAX_DECKS} decks.
+ * In every battle each of its players draws a card, and the highest rank takes the table;
+ * when two or more players share the highest rank, a war breaks out between them alone.
+ * A player who runs out of cards is out of the game, and the game ends when a single player holds cards.
+ * Player 0 is the computer and player 1 is the user. <br>
+ * The number of face-down cards in a war, the order in which the table is picked up and the rank of aces
+ * are set by the game's {@link Rules}, which are fixed when the game is constructed.
  */
 public class WarCard {
 
+    /** The fewest players a game can be played by. */
+    public static final int MIN_PLAYERS = 2;
+    /** The most players a game can be played by. */
+    public static final int MAX_PLAYERS = 16;
+    /** The longest time the game waits for a slow subscriber to have room for the end of the game. */
+    public static final long GAME_END_TIMEOUT_MILLIS = 1000;
+
     private final Deck deck;
-    private final ArrayList<Card> table;
-    private final Player playerCom;
-    private final Player playerUser;
+    private final Rules rules;
+    private final byte[] rankValues;    // the rank value of every card code under the rules
+    private final int faceDownCards;    // the face-down cards drawn in each war under the rules
+    private final Rules.TableOrder[] tableOrders;   // the pickup order of every player
+    private final byte[] table;     // codes of the cards on the table, in the order they were drawn
+    private int tableSize;
+    private long tableHash;         // incremental hash of the table (see Zobrist)
+    private long tablePower;        // Zobrist.BASE to the power of the table's size
+    private final Player[] players;
+    private final Player playerCom;     // players[0]
+    private final Player playerUser;    // players[1]
 
     //round info
     private Player winner;          // winner of the round (or the game if ended)
-    private Card cardCom;           // the card drawn by the computer in the current round
-    private Card cardUser;          // the card drawn by the user in the current round
-    private int warCardsCount;      // counts the 3 cards that draw after each war
+    private final Card[] cards;     // the card drawn by every player in the current round, or null
+    private final int[] participants;   // indexes of the players in the current battle, in increasing order
+    private int participantsCount;
+    private final int[] drawnCodes; // the code drawn by every participant in the current round
+    private int warCardsCount;      // counts the face-down cards that draw after each war
     private boolean insideWar;      // indicate if the *next* round will be inside war
+    private boolean faceDownRound;  // indicate if the cards of the current round were drawn face down
+
+    //game info
+    private int roundsCount;        // counts the rounds executed since the game started
+    private int warsCount;          // counts the wars that broke out since the game started
+    private int chainedWarsCount;   // counts the wars that broke out while a previous war was still on the table
+    private int warChain;           // the wars of the current battle so far
+    private int longestWarChain;    // the most wars that broke out one after the other in a single battle
+
+    //cycle info
+    private final CycleDetector cycleDetector;
+    private boolean cycleDetection; // false for the replicas that replay a game to locate its cycle
+    private final byte[][] initialHands;    // the hands dealt to the players, kept to replay the game
+    private final int[] initialSizes;
+    private boolean cycle;          // indicate if the game was stopped because it repeats itself forever
+    private int cycleStartRound;    // the number of rounds played before the game entered its cycle
+    private int cyclePeriod;        // the number of rounds in a single repetition of the cycle
+
+    //transposition info
+    private TranspositionCache cache;   // outcomes of states reached by earlier games, or null
+    private int cacheRoundsLimit;       // the most rounds a game finished from the cache may have
+    private long[] trailHashes;         // the states this game passed through after its decided battles
+    private int[] trailCounts;          // rounds, wars and chained wars played when each trail state was reached
+    private int trailSize;
+    private boolean finishedFromCache;  // indicate if the end of the game was taken from the cache
+
+    //metrics info
+    private EngineMetrics.Recorder metrics;   // the recorder of the engine's metrics, or null
+
+    //events info
+    private volatile SubmissionPublisher<RoundEvent> publisher;  // created with the first subscriber, null until then
+    private final ConcurrentHashMap<Flow.Subscriber<?>, AtomicLong> droppedEvents = new ConcurrentHashMap<>();
+    private final BiPredicate<Flow.Subscriber<? super RoundEvent>, RoundEvent> dropCounter = this::countDrop;
+    private Player pickupPlayer;     // the player who picked up the table in the current round, or null
+    private int pickupCount;        // the number of cards picked up in the current round
 
     private int testCount;          // for control of the test func
 
@@ -27,10 +95,92 @@ public class WarCard {
      * Constructs a new WarCard object and initializes the game components.
      */
     WarCard() {
-        deck = new Deck();
-        playerCom = new Player("computer");
-        playerUser = new Player("you");
-        table = new ArrayList<>();
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Constructs a new WarCard object whose deck is shuffled by the given generator.
+     * @param random the generator used to shuffle the deck at the start of each game
+     */
+    WarCard(RandomGenerator random) {
+        this(MIN_PLAYERS, 1, random);
+    }
+
+    /**
+     * Constructs a new WarCard object for the given number of players and decks.
+     * @param playersCount the number of players, between {@link #MIN_PLAYERS} and {@link #MAX_PLAYERS}
+     * @param decksCount the number of standard decks in the shoe
+     */
+    WarCard(int playersCount, int decksCount) {
+        this(playersCount, decksCount, new SplittableRandom());
+    }
+
+    /**
+     * Constructs a new WarCard object for the given number of players and decks, played by the given rules.
+     * @param playersCount the number of players, between {@link #MIN_PLAYERS} and {@link #MAX_PLAYERS}
+     * @param decksCount the number of standard decks in the shoe
+     * @param rules the rules of the game
+     */
+    WarCard(int playersCount, int decksCount, Rules rules) {
+        this(playersCount, decksCount, new SplittableRandom(), rules);
+    }
+
+    /**
+     * Constructs a new WarCard object for the given number of players and decks,
+     * whose shoe is shuffled by the given generator.
+     * @param playersCount the number of players, between {@link #MIN_PLAYERS} and {@link #MAX_PLAYERS}
+     * @param decksCount the number of standard decks in the shoe
+     * @param random the generator used to shuffle the shoe at the start of each game
+     * @throws IllegalArgumentException if the number of players or decks is out of range
+     */
+    WarCard(int playersCount, int decksCount, RandomGenerator random) {
+        this(playersCount, decksCount, random, Rules.STANDARD);
+    }
+
+    /**
+     * Constructs a new WarCard object for the given number of players and decks, played by the given rules,
+     * whose shoe is shuffled by the given generator. <br>
+     * The rules are resolved here, once: their rank values, face-down cards and pickup order are kept
+     * in fields of the game, which the rounds read instead of asking the rules.
+     * @param playersCount the number of players, between {@link #MIN_PLAYERS} and {@link #MAX_PLAYERS}
+     * @param decksCount the number of standard decks in the shoe
+     * @param random the generator used to shuffle the shoe at the start of each game
+     * @param rules the rules of the game
+     * @throws IllegalArgumentException if the number of players or decks is out of range
+     */
+    WarCard(int playersCount, int decksCount, RandomGenerator random, Rules rules) {
+        if (playersCount < MIN_PLAYERS || playersCount > MAX_PLAYERS) {
+            throw new IllegalArgumentException("the number of players must be between "
+                    + MIN_PLAYERS + " and " + MAX_PLAYERS + ": " + playersCount);
+        }
+        deck = new Deck(decksCount, random);
+        this.rules = rules;
+        rankValues = rules.rankValues();
+        faceDownCards = rules.getFaceDownCards();
+        tableOrders = new Rules.TableOrder[playersCount];
+        Arrays.fill(tableOrders, rules.newTableOrder());
+        int capacity = deck.size();
+        players = new Player[playersCount];
+        for (int i = 0; i < playersCount; ++i) {
+            String name = (i == 0) ? "computer" : (i == 1) ? "you" : "player " + (i + 1);
+            players[i] = new Player(name, deck.getCardsByCode(), capacity);
+        }
+        playerCom = players[0];
+        playerUser = players[1];
+        table = new byte[capacity];
+        clearTable();
+
+        cards = new Card[playersCount];
+        participants = new int[playersCount];
+        drawnCodes = new int[playersCount];
+
+        cycleDetector = new CycleDetector(playersCount, capacity);
+        cycleDetection = rules.isDeterministic();
+        initialHands = new byte[playersCount][capacity];
+        initialSizes = new int[playersCount];
+
+        trailHashes = new long[64];
+        trailCounts = new int[3 * 64];
 
         testCount = 0;
     }
@@ -39,14 +189,140 @@ public class WarCard {
      * Starts a new game by clearing hands, shuffling the deck, and dealing cards to players.
      */
     public void startGame() {
-        playerCom.clearHand();
-        playerUser.clearHand();
-        table.clear();
+        resetGame();
+        deck.shuffle();
+        deck.dealCards(players);
+        saveInitialState();
+    }
+
+    /**
+     * Starts a new game whose deal is fully determined by the given seed,
+     * so the same seed always replays the same game.
+     * @param seed the seed of the shuffle
+     */
+    public void startGame(long seed) {
+        resetGame();
+        deck.reset();
+        deck.shuffle(new SplittableRandom(seed));
+        deck.dealCards(players);
+        for (Rules.TableOrder tableOrder : tableOrders) {
+            tableOrder.startGame(seed);
+        }
+        saveInitialState();
+    }
+
+    /**
+     * Starts a new game from the given hands, without shuffling or dealing.
+     * @param hands the codes of every player's cards, from top to bottom
+     * @param sizes the number of cards in every player's hand
+     */
+    void startGame(byte[][] hands, int[] sizes) {
+        resetGame();
+        for (int i = 0; i < players.length; ++i) {
+            players[i].addCodesToBottom(hands[i], 0, sizes[i]);
+        }
+        saveInitialState();
+    }
+
+    /**
+     * Starts a new game with one of the predefined test hands instead of a shuffled deck.
+     * @param request the index of the test to run, or a negative value to cycle through them
+     */
+    void startTestGame(int request) {
+        resetGame();
+        test(request);
+        saveInitialState();
+    }
+
+    /**
+     * Clears the hands and the table, and resets the counters that are collected along a single game.
+     */
+    private void resetGame() {
+        for (Player player : players) {
+            player.clearHand();
+        }
+        clearTable();
         insideWar = false;
+        faceDownRound = false;
 
-        deck.shuffle();
-//        deck.dealCards(playerCom, playerUser);
-        test(-1);
+        winner = null;
+        Arrays.fill(cards, null);
+        warCardsCount = -1;
+        roundsCount = 0;
+        warsCount = 0;
+        chainedWarsCount = 0;
+        warChain = 0;
+        longestWarChain = 0;
+
+        cycle = false;
+        cycleStartRound = -1;
+        cyclePeriod = 0;
+
+        trailSize = 0;
+        finishedFromCache = false;
+    }
+
+    /**
+     * Sets the cache in which the outcomes of finished games are stored, and from which
+     * a game that reaches a known state is finished at once.
+     * When a game is finished from the cache, the hands are left as they were in the cached state. <br>
+     * A cached outcome that would take the game past the rounds limit is ignored, and the game plays on,
+     * so a game that would be stopped at the limit without the cache is stopped there with it as well.
+     * @param cache the cache to use, or null to play every game to its end
+     * @param roundsLimit the number of rounds after which the game is stopped as unfinished by its caller
+     * @throws IllegalStateException if the game's rules are not deterministic
+     */
+    void setTranspositionCache(TranspositionCache cache, int roundsLimit) {
+        if (cache != null && !rules.isDeterministic()) {
+            throw new IllegalStateException("games of the rules " + rules + " cannot be finished from a cache");
+        }
+        this.cache = cache;
+        this.cacheRoundsLimit = roundsLimit;
+    }
+
+    /**
+     * Sets the order in which a single player picks up the table, instead of the order of the rules. <br>
+     * The state of a game does not include the players' pickup orders, so games of different orders
+     * must not share a transposition cache.
+     * @param player the index of the player
+     * @param policy the player's pickup policy
+     */
+    void setPickupPolicy(int player, PickupPolicy policy) {
+        tableOrders[player] = policy.newTableOrder();
+    }
+
+    /**
+     * Sets the metrics the game records its rounds, wars, pickups and hands into.
+     * @param metrics the metrics to record into, or null to stop recording
+     */
+    void setMetrics(EngineMetrics metrics) {
+        this.metrics = (metrics == null) ? null : metrics.newRecorder();
+    }
+
+    /**
+     * Stops the current game before its end, such as at a rounds limit, so the metrics of its rounds
+     * are recorded without waiting for the next game to be dealt.
+     */
+    void stopGame() {
+        if (metrics != null) {
+            metrics.stopGame();
+        }
+    }
+
+    /**
+     * Keeps the dealt hands, so the game can be replayed, and starts looking for cycles from them.
+     */
+    private void saveInitialState() {
+        int largestHand = 0;
+        for (int i = 0; i < players.length; ++i) {
+            initialSizes[i] = players[i].copyHand(initialHands[i]);
+            largestHand = Math.max(largestHand, initialSizes[i]);
+        }
+        resetParticipants();
+        cycleDetector.reset(players);
+        if (metrics != null) {
+            metrics.startGame(largestHand, smallestHand());
+        }
     }
 
     /**
@@ -54,130 +330,510 @@ public class WarCard {
      * @return true if another round should be executed, false otherwise
      */
     public boolean exeRound() {
+        roundsCount++;
+        pickupPlayer = null;
+        faceDownRound = insideWar;
+        long start = (metrics != null && metrics.sampleRound(roundsCount)) ? System.nanoTime() : 0;
         boolean res;
         if (insideWar) {
             res = updateWarStatus();
         } else {
             res = newBattle();
         }
+        if (start != 0) {
+            metrics.roundLatency(System.nanoTime() - start);
+        }
 
         if (!res){
             updateScore();
+            if (cache != null && !cycle) {
+                storeTrail();
+            }
+            if (metrics != null) {
+                metrics.endGame(this);
+            }
+        }
+        if (publisher != null) {
+            publishRoundEvents(res);
         }
         return res;
     }
 
+    /**
+     * Subscribes to the events of the game. Every subscriber has its own bounded buffer, and the game never
+     * waits for a slow subscriber to catch up with its rounds: while a subscriber's buffer is full, the round,
+     * war and pickup events are dropped for that subscriber alone, and the other subscribers still receive them.
+     * A slow subscriber therefore sees gaps in the round numbers, and should display or record the latest round
+     * it receives rather than count them. The end of a game is not dropped as easily: the game waits up to
+     * {@link #GAME_END_TIMEOUT_MILLIS} for room in the buffers of the subscribers that are behind, and drops it
+     * only for a subscriber that is still stuck after that. <br>
+     * Any subscriber may lose events this way, so a subscriber that must see every event - one that counts or
+     * records them - has to keep up with the game, and should check {@link #getDroppedEvents} to find out
+     * whether it did.
+     * @param subscriber the subscriber of the round events
+     */
+    public synchronized void subscribe(Flow.Subscriber<? super RoundEvent> subscriber) {
+        if (publisher == null) {
+            publisher = new SubmissionPublisher<>();
+        }
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Returns the number of events dropped for a subscriber because its buffer was full.
+     * @param subscriber the subscriber of the round events
+     * @return the number of events the subscriber lost, 0 for a subscriber that never lost any
+     */
+    public long getDroppedEvents(Flow.Subscriber<?> subscriber) {
+        AtomicLong dropped = droppedEvents.get(subscriber);
+        return (dropped != null) ? dropped.get() : 0;
+    }
+
+    /**
+     * Counts an event that was dropped for a subscriber, and gives up on it rather than retrying.
+     * @return false, so the publisher does not retry the event
+     */
+    private boolean countDrop(Flow.Subscriber<? super RoundEvent> subscriber, RoundEvent event) {
+        droppedEvents.computeIfAbsent(subscriber, s -> new AtomicLong()).incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the events of the game as a publisher, to be subscribed to.
+     * @return the publisher of the round events
+     */
+    public Flow.Publisher<RoundEvent> getEvents() {
+        return this::subscribe;
+    }
+
+    /**
+     * Completes the event stream of all the subscribers. No events are published after this call.
+     */
+    public synchronized void closeEvents() {
+        if (publisher != null) {
+            publisher.close();
+            publisher = null;
+        }
+    }
+
+    /**
+     * Publishes the events of the round that has just been executed: the round itself,
+     * then the pickup of the table, and then the end of the game.
+     * @param gameIsOn false if the round ended the game
+     */
+    private void publishRoundEvents(boolean gameIsOn) {
+        RoundEvent.Type type;
+        if (faceDownRound) {
+            type = RoundEvent.Type.FACE_DOWN_CARD;
+        } else if (warCardsCount == 0) {
+            type = RoundEvent.Type.WAR_START;
+        } else {
+            type = RoundEvent.Type.BATTLE;
+        }
+        Card[] roundCards = cards.clone();  // shared by the events of the round, which never change it
+        Player roundWinner = (pickupPlayer != null) ? pickupPlayer : winner;
+        publish(new RoundEvent(type, roundsCount, roundCards, roundWinner, warCardsCount, 0));
+
+        if (pickupPlayer != null) {
+            publish(new RoundEvent(RoundEvent.Type.PICKUP, roundsCount, roundCards,
+                    pickupPlayer, warCardsCount, pickupCount));
+        }
+        if (!gameIsOn) {
+            publish(new RoundEvent(RoundEvent.Type.GAME_END, roundsCount, roundCards,
+                    winner, warCardsCount, 0));
+        }
+    }
+
+    /**
+     * Offers an event to all the subscribers, without blocking on those whose buffers are full,
+     * except for a bounded wait for the end of a game. The events that do not fit are counted as dropped.
+     * @param event the event to publish
+     */
+    private void publish(RoundEvent event) {
+        SubmissionPublisher<RoundEvent> current = publisher;
+        if (current != null) {
+            if (event.getType() == RoundEvent.Type.GAME_END) {
+                current.offer(event, GAME_END_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, dropCounter);
+            } else {
+                current.offer(event, dropCounter);
+            }
+        }
+    }
+
     /**
      * Executes a battle round in the game.
      * Draw cards from players, determines the winner, and updates the game state accordingly.
      * @return true if another round should be executed, false otherwise
      */
     private boolean newBattle() {
-        if (!drawCardsFromPlayers()) {
-            return false;
+        boolean tableHoldsWar = tableSize > 0;   // the table still holds the cards of the previous war
+        int drawn = drawCardsFromPlayers();
+        if (drawn < 2) {
+            return settleShortBattle(drawn);
         }
 
-        if (cardCom.isEquals(cardUser)){ // war
+        int tied = resolveBattle();
+        if (tied > 1) { // war
+            if (tableHoldsWar) {
+                chainedWarsCount++;
+            }
+            warChain = tableHoldsWar ? warChain + 1 : 1;
+            longestWarChain = Math.max(longestWarChain, warChain);
+            participantsCount = tied;
+            warsCount++;
+            if (metrics != null) {
+                metrics.warStarted();
+            }
             winner = null;
             warCardsCount = 0;
             insideWar = true;
             return true;
         }
-        else{
-            if (cardCom.isGreater(cardUser)) { //computer won
-                moveCardFromTableToPlayer(playerCom);
-                winner = playerCom;
+
+        winner = players[participants[0]];
+        moveCardFromTableToPlayer(participants[0]);
+        warCardsCount = -1;
+        resetParticipants();
+        if (gameIsOver()) {
+            return false;
+        }
+        if (cache != null && finishFromCache()) {
+            return false;
+        }
+        return !(cycleDetection && detectCycle());
+    }
+
+    /**
+     * Finds the highest rank among the cards the participants have just drawn, in a single pass
+     * over their rank values. The participants who drew the highest rank are moved to the front
+     * of the participants, keeping their order.
+     * @return the number of participants who drew the highest rank - more than one means a war
+     */
+    private int resolveBattle() {
+        int best = -1;
+        int tied = 0;
+        for (int i = 0; i < participantsCount; ++i) {
+            int value = rankValues[drawnCodes[i]];
+            if (value > best) {
+                best = value;
+                tied = 0;
             }
-            else { //user won
-                moveCardFromTableToPlayer(playerUser);
-                winner = playerUser;
+            if (value == best) {
+                participants[tied++] = participants[i];
             }
-            warCardsCount = -1;
-            return !gameIsOver();
         }
+        return tied;
     }
 
     /**
-     * Updates the number of cards drawn from the 3 cards that are drawn in each war
+     * Ends a battle in which fewer than two of its participants could draw a card.
+     * The participant who still has cards (if there is one) picks up the table; if all of them ran out,
+     * the cards on the table are out of the game.
+     * @param drawn the number of participants who drew a card
      * @return true if another round should be executed, false otherwise
      */
-    private boolean updateWarStatus() {
-        boolean res = drawCardsFromPlayers();
-        warCardsCount++;
-        if (warCardsCount == 3) {
-            insideWar = false;
+    private boolean settleShortBattle(int drawn) {
+        if (drawn == 1) {
+            winner = players[participants[0]];
+            moveCardFromTableToPlayer(participants[0]);
+        } else {
+            winner = null;
+            clearTable();
         }
-        return res;
+        resetParticipants();
+        if (gameIsOver()) {
+            if (participantsCount == 1) { // the last player left wins, even if out of the battle
+                winner = players[participants[0]];
+            }
+            return false;
+        }
+        warCardsCount = -1;
+        insideWar = false;
+        return true;
     }
 
     /**
-     * Draws cards from both players for the round and move them to the table.
-     * If one of the players run out of cards, update the winner.
-     * @return true if both players have cards and the round can continue, false otherwise
+     * Makes every player that still holds cards a participant of the next battle.
      */
-    private boolean drawCardsFromPlayers() {
+    private void resetParticipants() {
+        participantsCount = 0;
+        for (int i = 0; i < players.length; ++i) {
+            if (!players[i].hasNoCards()) {
+                participants[participantsCount++] = i;
+            }
+        }
+    }
 
-        cardCom = playerCom.drawCard();
-        cardUser = playerUser.drawCard();
+    /**
+     * Looks up the current state in the transposition cache. If it is there, and its outcome is reached
+     * within the rounds limit, the game is finished with the cached outcome; otherwise the state is added
+     * to the game's trail, to be stored in the cache when the game ends.
+     * @return true if the game was finished from the cache, false otherwise
+     */
+    private boolean finishFromCache() {
+        long stateHash = getStateHash();
+        long value = cache.get(stateHash);
+        if (value == TranspositionCache.MISS || TranspositionCache.rounds(value) > cacheRoundsLimit - roundsCount) {
+            addToTrail(stateHash);
+            return false;
+        }
 
-        if (insideWar) {
-            faceDownCards(cardCom, cardUser);
+        roundsCount += TranspositionCache.rounds(value);
+        warsCount += TranspositionCache.wars(value);
+        chainedWarsCount += TranspositionCache.chainedWars(value);
+        int outcome = TranspositionCache.outcome(value);
+        winner = (outcome == TranspositionCache.TIE) ? null : players[outcome];
+        finishedFromCache = true;
+        return true;
+    }
+
+    /**
+     * Adds a state to the trail of the game, together with the counters at the time it was reached.
+     * @param stateHash the hash of the state
+     */
+    private void addToTrail(long stateHash) {
+        if (trailSize == trailHashes.length) {
+            trailHashes = Arrays.copyOf(trailHashes, 2 * trailSize);
+            trailCounts = Arrays.copyOf(trailCounts, 2 * trailCounts.length);
         }
+        trailHashes[trailSize] = stateHash;
+        trailCounts[3 * trailSize] = roundsCount;
+        trailCounts[3 * trailSize + 1] = warsCount;
+        trailCounts[3 * trailSize + 2] = chainedWarsCount;
+        trailSize++;
+    }
 
-        // if both have cards - round can exe
-        if (cardCom != null && cardUser != null) {
-            table.add(cardCom);
-            table.add(cardUser);
-            return true;
+    /**
+     * Stores the outcome of the game that has just ended for every state in its trail.
+     */
+    private void storeTrail() {
+        int winnerIndex = getWinnerIndex();
+        int outcome = (winnerIndex < 0) ? TranspositionCache.TIE : winnerIndex;
+        for (int i = 0; i < trailSize; ++i) {
+            cache.put(trailHashes[i], outcome,
+                    roundsCount - trailCounts[3 * i],
+                    warsCount - trailCounts[3 * i + 1],
+                    chainedWarsCount - trailCounts[3 * i + 2]);
         }
+        trailSize = 0;
+    }
 
-        // if both run out of card - tie
-        if (cardCom == null && cardUser == null) {
-            winner = null;
-        } else { // if only one of them run out of card - the second wins
-            winner = (cardCom != null) ? playerCom : playerUser;
-            moveCardFromTableToPlayer(winner);
+    /**
+     * Checks if the state after the last battle was already reached earlier in the game.
+     * If it was, the game will repeat itself forever, so it is stopped as a tie.
+     * @return true if the game entered a cycle, false otherwise
+     */
+    private boolean detectCycle() {
+        int battles = cycleDetector.step(players);
+        if (battles == 0) {
+            return false;
         }
-        return false;
+
+        cycle = true;
+        winner = null;
+        locateCycle(battles);
+        return true;
+    }
+
+    /**
+     * Finds the round in which the cycle starts and its length, by replaying the game twice:
+     * one replica runs the given number of battles ahead of the other, and both advance together
+     * until they reach the same state, which is the first state of the cycle.
+     * @param battles the number of battles in the cycle
+     */
+    private void locateCycle(int battles) {
+        WarCard first = replica();
+        WarCard second = replica();
+        for (int i = 0; i < battles; ++i) {
+            second.exeBattle();
+        }
+        while (!first.sameHands(second)) {
+            first.exeBattle();
+            second.exeBattle();
+        }
+        cycleStartRound = first.roundsCount;
+        cyclePeriod = second.roundsCount - first.roundsCount;
+    }
+
+    /**
+     * Deals the game of the given seed, and locates its cycle without playing the game up to it. <br>
+     * For engines that play the games on their own state, and detect the cycles themselves.
+     * @param seed the seed of the game's deal
+     * @param battles the number of battles in the cycle
+     */
+    void locateCycle(long seed, int battles) {
+        startGame(seed);
+        cycle = true;
+        winner = null;
+        locateCycle(battles);
+    }
+
+    /**
+     * Returns a new game that starts from the hands this game was dealt, and does not look for cycles.
+     * @return a replica of this game
+     */
+    private WarCard replica() {
+        WarCard replica = new WarCard(players.length, deck.getDecksCount(), rules);
+        System.arraycopy(tableOrders, 0, replica.tableOrders, 0, tableOrders.length);
+        replica.cycleDetection = false;
+        replica.startGame(initialHands, initialSizes);
+        return replica;
     }
 
     /**
-     * Moves cards from the table to a specified player's hand (which is the winner of the round)
+     * Executes rounds until the current battle is decided and the table is empty again.
+     */
+    private void exeBattle() {
+        do {
+            exeRound();
+        } while (insideWar || tableSize > 0);
+    }
+
+    /**
+     * Checks if all the players hold the same cards, in the same order, as in another game.
+     * @param other the game to compare with
+     * @return true if the hands of the two games are identical, false otherwise
+     */
+    private boolean sameHands(WarCard other) {
+        for (int i = 0; i < players.length; ++i) {
+            if (!players[i].handEquals(other.players[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Updates the number of cards drawn from the face-down cards that are drawn in each war
+     * @return true if another round should be executed, false otherwise
+     */
+    private boolean updateWarStatus() {
+        int drawn = drawCardsFromPlayers();
+        warCardsCount++;
+        if (drawn < 2) {
+            return settleShortBattle(drawn);
+        }
+        if (warCardsCount == faceDownCards) {
+            insideWar = false;
+        }
+        return true;
+    }
+
+    /**
+     * Draws a card from every participant of the battle and moves them to the table.
+     * The participants who run out of cards leave the battle, so only those who drew a card remain.
+     * @return the number of participants who drew a card
+     */
+    private int drawCardsFromPlayers() {
+        Arrays.fill(cards, null);
+        int drawn = 0;
+        for (int i = 0; i < participantsCount; ++i) {
+            int player = participants[i];
+            int code = players[player].drawCode();
+            if (code >= 0) {
+                cards[player] = deck.getCard(code);
+                participants[drawn] = player;
+                drawnCodes[drawn++] = code;
+                addToTable(code);
+            }
+        }
+        participantsCount = drawn;
+        return drawn;
+    }
+
+    /**
+     * Moves cards from the table to a specified player's hand (which is the winner of the round),
+     * in the player's pickup order
      *
-     * @param player the player to whom the cards are moved
+     * @param index the index of the player to whom the cards are moved
      */
-    private void moveCardFromTableToPlayer(Player player) {
-        while (table.size() > 0) {
-            player.addCardsToBottom(table.remove(0));
+    private void moveCardFromTableToPlayer(int index) {
+        Player player = players[index];
+        pickupPlayer = player;
+        pickupCount = tableSize;
+        tableOrders[index].arrange(table, tableSize);
+        player.addCodesToBottom(table, 0, tableSize);
+        if (metrics != null) {
+            metrics.pickup(tableSize, player.getHandSize(), smallestHand(), roundsCount);
         }
+        clearTable();
     }
 
     /**
-     * Sets the face-down state for the specified cards.
-     * @param cards The cards to set face-down.
+     * Returns the size of the smallest hand of the players who still hold cards.
+     * @return the size of the smallest hand, or 0 if no player holds cards
      */
-    private void faceDownCards(Card... cards) {
-        for (Card card : cards) {
-            if (card != null) {
-                card.setFaceDown();
+    private int smallestHand() {
+        int smallest = Integer.MAX_VALUE;
+        for (Player player : players) {
+            if (!player.hasNoCards()) {
+                smallest = Math.min(smallest, player.getHandSize());
             }
         }
+        return (smallest == Integer.MAX_VALUE) ? 0 : smallest;
     }
 
     /**
-     * Increases the score of the winner of the game, or for both in a tie.
+     * Puts a card on the table, after the cards that are already there.
+     * @param code the code of the card
      */
-    private void updateScore(){
-        if (winner == playerCom || winner == null){
-            playerCom.incScore();
+    private void addToTable(int code) {
+        table[tableSize++] = (byte) code;
+        tableHash += Zobrist.key(code) * tablePower;
+        tablePower *= Zobrist.BASE;
+    }
+
+    /**
+     * Removes all the cards from the table.
+     */
+    private void clearTable() {
+        tableSize = 0;
+        tableHash = 0;
+        tablePower = 1;
+    }
+
+    /**
+     * Returns a 64-bit hash of the whole state of the game: the hands, the table, the war status
+     * and the players taking part in the current battle.
+     * The hands and the table keep their hashes up to date with every card they gain or lose,
+     * so the state hash is computed in time linear in the number of players, whatever their hands hold.
+     * Identical states always have the same hash.
+     *
+     * @return the hash of the current state
+     */
+    long getStateHash() {
+        long hash = 0;
+        for (Player player : players) {
+            // mixed after every hand: the hand hashes are polynomials in Zobrist.BASE, and combining them
+            // linearly with a power of it lets a card moved between two hands keep the same sum
+            hash = (hash + player.getHandHash()) * 0xbf58476d1ce4e5b9L;
+            hash ^= hash >>> 31;
+        }
+        long participantsMask = 0;
+        for (int i = 0; i < participantsCount; ++i) {
+            participantsMask |= 1L << participants[i];
         }
-        if (winner == playerUser || winner == null){
-            playerUser.incScore();
+        hash += tableHash * 0x94d049bb133111ebL
+                + participantsMask * 0xd6e8feb86659fd93L
+                + (insideWar ? 8 : 0) + warCardsCount + 1;
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * Increases the score of the winner of the game, or for all the players in a tie.
+     */
+    private void updateScore(){
+        for (Player player : players) {
+            if (winner == player || winner == null) {
+                player.incScore();
+            }
         }
     }
 
     /**
-     * Checks if the last round was part of war (the first or one of the extra 3 faced down cards)
+     * Checks if the last round was part of war (the first or one of the extra faced down cards)
      *
      * @return True if the last round wss inside a war, false otherwise.
      */
@@ -186,12 +842,23 @@ public class WarCard {
     }
 
     /**
-     * Checks if the game is over.
+     * Checks if the cards of the current round were drawn face down, as the war cards that are drawn
+     * between the tie and the next battle. The cards themselves are shared by all the games, so they
+     * do not know how they were drawn.
+     *
+     * @return true if the cards of the current round are facing down, false otherwise
+     */
+    public boolean isFaceDownRound() {
+        return faceDownRound;
+    }
+
+    /**
+     * Checks if the game is over. Must be called right after {@link #resetParticipants()}.
      *
-     * @return true if one of the players have no cards, false otherwise
+     * @return true if at most one of the players has cards, false otherwise
      */
     private boolean gameIsOver() {
-        return playerUser.hasNoCards() || playerCom.hasNoCards();
+        return participantsCount <= 1;
     }
 
     /**
@@ -199,7 +866,11 @@ public class WarCard {
      * @return string representation of the table
      */
     public String getTable() {
-        return table.toString();
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        for (int i = 0; i < tableSize; ++i) {
+            joiner.add(deck.getCard(table[i]).toString());
+        }
+        return joiner.toString();
     }
 
     /**
@@ -207,7 +878,7 @@ public class WarCard {
      *
      * The count includes:
      * - 0: The initial round that caused the war.
-     * - 1, 2, 3: The three additional cards drawn during the war.
+     * - 1 up to the face-down cards of the rules (3 by default): The additional cards drawn during the war.
      *
      * @return The count of additional cards drawn in the current war.
      */
@@ -239,7 +910,7 @@ public class WarCard {
      * @return the user's card
      */
     public Card getCardUser() {
-        return cardUser;
+        return cards[1];
     }
 
     /**
@@ -248,7 +919,128 @@ public class WarCard {
      * @return the computer's card
      */
     public Card getCardCom() {
-        return cardCom;
+        return cards[0];
+    }
+
+    /**
+     * Returns the number of players in the game.
+     *
+     * @return the number of players
+     */
+    public int getPlayersCount() {
+        return players.length;
+    }
+
+    /**
+     * Returns a player of the game. Player 0 is the computer and player 1 is the user.
+     *
+     * @param index the index of the player
+     * @return the player
+     */
+    public Player getPlayer(int index) {
+        return players[index];
+    }
+
+    /**
+     * Returns the card drawn by a player in the current round.
+     *
+     * @param index the index of the player
+     * @return the player's card, or null if the player did not draw a card in the round
+     */
+    public Card getCard(int index) {
+        return cards[index];
+    }
+
+    /**
+     * Returns the number of standard decks in the shoe the game is dealt from.
+     *
+     * @return the number of decks
+     */
+    public int getDecksCount() {
+        return deck.getDecksCount();
+    }
+
+    /**
+     * Returns the rules the game is played by.
+     *
+     * @return the rules of the game
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the number of rounds executed since the game started.
+     *
+     * @return the number of rounds
+     */
+    public int getRoundsCount() {
+        return roundsCount;
+    }
+
+    /**
+     * Returns the number of wars that broke out since the game started.
+     *
+     * @return the number of wars
+     */
+    public int getWarsCount() {
+        return warsCount;
+    }
+
+    /**
+     * Returns the number of wars that broke out while the cards of a previous war
+     * were still on the table (a war that ended with another tie).
+     *
+     * @return the number of chained wars
+     */
+    public int getChainedWarsCount() {
+        return chainedWarsCount;
+    }
+
+    /**
+     * Returns the most wars that broke out one after the other in a single battle. <br>
+     * A game finished from the transposition cache counts only the battles it actually played.
+     *
+     * @return the length of the longest chain of wars, or 0 if no war broke out
+     */
+    public int getLongestWarChain() {
+        return longestWarChain;
+    }
+
+    /**
+     * Checks if the game was stopped because it entered a cycle and would never end.
+     *
+     * @return true if the game repeats itself forever, false otherwise
+     */
+    public boolean isCycle() {
+        return cycle;
+    }
+
+    /**
+     * Returns the number of rounds played before the game entered its cycle.
+     *
+     * @return the round after which the cycle starts, or -1 if the game has no cycle
+     */
+    public int getCycleStartRound() {
+        return cycleStartRound;
+    }
+
+    /**
+     * Returns the number of rounds in a single repetition of the cycle.
+     *
+     * @return the period of the cycle, or 0 if the game has no cycle
+     */
+    public int getCyclePeriod() {
+        return cyclePeriod;
+    }
+
+    /**
+     * Checks if the end of the game was taken from the transposition cache instead of being played.
+     *
+     * @return true if the game was finished from the cache, false otherwise
+     */
+    public boolean isFinishedFromCache() {
+        return finishedFromCache;
     }
 
     /**
@@ -260,6 +1052,20 @@ public class WarCard {
         return winner;
     }
 
+    /**
+     * Returns the index of the winner of the current round, or of the game if it ended.
+     *
+     * @return the index of the winning player, or -1 if there is none
+     */
+    int getWinnerIndex() {
+        for (int i = 0; i < players.length; ++i) {
+            if (players[i] == winner) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
 
 
 
@@ -270,50 +1076,50 @@ public class WarCard {
         // user win
         if ((testCount % numOftest == 0 && request < 0) || request == 0) {
             System.out.println("user win test");
-            playerCom.addCardsToBottom(new Card(Rank.TWO));
-            playerUser.addCardsToBottom(new Card(Rank.ACE));
+            playerCom.addCardsToBottom(Card.of(Rank.TWO));
+            playerUser.addCardsToBottom(Card.of(Rank.ACE));
         }
 
         // tie in the start of war
         else if ((testCount % numOftest == 1 && request < 0) || request == 1) {
             System.out.println("tie in the start of war test");
-            playerCom.addCardsToBottom(new Card(Rank.THREE));
-            playerUser.addCardsToBottom(new Card(Rank.THREE));
+            playerCom.addCardsToBottom(Card.of(Rank.THREE));
+            playerUser.addCardsToBottom(Card.of(Rank.THREE));
         }
 
         // tie in the middle of war
         else if ((testCount % numOftest == 2 && request < 0) || request == 2) {
             System.out.println("tie in the middle of war test");
-            playerCom.addCardsToBottom(new Card(Rank.TWO), new Card(Rank.TWO));
-            playerUser.addCardsToBottom(new Card(Rank.TWO), new Card(Rank.ACE));
+            playerCom.addCardsToBottom(Card.of(Rank.TWO), Card.of(Rank.TWO));
+            playerUser.addCardsToBottom(Card.of(Rank.TWO), Card.of(Rank.ACE));
         }
 
         // computer wins in the middle of a war (in the first card) test
         else if ((testCount % numOftest == 3 && request < 0) || request == 3) {
             System.out.println("computer wins in the middle of a war (in the first card) test");
-            playerCom.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE), new Card(Rank.TWO), new Card(Rank.THREE));
-            playerUser.addCardsToBottom(new Card(Rank.FOUR));
+            playerCom.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE), Card.of(Rank.TWO), Card.of(Rank.THREE));
+            playerUser.addCardsToBottom(Card.of(Rank.FOUR));
         }
 
         // computer wins in the middle of a war (in the second card) test
         else if ((testCount % numOftest == 4 && request < 0) || request == 4) {
             System.out.println("computer wins in the middle of a war (in the second card) test");
-            playerCom.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE), new Card(Rank.TWO), new Card(Rank.THREE));
-            playerUser.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE));
+            playerCom.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE), Card.of(Rank.TWO), Card.of(Rank.THREE));
+            playerUser.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE));
         }
 
         // computer win in the middle of a war (in the third card) test
         else if ((testCount % numOftest == 5 && request < 0) || request == 5) {
             System.out.println("computer win in the middle of a war (in the third card) test ");
-            playerCom.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE), new Card(Rank.TWO), new Card(Rank.THREE));
-            playerUser.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE), new Card(Rank.ACE));
+            playerCom.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE), Card.of(Rank.TWO), Card.of(Rank.THREE));
+            playerUser.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE), Card.of(Rank.ACE));
         }
 
         // computer win in the start of a new war after war test
         else if ((testCount % numOftest == 6 && request < 0) || request == 6) {
             System.out.println("computer win in the start of a new war after war test");
-            playerCom.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE), new Card(Rank.TWO), new Card(Rank.ACE), new Card(Rank.ACE));
-            playerUser.addCardsToBottom(new Card(Rank.FOUR), new Card(Rank.ACE), new Card(Rank.ACE), new Card(Rank.ACE));
+            playerCom.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE), Card.of(Rank.TWO), Card.of(Rank.ACE), Card.of(Rank.ACE));
+            playerUser.addCardsToBottom(Card.of(Rank.FOUR), Card.of(Rank.ACE), Card.of(Rank.ACE), Card.of(Rank.ACE));
         }
 
         if (request < 0) {
@@ -0,0 +1,29 @@
+package WarCard;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The WarFinishedEvent class is a JDK Flight Recorder event committed when the table of a war is
+ * picked up, in games that are instrumented by {@link EngineMetrics}. Its duration spans the war,
+ * from the tie that started it to the pickup.
+ */
+@Name("WarCard.WarFinished")
+@Label("War Finished")
+@Category("War Card Game")
+@Description("A war that was decided and picked up")
+class WarFinishedEvent extends jdk.jfr.Event {
+
+    @Label("Depth")
+    @Description("The number of wars that broke out one after the other before the battle was decided")
+    int depth;
+
+    @Label("Cards")
+    @Description("The number of cards picked up from the table")
+    int cards;
+
+    @Label("Round")
+    int round;
+}
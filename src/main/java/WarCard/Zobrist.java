@@ -0,0 +1,53 @@
+package WarCard;
+
+import java.util.SplittableRandom;
+
+/**
+ * The Zobrist class holds the random keys used to hash sequences of cards incrementally. <br>
+ * A sequence c<sub>0</sub>, c<sub>1</sub>, ... (top first) is hashed as
+ * KEY[c<sub>0</sub>] + KEY[c<sub>1</sub>]&middot;BASE + KEY[c<sub>2</sub>]&middot;BASE<sup>2</sup> + ...
+ * (modulo 2<sup>64</sup>), so adding a card at either end, or removing the top card, updates the hash
+ * in constant time. BASE is odd, so it has an inverse modulo 2<sup>64</sup> that shifts the hash
+ * back by one position when the top card is removed.
+ */
+final class Zobrist {
+
+    /** The multiplier between two consecutive positions in a sequence. */
+    static final long BASE = 0x9e3779b97f4a7c15L;
+
+    /** The inverse of {@link #BASE} modulo 2<sup>64</sup>. */
+    static final long BASE_INVERSE = inverse(BASE);
+
+    private static final long[] KEYS = new long[Card.CODES_COUNT];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5eed_ca2dL);   // fixed, so hashes are stable between runs
+        for (int code = 0; code < KEYS.length; ++code) {
+            KEYS[code] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Returns the random key of a card.
+     * @param code the code of the card
+     * @return the key of the card
+     */
+    static long key(int code) {
+        return KEYS[code];
+    }
+
+    /**
+     * Returns the inverse of an odd number modulo 2<sup>64</sup>, using Newton's iteration
+     * (every iteration doubles the number of correct low bits).
+     */
+    private static long inverse(long odd) {
+        long inverse = odd;     // correct in the lowest 3 bits
+        for (int i = 0; i < 5; ++i) {
+            inverse *= 2 - odd * inverse;
+        }
+        return inverse;
+    }
+}
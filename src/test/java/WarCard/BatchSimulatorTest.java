@@ -0,0 +1,39 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSimulatorTest {
+
+    private static final long GAMES = 10_000;     // several tasks of Simulator, merged in a tree
+    private static final long SEED = 42;
+
+    @Test
+    void batchResultIsTheResultOfSimulator() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SimulationResult scalar = new Simulator(pool, Simulator.DEFAULT_MAX_ROUNDS, null).run(GAMES, SEED);
+        SimulationResult batch = new BatchSimulator(pool, Simulator.DEFAULT_MAX_ROUNDS, 256).run(GAMES, SEED);
+        assertTrue(scalar.getCycles() > 0);
+        assertEquals(bytes(scalar), bytes(batch));
+        assertEquals(scalar.toString(), batch.toString());
+    }
+
+    @Test
+    void gamesStoppedAtTheRoundsLimitMatchSimulator() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SimulationResult scalar = new Simulator(pool, 300, null).run(3000, SEED);
+        SimulationResult batch = new BatchSimulator(pool, 300, 64).run(3000, SEED);
+        assertTrue(scalar.getUnfinished() > 0);
+        assertEquals(bytes(scalar), bytes(batch));
+    }
+
+    private static ByteBuffer bytes(SimulationResult result) {
+        ByteBuffer buffer = ByteBuffer.allocate(CheckpointFile.DEFAULT_SLOT_SIZE);
+        result.writeTo(buffer);
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,79 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitPackingTest {
+
+    private static final int COUNT = 200;   // not a multiple of 64, so values of most widths straddle two words
+
+    @Test
+    void widthCoversTheDistanceFromTheMinimum() {
+        assertEquals(0, BitPacking.width(7, 7));
+        assertEquals(1, BitPacking.width(-1, 0));
+        assertEquals(63, BitPacking.width(0, Long.MAX_VALUE));
+        assertEquals(64, BitPacking.width(-1, Long.MAX_VALUE));
+        assertEquals(64, BitPacking.width(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void roundTripOfWidth0() {
+        roundTrip(0, 42);
+        roundTrip(0, Long.MIN_VALUE);
+    }
+
+    @Test
+    void roundTripOfWidth1() {
+        roundTrip(1, -1);
+        roundTrip(1, Long.MAX_VALUE - 1);
+    }
+
+    @Test
+    void roundTripOfWidth63() {
+        roundTrip(63, -12345);
+        roundTrip(63, Long.MIN_VALUE);
+    }
+
+    @Test
+    void roundTripOfWidth64() {
+        roundTrip(64, Long.MIN_VALUE);
+    }
+
+    @Test
+    void roundTripOfEveryWidth() {
+        for (int width = 0; width <= 64; ++width) {
+            roundTrip(width, -(1L << 20));
+        }
+    }
+
+    /**
+     * Packs values of the given width from the given minimum, including the minimum and the largest
+     * distance, and unpacks them one by one and as a block.
+     */
+    private static void roundTrip(int width, long min) {
+        long maxDistance = (width == 64) ? -1L : (1L << width) - 1;
+        SplittableRandom random = new SplittableRandom(width);
+        long[] values = new long[COUNT];
+        for (int i = 0; i < COUNT; ++i) {
+            values[i] = min + (random.nextLong() & maxDistance);
+        }
+        values[0] = min;
+        values[COUNT / 2] = min + maxDistance;      // straddles a word boundary for widths that do not divide 64
+        values[COUNT - 1] = min + maxDistance;
+        assertEquals(width, BitPacking.width(min, min + maxDistance));
+
+        long[] words = new long[BitPacking.words(COUNT, width)];
+        assertEquals(((long) COUNT * width + 63) / 64, words.length);
+        BitPacking.pack(values, COUNT, min, width, words);
+
+        for (int i = 0; i < COUNT; ++i) {
+            assertEquals(values[i], BitPacking.unpack(words, i, min, width), "width " + width + ", value " + i);
+        }
+        long[] unpacked = new long[COUNT];
+        BitPacking.unpack(words, COUNT, min, width, unpacked);
+        assertArrayEquals(values, unpacked, "width " + width);
+    }
+}
@@ -0,0 +1,155 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckpointFileTest {
+
+    private static final int SLOT_SIZE = 64;
+    private static final int HEADER_SIZE = 8;           // the magic, the version and the padding
+    private static final int SLOT_HEADER_SIZE = 16;     // the sequence number, the length and the CRC
+    private static final int PAYLOAD_OFFSET = SLOT_HEADER_SIZE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void newFileHasNoCheckpoint() throws IOException {
+        try (CheckpointFile file = new CheckpointFile(dir.resolve("a.ckp"), SLOT_SIZE)) {
+            assertNull(file.load());
+            assertEquals(SLOT_SIZE - SLOT_HEADER_SIZE, file.getCapacity());
+        }
+    }
+
+    @Test
+    void reopenedFileLoadsTheLatestCommit() throws IOException {
+        Path path = dir.resolve("a.ckp");
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            file.commit(payload("first"));
+            file.commit(payload("second"));
+            file.commit(payload("third"));
+            assertEquals("third", text(file.load()));
+        }
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            assertEquals("third", text(file.load()));
+        }
+    }
+
+    @Test
+    void corruptPayloadOfNewerSlotFallsBackToOlder() throws IOException {
+        Path path = twoCommits();
+        flipByte(path, slotOffset(1) + PAYLOAD_OFFSET + 2);
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            assertEquals("older", text(file.load()));
+        }
+    }
+
+    @Test
+    void corruptChecksumOfNewerSlotFallsBackToOlder() throws IOException {
+        Path path = twoCommits();
+        flipByte(path, slotOffset(1) + Long.BYTES + Integer.BYTES);
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            assertEquals("older", text(file.load()));
+        }
+    }
+
+    @Test
+    void tornWriteOfNewerSlotFallsBackToOlder() throws IOException {
+        Path path = twoCommits();
+        // a third commit over the older slot, which stopped before its payload and checksum were all written
+        ByteBuffer header = ByteBuffer.allocate(SLOT_HEADER_SIZE).putLong(3).putInt(9).putInt(0x12345678).flip();
+        write(path, slotOffset(0), header);
+        write(path, slotOffset(0) + PAYLOAD_OFFSET, payload("torn"));
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            assertEquals("newer", text(file.load()));
+        }
+    }
+
+    @Test
+    void commitAfterFallbackReplacesTheCorruptSlot() throws IOException {
+        Path path = twoCommits();
+        flipByte(path, slotOffset(1) + PAYLOAD_OFFSET);
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            file.commit(payload("replacement"));
+        }
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            assertEquals("replacement", text(file.load()));
+        }
+    }
+
+    @Test
+    void bothSlotsCorruptLoadsNothing() throws IOException {
+        Path path = twoCommits();
+        flipByte(path, slotOffset(0) + PAYLOAD_OFFSET);
+        flipByte(path, slotOffset(1) + PAYLOAD_OFFSET);
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            assertNull(file.load());
+        }
+    }
+
+    @Test
+    void oversizedPayloadIsRejected() throws IOException {
+        try (CheckpointFile file = new CheckpointFile(dir.resolve("a.ckp"), SLOT_SIZE)) {
+            assertThrows(IllegalArgumentException.class,
+                    () -> file.commit(ByteBuffer.allocate(file.getCapacity() + 1)));
+        }
+    }
+
+    @Test
+    void otherFileIsRejected() throws IOException {
+        Path path = dir.resolve("other.ckp");
+        Files.write(path, new byte[HEADER_SIZE + 2 * SLOT_SIZE]);
+        assertThrows(IOException.class, () -> new CheckpointFile(path, SLOT_SIZE));
+    }
+
+    /**
+     * Creates a file whose older slot holds "older" and whose newer slot holds "newer".
+     */
+    private Path twoCommits() throws IOException {
+        Path path = dir.resolve("two.ckp");
+        try (CheckpointFile file = new CheckpointFile(path, SLOT_SIZE)) {
+            file.commit(payload("older"));
+            file.commit(payload("newer"));
+        }
+        return path;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static ByteBuffer payload(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static void flipByte(Path path, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) ~b.get(0));
+            channel.write(b.rewind(), position);
+        }
+    }
+
+    private static void write(Path path, long position, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnarResultsTest {
+
+    private static final int ROWS = 5 * ColumnarResultsWriter.BLOCK_ROWS + 1234;
+    private static final int COLUMNS = ColumnarResultsWriter.COLUMNS;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void bloomFilterHasNoFalseNegatives() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int count : new int[] {1, 7, 100, ColumnarResultsWriter.BLOCK_ROWS}) {
+            long[] seeds = random.longs(count).toArray();
+            long[] bloom = ColumnarResultsWriter.bloomFilter(seeds, count);
+            for (long seed : seeds) {
+                assertTrue(ColumnarResultsWriter.mayContain(bloom, seed), "seed " + seed + " of " + count);
+            }
+        }
+    }
+
+    @Test
+    void unclusteredQueriesMatchScan() throws IOException {
+        checkQueries(null);
+    }
+
+    @Test
+    void queriesClusteredByWinnerMatchScan() throws IOException {
+        checkQueries(ResultColumn.WINNER);
+    }
+
+    @Test
+    void queriesClusteredByRoundsMatchScan() throws IOException {
+        checkQueries(ResultColumn.ROUNDS);
+    }
+
+    @Test
+    void queriesClusteredBySeedMatchScan() throws IOException {
+        checkQueries(ResultColumn.SEED);
+    }
+
+    @Test
+    void clusteredRowsAreSortedByTheirColumn() throws IOException {
+        long[][] rows = randomRows();
+        Path path = write(rows, ResultColumn.WINNER);
+        try (ColumnarResults results = new ColumnarResults(path)) {
+            long previous = Long.MIN_VALUE;
+            for (long row = 0; row < results.size(); ++row) {
+                long winner = results.get(ResultColumn.WINNER, row);
+                assertTrue(winner >= previous, "row " + row + " has winner " + winner + " after " + previous);
+                previous = winner;
+            }
+        }
+    }
+
+    /**
+     * Writes random rows clustered by the given column, and checks queries, seed lookups and single values
+     * against a scan of the rows in the order they should have been written in.
+     */
+    private void checkQueries(ResultColumn clusterColumn) throws IOException {
+        long[][] rows = randomRows();
+        Path path = write(rows, clusterColumn);
+        long[][] fileRows = fileOrder(rows, clusterColumn);
+
+        try (ColumnarResults results = new ColumnarResults(path)) {
+            assertEquals(ROWS, results.size());
+            assertEquals((ROWS + ColumnarResultsWriter.BLOCK_ROWS - 1) / ColumnarResultsWriter.BLOCK_ROWS,
+                    results.getBlocksCount());
+
+            checkQuery(results.query(), fileRows, row -> true);
+            checkQuery(results.query().equalTo(ResultColumn.WINNER, -1), fileRows,
+                    row -> row[ResultColumn.WINNER.ordinal()] == -1);
+            checkQuery(results.query().atLeast(ResultColumn.ROUNDS, 5001).equalTo(ResultColumn.WINNER, 0)
+                            .equalTo(ResultColumn.FLAGS, 0), fileRows,
+                    row -> row[ResultColumn.ROUNDS.ordinal()] >= 5001 && row[ResultColumn.WINNER.ordinal()] == 0
+                            && row[ResultColumn.FLAGS.ordinal()] == 0);
+            checkQuery(results.query().atLeast(ResultColumn.LONGEST_WAR_CHAIN, 4), fileRows,
+                    row -> row[ResultColumn.LONGEST_WAR_CHAIN.ordinal()] >= 4);
+            checkQuery(results.query().range(ResultColumn.ROUNDS, 100, 200).range(ResultColumn.WARS, 5, 10), fileRows,
+                    row -> row[ResultColumn.ROUNDS.ordinal()] >= 100 && row[ResultColumn.ROUNDS.ordinal()] <= 200
+                            && row[ResultColumn.WARS.ordinal()] >= 5 && row[ResultColumn.WARS.ordinal()] <= 10);
+            checkQuery(results.query().range(ResultColumn.SEED, Long.MIN_VALUE, 0), fileRows,
+                    row -> row[ResultColumn.SEED.ordinal()] <= 0);
+            checkQuery(results.query().equalTo(ResultColumn.ROUNDS, 20_000), fileRows, row -> false);
+
+            for (int row = 0; row < ROWS; row += 97) {
+                long seed = fileRows[row][ResultColumn.SEED.ordinal()];
+                assertEquals(row, results.findRow(seed), "seed " + seed);
+                for (ResultColumn column : ResultColumn.values()) {
+                    assertEquals(fileRows[row][column.ordinal()], results.get(column, row), column + " of row " + row);
+                }
+            }
+            Set<Long> seeds = new HashSet<>();
+            for (long[] row : fileRows) {
+                seeds.add(row[ResultColumn.SEED.ordinal()]);
+            }
+            SplittableRandom random = new SplittableRandom(2);
+            for (int i = 0; i < 1000; ++i) {
+                long seed = random.nextLong();
+                if (!seeds.contains(seed)) {
+                    assertEquals(-1, results.findRow(seed), "seed " + seed);
+                }
+            }
+        }
+    }
+
+    private static void checkQuery(ColumnarResults.Query query, long[][] fileRows, Predicate<long[]> matches)
+            throws IOException {
+        long[] expected = Arrays.stream(fileRows).filter(matches).mapToLong(row -> row[ResultColumn.SEED.ordinal()])
+                .toArray();
+        assertEquals(expected.length, query.count());
+        assertArrayEquals(expected, query.seeds());
+    }
+
+    /**
+     * Returns random rows, each an array of the values of the columns. The seeds are distinct.
+     */
+    private static long[][] randomRows() {
+        SplittableRandom random = new SplittableRandom(42);
+        long[][] rows = new long[ROWS][COLUMNS];
+        long[] seeds = random.longs().distinct().limit(ROWS).toArray();
+        for (int i = 0; i < ROWS; ++i) {
+            long[] row = rows[i];
+            int winner = random.nextInt(-1, 2);
+            int rounds = (random.nextInt(10) == 0) ? random.nextInt(5000, 10_000) : random.nextInt(1, 2000);
+            row[ResultColumn.SEED.ordinal()] = seeds[i];
+            row[ResultColumn.WINNER.ordinal()] = winner;
+            row[ResultColumn.ROUNDS.ordinal()] = rounds;
+            row[ResultColumn.WARS.ordinal()] = random.nextInt(rounds / 10 + 1);
+            row[ResultColumn.LONGEST_WAR_CHAIN.ordinal()] = random.nextInt(6);
+            row[ResultColumn.FLAGS.ordinal()] = (winner >= 0) ? 0
+                    : random.nextBoolean() ? ResultStore.CYCLE : ResultStore.UNFINISHED;
+        }
+        return rows;
+    }
+
+    private Path write(long[][] rows, ResultColumn clusterColumn) throws IOException {
+        Path path = dir.resolve("results-" + clusterColumn + ".wcol");
+        try (ColumnarResultsWriter writer = new ColumnarResultsWriter(path, clusterColumn)) {
+            for (long[] row : rows) {
+                writer.append(row[ResultColumn.SEED.ordinal()], (int) row[ResultColumn.WINNER.ordinal()],
+                        (int) row[ResultColumn.ROUNDS.ordinal()], (int) row[ResultColumn.WARS.ordinal()],
+                        (int) row[ResultColumn.LONGEST_WAR_CHAIN.ordinal()], (int) row[ResultColumn.FLAGS.ordinal()]);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returns the rows in the order the writer keeps them: all of them fit in one cluster, so they are
+     * sorted by the cluster column (the seeds by their high 32 bits), keeping the appended order of equal values.
+     */
+    private static long[][] fileOrder(long[][] rows, ResultColumn clusterColumn) {
+        if (clusterColumn == null) {
+            return rows;
+        }
+        int c = clusterColumn.ordinal();
+        Comparator<Integer> byValue = Comparator.comparingLong(
+                i -> (clusterColumn == ResultColumn.SEED) ? rows[i][c] >> 32 : rows[i][c]);
+        return IntStream.range(0, rows.length).boxed().sorted(byValue.thenComparing(i -> i))
+                .map(i -> rows[i]).toArray(long[][]::new);
+    }
+}
@@ -0,0 +1,137 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CycleDetectorTest {
+
+    private static final int SEEDS = 2000;
+    private static final int MAX_ROUNDS = 100_000;
+
+    @Test
+    void detectsThePeriodOfAKnownSequenceOfStates() {
+        for (int start = 0; start <= 9; ++start) {
+            for (int period = 1; period <= 12; ++period) {
+                checkSequence(start, period);
+            }
+        }
+    }
+
+    @Test
+    void neverReportsAStateSequenceWithoutRepetition() {
+        Player[] players = players();
+        CycleDetector detector = new CycleDetector(players.length, Card.CODES_COUNT);
+        setState(players, 0);
+        detector.reset(players);
+        for (int state = 1; state < 1000; ++state) {
+            setState(players, state);
+            assertEquals(0, detector.step(players), "state " + state);
+        }
+    }
+
+    @Test
+    void locatesTheCyclesOfSeededGames() {
+        WarCard warCard = new WarCard(WarCard.MIN_PLAYERS, 1);
+        int cycles = 0;
+        for (long seed = 0; seed < SEEDS; ++seed) {
+            int[] expected = playAndFindFirstRepeat(warCard, seed);
+            assertEquals(expected != null, warCard.isCycle(), "seed " + seed);
+            if (expected != null) {
+                cycles++;
+                assertEquals(expected[0], warCard.getCycleStartRound(), "cycle start of seed " + seed);
+                assertEquals(expected[1], warCard.getCyclePeriod(), "cycle period of seed " + seed);
+                assertNull(warCard.getWinner(), "seed " + seed);
+            }
+        }
+        assertTrue(cycles > 0, "no cyclic game among the first " + SEEDS + " seeds");
+    }
+
+    /**
+     * Feeds a detector with {@code start} distinct states followed by a cycle of {@code period} states,
+     * and checks that it reports the period once the cycle has repeated, and not before the first repetition.
+     */
+    private static void checkSequence(int start, int period) {
+        Player[] players = players();
+        CycleDetector detector = new CycleDetector(players.length, Card.CODES_COUNT);
+        setState(players, stateAt(0, start, period));
+        detector.reset(players);
+        for (int step = 1; step < 4 * (start + period) + 4; ++step) {
+            setState(players, stateAt(step, start, period));
+            int found = detector.step(players);
+            if (found != 0) {
+                assertTrue(step >= start + period, "reported before a state repeated, start " + start);
+                assertEquals(period, found, "start " + start + ", period " + period);
+                return;
+            }
+        }
+        fail("no cycle found, start " + start + ", period " + period);
+    }
+
+    /**
+     * Returns the number of the state seen at a step of a sequence that enters a cycle after its start.
+     */
+    private static int stateAt(int step, int start, int period) {
+        return (step < start) ? 1000 + step : (step - start) % period;
+    }
+
+    private static Player[] players() {
+        return new Player[] {new Player("a", Card.byCode(), Card.CODES_COUNT),
+                new Player("b", Card.byCode(), Card.CODES_COUNT)};
+    }
+
+    /**
+     * Sets the hands of the players to a state of its own for every number: the digits of the number,
+     * as card codes, split between the two hands.
+     */
+    private static void setState(Player[] players, int state) {
+        for (Player player : players) {
+            player.clearHand();
+        }
+        String digits = Integer.toString(state);
+        for (int i = 0; i < digits.length(); ++i) {
+            players[i % 2].addCodeToBottom(digits.charAt(i) - '0');
+        }
+        players[1].addCodeToBottom(Card.CODES_COUNT - 1);     // so the second hand is never empty
+    }
+
+    /**
+     * Plays a seeded game, recording the hands after every decided battle, and returns the round at which
+     * the first repeated state was first reached and the rounds until it was reached again.
+     * @return the start and the period of the cycle, or null if no state repeated
+     */
+    private static int[] playAndFindFirstRepeat(WarCard warCard, long seed) {
+        warCard.startGame(seed);
+        Map<String, Integer> seen = new HashMap<>();
+        seen.put(state(warCard), 0);
+        int[] firstRepeat = null;
+        boolean gameIsOn = true;
+        while (gameIsOn && warCard.getRoundsCount() < MAX_ROUNDS) {
+            gameIsOn = warCard.exeRound();
+            if (firstRepeat == null && !warCard.insideWar() && handsHoldAllCards(warCard)) {
+                Integer round = seen.putIfAbsent(state(warCard), warCard.getRoundsCount());
+                if (round != null) {
+                    firstRepeat = new int[] {round, warCard.getRoundsCount() - round};
+                }
+            }
+        }
+        assertFalse(gameIsOn, "seed " + seed + " did not end");
+        return firstRepeat;
+    }
+
+    private static boolean handsHoldAllCards(WarCard warCard) {
+        return warCard.getPlayerCom().getHandSize() + warCard.getPlayerUser().getHandSize() == Card.CODES_COUNT;
+    }
+
+    private static String state(WarCard warCard) {
+        byte[] com = new byte[Card.CODES_COUNT];
+        byte[] user = new byte[Card.CODES_COUNT];
+        int comSize = warCard.getPlayerCom().copyHand(com);
+        int userSize = warCard.getPlayerUser().copyHand(user);
+        return Arrays.toString(Arrays.copyOf(com, comSize)) + Arrays.toString(Arrays.copyOf(user, userSize));
+    }
+}
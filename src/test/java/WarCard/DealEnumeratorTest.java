@@ -0,0 +1,99 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DealEnumeratorTest {
+
+    private static final int MAX_ROUNDS = 10_000;
+    private static final Rank[] RANKS_BY_VALUE = Arrays.stream(Rank.values())
+            .sorted(Comparator.comparingInt(Rank::getValue))
+            .toArray(Rank[]::new);
+
+    @Test
+    void nextOrderingVisitsEveryRankSequenceOnce() {
+        byte[] sequence = {0, 0, 1, 1, 1, 2};
+        int orderings = 1;
+        while (DealEnumerator.nextOrdering(sequence, 0)) {
+            orderings++;
+        }
+        assertEquals(60, orderings);    // 6! / (2! 3! 1!)
+        assertArrayEquals(new byte[] {2, 1, 1, 1, 0, 0}, sequence);
+    }
+
+    @Test
+    void swappedHandsOfSortedPickupsMatchEveryDeal() {
+        Rules rules = Rules.parse("3,sorted");
+        DealEnumerator enumerator = new DealEnumerator(new ForkJoinPool(2), MAX_ROUNDS, 0);
+        enumerator.setRules(rules);
+        assertSameGames(playEveryDeal(3, 4, rules), enumerator.enumerate(3, 4, 2));
+    }
+
+    @Test
+    void enumerationOfTheStandardRulesMatchesEveryDeal() {
+        DealEnumerator enumerator = new DealEnumerator(new ForkJoinPool(2), MAX_ROUNDS, 0);
+        assertSameGames(playEveryDeal(3, 4, Rules.STANDARD), enumerator.enumerate(3, 4, 2));
+    }
+
+    @Test
+    void leafCachesMatchUncachedEnumeration() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        SimulationResult uncached = new DealEnumerator(pool, MAX_ROUNDS, 0).enumerate(4, 3, 2);
+        SimulationResult cached = new DealEnumerator(pool, MAX_ROUNDS, 1 << 16).enumerate(4, 3, 2);
+        assertTrue(cached.getCacheHits() > 0);
+        assertSameGames(uncached, cached);
+    }
+
+    /**
+     * Plays every rank sequence of a reduced deck between two players, without any of the enumerator's pruning.
+     */
+    private static SimulationResult playEveryDeal(int ranks, int suits, Rules rules) {
+        byte[] sequence = new byte[ranks * suits];
+        for (int i = 0; i < sequence.length; ++i) {
+            sequence[i] = (byte) (i / suits);
+        }
+        int handSize = sequence.length / 2;
+        byte[][] hands = {new byte[handSize], new byte[handSize]};
+        int[] sizes = {handSize, handSize};
+        WarCard warCard = new WarCard(2, 1, rules);
+        SimulationResult result = new SimulationResult();
+        do {
+            int[] occurrences = new int[ranks];
+            for (int i = 0; i < sequence.length; ++i) {
+                int suit = occurrences[sequence[i]]++;
+                hands[i / handSize][i % handSize] = (byte) (suit * Rank.values().length
+                        + RANKS_BY_VALUE[sequence[i]].ordinal());
+            }
+            warCard.startGame(hands, sizes);
+            boolean gameIsOn = true;
+            while (gameIsOn && warCard.getRoundsCount() < MAX_ROUNDS) {
+                gameIsOn = warCard.exeRound();
+            }
+            result.record(warCard, !gameIsOn);
+        } while (DealEnumerator.nextOrdering(sequence, 0));
+        return result;
+    }
+
+    /**
+     * Checks the counters of two results. The running statistics and sketches depend on the order
+     * the games were added in, which differs between the enumerator's tasks and a single loop.
+     */
+    private static void assertSameGames(SimulationResult expected, SimulationResult actual) {
+        assertEquals(expected.getGames(), actual.getGames());
+        assertEquals(expected.getComWins(), actual.getComWins());
+        assertEquals(expected.getUserWins(), actual.getUserWins());
+        assertEquals(expected.getTies(), actual.getTies());
+        assertEquals(expected.getCycles(), actual.getCycles());
+        assertEquals(expected.getUnfinished(), actual.getUnfinished());
+        assertEquals(expected.getTotalRounds(), actual.getTotalRounds());
+        assertEquals(expected.getMinRounds(), actual.getMinRounds());
+        assertEquals(expected.getMaxRounds(), actual.getMaxRounds());
+        assertEquals(expected.getTotalWars(), actual.getTotalWars());
+        assertEquals(expected.getChainedWars(), actual.getChainedWars());
+    }
+}
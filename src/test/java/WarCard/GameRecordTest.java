@@ -0,0 +1,138 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameRecordTest {
+
+    private static final int GAMES = 400;
+    private static final int MAX_ROUNDS = 400;    // stops about half of the games before their end
+    private static final long SEED = 42;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsReplayAgainstTheEngine() throws IOException {
+        Path path = dir.resolve("games.wrec");
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try (GameRecordWriter writer = new GameRecordWriter(path)) {
+            Simulator simulator = new Simulator(pool, MAX_ROUNDS, null);
+            simulator.setRecordWriter(writer);
+            simulator.run(GAMES, SEED);
+        } finally {
+            pool.shutdown();
+        }
+
+        Set<Long> seeds = new HashSet<>();
+        int unfinished = 0;
+        try (GameRecordReader reader = new GameRecordReader(path)) {
+            while (reader.next()) {
+                assertTrue(seeds.add(reader.getSeed()), "seed " + reader.getSeed() + " recorded twice");
+                if (replay(reader)) {
+                    unfinished++;
+                }
+            }
+        }
+        assertEquals(GAMES, seeds.size());
+        for (long game = 0; game < GAMES; ++game) {
+            assertTrue(seeds.contains(Simulator.gameSeed(SEED, game)), "game " + game + " is not recorded");
+        }
+        assertTrue(unfinished > 0 && unfinished < GAMES, unfinished + " unfinished games");
+    }
+
+    @Test
+    void fileOfAnotherFormatIsRejected() throws IOException {
+        Path path = dir.resolve("other.wrec");
+        Files.write(path, new byte[] {'W', 'A', 'R', 'R', 'E', 'C', GameRecordWriter.FORMAT_VERSION - 1});
+        assertThrows(IOException.class, () -> new GameRecordReader(path));
+        Files.write(path, new byte[] {'W', 'A', 'R'});
+        assertThrows(IOException.class, () -> new GameRecordReader(path));
+    }
+
+    @Test
+    void gamesOfOtherRulesAreNotRecorded() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        try (GameRecordWriter writer = new GameRecordWriter(dir.resolve("games.wrec"))) {
+            Simulator recorded = new Simulator(pool, MAX_ROUNDS, null);
+            recorded.setRecordWriter(writer);
+            assertThrows(IllegalStateException.class, () -> recorded.setRules(Rules.parse("3,sorted")));
+            recorded.setRules(Rules.parse("3"));
+
+            Simulator aceLow = new Simulator(pool, MAX_ROUNDS, null);
+            aceLow.setRules(Rules.parse("1,ace-low"));
+            assertThrows(IllegalStateException.class, () -> aceLow.setRecordWriter(writer));
+            aceLow.setRecordWriter(null);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Checks that the recorded deal is the deal of the recorded seed, then plays it again and checks
+     * the result of every round and the outcome.
+     * @return whether the game was recorded as unfinished
+     */
+    private static boolean replay(GameRecordReader reader) {
+        long seed = reader.getSeed();
+        WarCard warCard = new WarCard(WarCard.MIN_PLAYERS, 1);
+        byte[][] hands = {new byte[Card.CODES_COUNT], new byte[Card.CODES_COUNT]};
+        int[] sizes = {reader.copyDealCom(hands[0]), reader.copyDealUser(hands[1])};
+
+        warCard.startGame(seed);
+        byte[] dealt = new byte[Card.CODES_COUNT];
+        int dealtSize = warCard.getPlayerCom().copyHand(dealt);
+        assertArrayEquals(Arrays.copyOf(dealt, dealtSize), Arrays.copyOf(hands[0], sizes[0]), "deal of seed " + seed);
+        dealtSize = warCard.getPlayerUser().copyHand(dealt);
+        assertArrayEquals(Arrays.copyOf(dealt, dealtSize), Arrays.copyOf(hands[1], sizes[1]), "deal of seed " + seed);
+
+        warCard.startGame(hands, sizes);
+        boolean gameIsOn = true;
+        for (int round = 0; round < reader.getRoundsCount(); ++round) {
+            assertTrue(gameIsOn, "seed " + seed + " ended before round " + round);
+            gameIsOn = warCard.exeRound();
+            assertEquals(roundResult(warCard), reader.getRoundResult(round), "round " + round + " of seed " + seed);
+        }
+
+        int outcome = reader.getOutcome();
+        if (gameIsOn) {
+            assertEquals(MAX_ROUNDS, reader.getRoundsCount(), "seed " + seed);
+            assertEquals(GameRecorder.GAME_UNFINISHED, outcome, "seed " + seed);
+            return true;
+        }
+        int expected;
+        if (warCard.isCycle()) {
+            expected = GameRecorder.GAME_CYCLE;
+        } else if (warCard.getWinner() == null) {
+            expected = GameRecorder.GAME_TIE;
+        } else {
+            expected = (warCard.getWinner() == warCard.getPlayerCom())
+                    ? GameRecorder.GAME_COM_WON : GameRecorder.GAME_USER_WON;
+        }
+        assertEquals(expected, outcome, "seed " + seed);
+        return false;
+    }
+
+    /**
+     * Returns the result a round that has just been executed should be recorded with.
+     */
+    private static int roundResult(WarCard warCard) {
+        if (warCard.getWarCardsCount() > 0) {
+            return GameRecorder.ROUND_WAR_CARD;
+        }
+        if (warCard.getWarCardsCount() == 0 || warCard.getWinner() == null) {
+            return GameRecorder.ROUND_WAR;
+        }
+        return (warCard.getWinner() == warCard.getPlayerCom()) ? GameRecorder.ROUND_COM_WON : GameRecorder.ROUND_USER_WON;
+    }
+}
@@ -0,0 +1,75 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PickupOptimizerTest {
+
+    private static final int GAMES = 300;
+    private static final long SEED = 42;
+
+    @Test
+    void finalComparisonPlaysTheGamesAfterTheSearchGames() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            PickupOptimizer optimizer = new PickupOptimizer(pool, GAMES, SEED, Simulator.DEFAULT_MAX_ROUNDS);
+            List<PickupPolicy> candidates = List.of(PickupPolicy.inOrder(), PickupPolicy.highestFirst());
+            PickupOptimizer.Scores search = optimizer.evaluate(candidates);
+            PickupOptimizer.Scores holdOut = optimizer.evaluate(candidates, GAMES);
+
+            assertEquals(meanScore(PickupPolicy.inOrder(), 0), search.mean(0));
+            assertEquals(meanScore(PickupPolicy.highestFirst(), 0), search.mean(1));
+            assertEquals(meanScore(PickupPolicy.inOrder(), GAMES), holdOut.mean(0));
+            assertEquals(meanScore(PickupPolicy.highestFirst(), GAMES), holdOut.mean(1));
+            assertNotEquals(search.mean(1), holdOut.mean(1));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void bestOfTheNeighboursMustPassTheBonferroniCorrection() {
+        double tail = normalTail(PickupOptimizer.SIGNIFICANT_Z);
+        assertEquals(tail / PickupOptimizer.NEIGHBOURS, normalTail(PickupOptimizer.SIGNIFICANT_NEIGHBOUR_Z),
+                tail / PickupOptimizer.NEIGHBOURS * 0.01);
+    }
+
+    /**
+     * Plays the games of the given range with the user picking up by a policy, one game at a time.
+     * @return the mean score of the user
+     */
+    private static double meanScore(PickupPolicy policy, long firstGame) {
+        WarCard warCard = new WarCard(WarCard.MIN_PLAYERS, 1);
+        warCard.setPickupPolicy(1, policy);
+        long halfPoints = 0;
+        for (long game = firstGame; game < firstGame + GAMES; ++game) {
+            warCard.startGame(Simulator.gameSeed(SEED, game));
+            boolean gameIsOn = true;
+            while (gameIsOn && warCard.getRoundsCount() < Simulator.DEFAULT_MAX_ROUNDS) {
+                gameIsOn = warCard.exeRound();
+            }
+            if (gameIsOn || warCard.getWinner() == null) {
+                halfPoints += 1;
+            } else if (warCard.getWinner() == warCard.getPlayerUser()) {
+                halfPoints += 2;
+            }
+        }
+        return halfPoints / (2.0 * GAMES);
+    }
+
+    /**
+     * Returns the probability that a standard normal variable exceeds z, for z of a few units, by the
+     * continued fraction of the Mills ratio.
+     */
+    private static double normalTail(double z) {
+        double fraction = z;
+        for (int k = 60; k >= 1; --k) {
+            fraction = z + k / fraction;
+        }
+        return Math.exp(-z * z / 2) / Math.sqrt(2 * Math.PI) / fraction;
+    }
+}
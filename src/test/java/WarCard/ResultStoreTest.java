@@ -0,0 +1,185 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultStoreTest {
+
+    private static final int SEGMENT_RECORDS = 7;   // small enough for every test to cross many segments
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appendedRecordsAreReadBackAcrossSegments() {
+        ResultStore store = new ResultStore(SEGMENT_RECORDS);
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(i, appendRecord(store, i));
+        }
+        assertEquals(100, store.size());
+        for (int i = 0; i < 100; ++i) {
+            assertRecord(store.get(i), i);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(100));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(-1));
+    }
+
+    @Test
+    void countScansEveryRecordOfEverySegment() {
+        // more records than a single scan task takes, so the scan splits inside and across segments
+        int records = 3 * (1 << 16) + 5;
+        ResultStore store = new ResultStore(1000);
+        for (int i = 0; i < records; ++i) {
+            appendRecord(store, i);
+        }
+        assertEquals(records, store.count(cursor -> true));
+        assertEquals(expectedCount(records, i -> i % 3 == 0), store.count(ResultStore.Cursor::isCycle));
+        assertEquals(expectedCount(records, i -> i % 5 == 0), store.count(ResultStore.Cursor::isUnfinished));
+        assertEquals(expectedCount(records, i -> i % 1000 == 999), store.count(cursor -> cursor.getRounds() % 1000 == 999));
+
+        List<Long> indices = store.scan(cursor -> cursor.getIndex() % 4096 == 0, ArrayList::new,
+                (list, cursor) -> list.add(cursor.getIndex()), (a, b) -> {
+                    a.addAll(b);
+                    return a;
+                });
+        for (int i = 0; i < indices.size(); ++i) {
+            assertEquals(4096L * i, indices.get(i));
+        }
+        assertEquals((records + 4095) / 4096, indices.size());
+    }
+
+    @Test
+    void concurrentAppendsTakeDistinctIndices() throws Exception {
+        int threads = 4;
+        int perThread = 5000;
+        ResultStore store = new ResultStore(SEGMENT_RECORDS);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; ++t) {
+                int first = t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < first + perThread; ++i) {
+                        appendRecord(store, i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        int records = threads * perThread;
+        assertEquals(records, store.size());
+        boolean[] seen = new boolean[records];
+        for (long index = 0; index < records; ++index) {
+            ResultStore.Cursor cursor = store.get(index);
+            int i = (int) cursor.getSeed();
+            assertFalse(seen[i], "record " + i + " appended twice");
+            seen[i] = true;
+            assertRecord(cursor, i);
+        }
+    }
+
+    @Test
+    void reopenedFileKeepsItsRecordsAndAppendsAfterThem() throws IOException {
+        Path path = dir.resolve("results.wrs");
+        try (ResultStore store = new ResultStore(path, SEGMENT_RECORDS)) {
+            for (int i = 0; i < 30; ++i) {
+                appendRecord(store, i);
+            }
+        }
+        // another segment size, so the records of the first session straddle other segment boundaries
+        try (ResultStore store = new ResultStore(path, SEGMENT_RECORDS + 4)) {
+            assertEquals(30, store.size());
+            for (int i = 0; i < 30; ++i) {
+                assertRecord(store.get(i), i);
+            }
+            for (int i = 30; i < 50; ++i) {
+                assertEquals(i, appendRecord(store, i));
+            }
+        }
+        try (ResultStore store = new ResultStore(path)) {
+            assertEquals(50, store.size());
+            for (int i = 0; i < 50; ++i) {
+                assertRecord(store.get(i), i);
+            }
+            assertEquals(expectedCount(50, i -> i % 3 == 0), store.count(ResultStore.Cursor::isCycle));
+            assertEquals(expectedCount(50, i -> i % 2 == 0), store.count(cursor -> cursor.getWinner() == 0));
+        }
+    }
+
+    @Test
+    void fileOfAnotherFormatIsRejected() throws IOException {
+        Path path = dir.resolve("other.wrs");
+        Files.write(path, new byte[] {'W', 'A', 'R', 'R', 'E', 'S', ResultStore.FORMAT_VERSION + 1, 0, 0, 0, 0, 0, 0, 0, 0, 0});
+        assertThrows(IOException.class, () -> new ResultStore(path));
+        Files.write(path, new byte[] {'W', 'A', 'R'});
+        assertThrows(IOException.class, () -> new ResultStore(path));
+    }
+
+    @Test
+    void gamesAreAppendedWithTheirOutcome() {
+        ResultStore store = new ResultStore(SEGMENT_RECORDS);
+        WarCard warCard = new WarCard();
+        warCard.startGame(42);
+        while (warCard.getRoundsCount() < 10) {
+            assertTrue(warCard.exeRound());
+        }
+        ResultStore.Cursor stopped = store.get(store.append(42, warCard, false));
+        assertEquals(-1, stopped.getWinner());
+        assertTrue(stopped.isUnfinished());
+        assertFalse(stopped.isCycle());
+        assertEquals(10, stopped.getRounds());
+
+        boolean gameIsOn = true;
+        while (gameIsOn) {
+            gameIsOn = warCard.exeRound();
+        }
+        ResultStore.Cursor finished = store.get(store.append(42, warCard, true));
+        assertEquals(42, finished.getSeed());
+        assertEquals(warCard.getWinnerIndex(), finished.getWinner());
+        assertFalse(finished.isUnfinished());
+        assertEquals(warCard.isCycle(), finished.isCycle());
+        assertEquals(warCard.getRoundsCount(), finished.getRounds());
+        assertEquals(warCard.getWarsCount(), finished.getWars());
+        assertEquals(warCard.getLongestWarChain(), finished.getLongestWarChain());
+    }
+
+    /**
+     * Appends a record whose fields are derived from a number, so {@link #assertRecord} can check them.
+     */
+    private static long appendRecord(ResultStore store, int i) {
+        int flags = (i % 3 == 0 ? ResultStore.CYCLE : 0) | (i % 5 == 0 ? ResultStore.UNFINISHED : 0);
+        return store.append(i, (i % 2 == 0) ? 0 : -1, i, 2 * i + 1, i % 11, flags);
+    }
+
+    private static void assertRecord(ResultStore.Cursor cursor, int i) {
+        assertEquals(i, cursor.getSeed());
+        assertEquals((i % 2 == 0) ? 0 : -1, cursor.getWinner(), "record " + i);
+        assertEquals(i, cursor.getRounds(), "record " + i);
+        assertEquals(2 * i + 1, cursor.getWars(), "record " + i);
+        assertEquals(i % 11, cursor.getLongestWarChain(), "record " + i);
+        assertEquals(i % 3 == 0, cursor.isCycle(), "record " + i);
+        assertEquals(i % 5 == 0, cursor.isUnfinished(), "record " + i);
+    }
+
+    private static long expectedCount(int records, IntPredicate predicate) {
+        return IntStream.range(0, records).filter(predicate).count();
+    }
+}
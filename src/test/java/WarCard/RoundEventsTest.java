@@ -0,0 +1,78 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoundEventsTest {
+
+    private static final int ROUNDS = 2000;
+
+    @Test
+    void eventsThatDoNotFitAreCountedForTheSlowSubscriberAlone() throws InterruptedException {
+        WarCard warCard = new WarCard();
+        StuckSubscriber stuck = new StuckSubscriber();
+        StuckSubscriber other = new StuckSubscriber();
+        warCard.subscribe(stuck);
+        assertTrue(stuck.subscribed.await(10, TimeUnit.SECONDS));
+
+        warCard.startGame(1);
+        boolean gameIsOn = true;
+        while (gameIsOn && warCard.getRoundsCount() < ROUNDS) {
+            gameIsOn = warCard.exeRound();
+        }
+        int rounds = warCard.getRoundsCount();
+        assertTrue(rounds > Flow.defaultBufferSize(), rounds + " rounds");
+
+        long dropped = warCard.getDroppedEvents(stuck);
+        assertTrue(dropped > 0, "no events dropped");
+        assertEquals(0, warCard.getDroppedEvents(other));
+
+        stuck.release.countDown();
+        warCard.closeEvents();
+        assertTrue(stuck.completed.await(10, TimeUnit.SECONDS));
+        assertTrue(stuck.received <= Flow.defaultBufferSize() + 1, stuck.received + " events received");
+        assertTrue(stuck.received + dropped >= rounds, "every round publishes at least one event");
+        assertEquals(dropped, warCard.getDroppedEvents(stuck));
+    }
+
+    /**
+     * A subscriber that blocks on its first event until it is released, so its buffer fills up.
+     */
+    private static final class StuckSubscriber implements Flow.Subscriber<RoundEvent> {
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile int received;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(RoundEvent event) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received++;
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulationCampaignTest {
+
+    private static final long GAMES = 3000;
+    private static final long RANGE_GAMES = 500;
+    private static final long SEED = 42;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void resumedCampaignMatchesUninterruptedCampaign() throws IOException {
+        SimulationResult uninterrupted = new SimulationCampaign(new CountingSimulator(-1),
+                dir.resolve("uninterrupted.ckp"), GAMES, SEED, RANGE_GAMES).run();
+
+        Path path = dir.resolve("resumed.ckp");
+        CountingSimulator crashing = new CountingSimulator(2);
+        SimulationCampaign campaign = new SimulationCampaign(crashing, path, GAMES, SEED, RANGE_GAMES);
+        assertThrows(Crash.class, campaign::run);
+        assertEquals(3, crashing.ranges);
+
+        CountingSimulator resuming = new CountingSimulator(-1);
+        SimulationResult resumed = new SimulationCampaign(resuming, path, GAMES, SEED, RANGE_GAMES).run();
+        assertEquals(GAMES / RANGE_GAMES - 2, resuming.ranges);
+        assertEquals(2 * RANGE_GAMES, resuming.firstGame);
+        assertEquals(bytes(uninterrupted), bytes(resumed));
+    }
+
+    @Test
+    void finishedCampaignIsNotPlayedAgain() throws IOException {
+        Path path = dir.resolve("finished.ckp");
+        SimulationResult first = new SimulationCampaign(new CountingSimulator(-1), path, GAMES, SEED, RANGE_GAMES).run();
+
+        CountingSimulator again = new CountingSimulator(-1);
+        SimulationResult second = new SimulationCampaign(again, path, GAMES, SEED, RANGE_GAMES).run();
+        assertEquals(0, again.ranges);
+        assertEquals(bytes(first), bytes(second));
+    }
+
+    @Test
+    void checkpointOfAnotherCampaignIsRejected() throws IOException {
+        Path path = dir.resolve("other.ckp");
+        new SimulationCampaign(new CountingSimulator(-1), path, GAMES, SEED, RANGE_GAMES).run();
+
+        SimulationCampaign other = new SimulationCampaign(new CountingSimulator(-1), path, GAMES, SEED + 1, RANGE_GAMES);
+        assertThrows(IllegalStateException.class, other::run);
+    }
+
+    private static ByteBuffer bytes(SimulationResult result) {
+        ByteBuffer buffer = ByteBuffer.allocate(CheckpointFile.DEFAULT_SLOT_SIZE);
+        result.writeTo(buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Thrown by a simulator that stops in the middle of a campaign, as a killed process would.
+     */
+    private static final class Crash extends RuntimeException {
+    }
+
+    /**
+     * A simulator that counts the ranges it plays, and may crash after a number of them.
+     */
+    private static final class CountingSimulator extends Simulator {
+        private final int crashAfter;   // the number of ranges played before the crash, or -1 to never crash
+        private int ranges;
+        private long firstGame = -1;
+
+        CountingSimulator(int crashAfter) {
+            super(ForkJoinPool.commonPool(), Simulator.DEFAULT_MAX_ROUNDS, null);
+            this.crashAfter = crashAfter;
+        }
+
+        @Override
+        public SimulationResult runRange(long masterSeed, long from, long to) {
+            if (ranges++ == crashAfter) {
+                throw new Crash();
+            }
+            if (firstGame < 0) {
+                firstGame = from;
+            }
+            return super.runRange(masterSeed, from, to);
+        }
+    }
+}
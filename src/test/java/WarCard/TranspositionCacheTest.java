@@ -0,0 +1,182 @@
+package WarCard;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionCacheTest {
+
+    private static final long KEY = 0x1234_5678_9abc_def0L;
+    private static final long SAME_SLOT_KEY = KEY ^ 0xffff;    // differs only in the low bits, which pick no slot
+
+    @Test
+    void storedOutcomeIsReadBack() {
+        TranspositionCache cache = new TranspositionCache(1024);
+        assertEquals(TranspositionCache.MISS, cache.get(KEY));
+        cache.put(KEY, TranspositionCache.USER_WON, 1234, 56, 7);
+        long value = cache.get(KEY);
+        assertEquals(TranspositionCache.USER_WON, TranspositionCache.outcome(value));
+        assertEquals(1234, TranspositionCache.rounds(value));
+        assertEquals(56, TranspositionCache.wars(value));
+        assertEquals(7, TranspositionCache.chainedWars(value));
+
+        cache.put(SAME_SLOT_KEY + (1L << 40), TranspositionCache.TIE, 0, 0, 0);
+        assertNotEquals(TranspositionCache.MISS, cache.get(KEY), "an entry of another slot evicted the entry");
+    }
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1024, new TranspositionCache(1000).getCapacity());
+        assertEquals(1024, new TranspositionCache(1024).getCapacity());
+        assertEquals(2, new TranspositionCache(1).getCapacity());
+    }
+
+    @Test
+    void newEntryEvictsTheEntryOfItsSlot() {
+        TranspositionCache cache = new TranspositionCache(1024);
+        cache.put(KEY, TranspositionCache.COM_WON, 10, 1, 0);
+        cache.put(SAME_SLOT_KEY, TranspositionCache.USER_WON, 20, 2, 1);
+        assertEquals(TranspositionCache.MISS, cache.get(KEY));
+        assertEquals(20, TranspositionCache.rounds(cache.get(SAME_SLOT_KEY)));
+    }
+
+    @Test
+    void otherKeyOfTheSameSlotMisses() {
+        TranspositionCache cache = new TranspositionCache(1024);
+        cache.put(KEY, TranspositionCache.COM_WON, 10, 1, 0);
+        assertEquals(TranspositionCache.MISS, cache.get(SAME_SLOT_KEY));
+    }
+
+    @Test
+    void tornSlotMisses() throws ReflectiveOperationException {
+        TranspositionCache cache = new TranspositionCache(1024);
+        cache.put(KEY, TranspositionCache.COM_WON, 10, 1, 0);
+        long[] values = longArray(cache, "values");
+        long[] checks = longArray(cache, "checks");
+        // a racing writer stored its value, but not yet its check
+        int slot = (int) (KEY >>> 32) & (cache.getCapacity() - 1);
+        values[slot] = cache.get(KEY) + (1L << 5);
+        assertEquals(TranspositionCache.MISS, cache.get(KEY));
+        // and the other way round
+        cache.put(KEY, TranspositionCache.COM_WON, 10, 1, 0);
+        checks[slot] ^= 1L << 20;
+        assertEquals(TranspositionCache.MISS, cache.get(KEY));
+    }
+
+    @Test
+    void countsTooLargeForAnEntryAreNotStored() {
+        TranspositionCache cache = new TranspositionCache(1024);
+        cache.put(KEY, TranspositionCache.COM_WON, 1 << 24, 0, 0);
+        assertEquals(TranspositionCache.MISS, cache.get(KEY));
+    }
+
+    @Test
+    void clearRemovesEveryEntry() {
+        TranspositionCache cache = new TranspositionCache(1024);
+        cache.put(KEY, TranspositionCache.COM_WON, 10, 1, 0);
+        cache.clear();
+        assertEquals(TranspositionCache.MISS, cache.get(KEY));
+    }
+
+    @Test
+    void cachedRunMatchesUncachedRun() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        TranspositionCache cache = new TranspositionCache(1 << 22);
+        SimulationResult uncached = new Simulator(pool, Simulator.DEFAULT_MAX_ROUNDS, null).run(2000, 42);
+        new Simulator(pool, Simulator.DEFAULT_MAX_ROUNDS, cache).run(2000, 42);
+        SimulationResult cached = new Simulator(pool, Simulator.DEFAULT_MAX_ROUNDS, cache).run(2000, 42);
+        assertEquals(uncached.getGames() - uncached.getCycles() - uncached.getUnfinished(), cached.getCacheHits());
+        assertSameGames(uncached, cached);
+    }
+
+    @Test
+    void cachedOutcomesDoNotPassTheRoundsLimit() {
+        ForkJoinPool pool = new ForkJoinPool(1);
+        TranspositionCache cache = new TranspositionCache(1 << 22);
+        new Simulator(pool, Simulator.DEFAULT_MAX_ROUNDS, cache).run(2000, 42);
+
+        int maxRounds = 500;
+        SimulationResult uncached = new Simulator(pool, maxRounds, null).run(2000, 42);
+        SimulationResult cached = new Simulator(pool, maxRounds, cache).run(2000, 42);
+        assertTrue(cached.getCacheHits() > 0);
+        assertTrue(cached.getUnfinished() > 0);
+        assertTrue(cached.getMaxRounds() <= maxRounds, "a game finished from the cache after " + cached.getMaxRounds());
+        assertSameGames(uncached, cached);
+    }
+
+    @Test
+    void stateHashSeparatesACardMovedBetweenHands() {
+        WarCard warCard = new WarCard(WarCard.MIN_PLAYERS, 1);
+        warCard.startGame(new byte[][] {{0, 1}, {2, 3, 4}}, new int[] {2, 3});
+        long hash = warCard.getStateHash();
+        // the first card of the computer and the second card of the user sit at the same power of
+        // Zobrist.BASE once the computer's hand hash is multiplied by it
+        warCard.startGame(new byte[][] {{3, 1}, {2, 0, 4}}, new int[] {2, 3});
+        assertNotEquals(hash, warCard.getStateHash());
+    }
+
+    @Test
+    void dealsThatMeetInAStateAgreeWithoutTheCache() {
+        WarCard plain = new WarCard(WarCard.MIN_PLAYERS, 1);
+        WarCard cached = new WarCard(WarCard.MIN_PLAYERS, 1);
+        cached.setTranspositionCache(new TranspositionCache(1 << 16), Simulator.DEFAULT_MAX_ROUNDS);
+        byte[] sequence = {0, 0, 1, 1, 2, 2, 3, 3, 4, 4};   // the ranks of a 10-card deck of two suits
+        int hits = 0;
+        do {
+            byte[][] hands = {new byte[5], new byte[5]};
+            boolean[] seen = new boolean[5];
+            for (int i = 0; i < sequence.length; ++i) {
+                int suit = seen[sequence[i]] ? 1 : 0;
+                seen[sequence[i]] = true;
+                hands[i / 5][i % 5] = (byte) (sequence[i] + suit * Rank.values().length);
+            }
+            playDeal(plain, hands);
+            playDeal(cached, hands);
+            if (cached.isFinishedFromCache()) {
+                hits++;
+            }
+            String deal = Arrays.toString(sequence);
+            assertEquals(plain.getWinnerIndex(), cached.getWinnerIndex(), deal);
+            assertEquals(plain.getRoundsCount(), cached.getRoundsCount(), deal);
+            assertEquals(plain.getWarsCount(), cached.getWarsCount(), deal);
+        } while (DealEnumerator.nextOrdering(sequence, 0));
+        assertTrue(hits > 0);
+    }
+
+    private static void playDeal(WarCard warCard, byte[][] hands) {
+        warCard.startGame(hands, new int[] {hands[0].length, hands[1].length});
+        boolean gameIsOn = true;
+        while (gameIsOn && warCard.getRoundsCount() < Simulator.DEFAULT_MAX_ROUNDS) {
+            gameIsOn = warCard.exeRound();
+        }
+    }
+
+    private static void assertSameGames(SimulationResult expected, SimulationResult actual) {
+        assertEquals(expected.getGames(), actual.getGames());
+        assertEquals(expected.getComWins(), actual.getComWins());
+        assertEquals(expected.getUserWins(), actual.getUserWins());
+        assertEquals(expected.getTies(), actual.getTies());
+        assertEquals(expected.getCycles(), actual.getCycles());
+        assertEquals(expected.getUnfinished(), actual.getUnfinished());
+        assertEquals(expected.getTotalRounds(), actual.getTotalRounds());
+        assertEquals(expected.getMinRounds(), actual.getMinRounds());
+        assertEquals(expected.getMaxRounds(), actual.getMaxRounds());
+        assertEquals(expected.getTotalWars(), actual.getTotalWars());
+        assertEquals(expected.getChainedWars(), actual.getChainedWars());
+        assertEquals(expected.getRoundsStats().getMean(), actual.getRoundsStats().getMean());
+        for (double fraction : new double[] {0.5, 0.9, 0.99}) {
+            assertEquals(expected.getRoundsSketch().getQuantile(fraction), actual.getRoundsSketch().getQuantile(fraction));
+            assertEquals(expected.getWarsSketch().getQuantile(fraction), actual.getWarsSketch().getQuantile(fraction));
+        }
+    }
+
+    private static long[] longArray(TranspositionCache cache, String name) throws ReflectiveOperationException {
+        Field field = TranspositionCache.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return (long[]) field.get(cache);
+    }
+}